@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
+
+final class AccountingIdleStrategy implements IdleStrategy
+{
+    private final IdleStrategy delegate;
+    private final AtomicCounter idleCounter;
+    private final AtomicCounter workCounter;
+
+    private long lastAt;
+    private long idleAt;
+    private long idleNanos;
+    private long workNanos;
+
+    AccountingIdleStrategy(
+        IdleStrategy delegate,
+        AtomicCounter idleCounter,
+        AtomicCounter workCounter)
+    {
+        this.delegate = delegate;
+        this.idleCounter = idleCounter;
+        this.workCounter = workCounter;
+        this.lastAt = System.nanoTime();
+    }
+
+    @Override
+    public void idle(
+        int workCount)
+    {
+        // the pass since the previous call counts as work only if it found any
+        onPassed(workCount > 0);
+        delegate.idle(workCount);
+        onIdled();
+    }
+
+    @Override
+    public void idle()
+    {
+        // called without a work count only after a pass that found nothing
+        onPassed(false);
+        delegate.idle();
+        onIdled();
+    }
+
+    @Override
+    public void reset()
+    {
+        delegate.reset();
+    }
+
+    double idleRatio()
+    {
+        final long totalNanos = idleNanos + workNanos;
+        return totalNanos != 0L ? (double) idleNanos / totalNanos : 0.0;
+    }
+
+    private void onPassed(
+        boolean worked)
+    {
+        idleAt = System.nanoTime();
+
+        if (worked)
+        {
+            workNanos += idleAt - lastAt;
+            workCounter.setOrdered(workNanos);
+        }
+        else
+        {
+            idleNanos += idleAt - lastAt;
+        }
+    }
+
+    private void onIdled()
+    {
+        lastAt = System.nanoTime();
+        idleNanos += lastAt - idleAt;
+        idleCounter.setOrdered(idleNanos);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_STREAMS;
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_THROTTLE;
+
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+public final class CaptureStreamsListener implements StreamsListener
+{
+    private final FrameSink capture;
+    private final int pair;
+
+    CaptureStreamsListener(
+        String receiver,
+        String sender,
+        FrameSink capture)
+    {
+        this.capture = capture;
+        this.pair = capture.pair(receiver, sender);
+    }
+
+    @Override
+    public boolean ordered()
+    {
+        return true;
+    }
+
+    @Override
+    public void onBegin(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long sourceRef,
+        long correlationId,
+        long authorization,
+        BeginFW begin)
+    {
+        capture.write(pair, RING_STREAMS, BeginFW.TYPE_ID, begin.buffer(), begin.offset(), begin.sizeof());
+    }
+
+    @Override
+    public void onData(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int length,
+        int padding,
+        int flags,
+        long authorization,
+        DataFW data)
+    {
+        capture.write(pair, RING_STREAMS, DataFW.TYPE_ID, data.buffer(), data.offset(), data.sizeof());
+    }
+
+    @Override
+    public void onEnd(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        EndFW end)
+    {
+        capture.write(pair, RING_STREAMS, EndFW.TYPE_ID, end.buffer(), end.offset(), end.sizeof());
+    }
+
+    @Override
+    public void onAbort(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        AbortFW abort)
+    {
+        capture.write(pair, RING_STREAMS, AbortFW.TYPE_ID, abort.buffer(), abort.offset(), abort.sizeof());
+    }
+
+    @Override
+    public void onWindow(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int credit,
+        int padding,
+        long groupId,
+        WindowFW window)
+    {
+        capture.write(pair, RING_THROTTLE, WindowFW.TYPE_ID, window.buffer(), window.offset(), window.sizeof());
+    }
+
+    @Override
+    public void onReset(
+        long timestamp,
+        long traceId,
+        long streamId,
+        ResetFW reset)
+    {
+        capture.write(pair, RING_THROTTLE, ResetFW.TYPE_ID, reset.buffer(), reset.offset(), reset.sizeof());
+    }
+}
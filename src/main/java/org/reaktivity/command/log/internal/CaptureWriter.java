@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.agrona.DirectBuffer;
+import org.agrona.LangUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+final class CaptureWriter implements FrameSink, AutoCloseable
+{
+    static final int RING_STREAMS = 0;
+    static final int RING_THROTTLE = 1;
+    static final int RING_PAIR = 2;
+
+    // record header is ring, pair id, message type id and frame length, each a little endian int
+    static final int RECORD_HEADER_LENGTH = 4 * Integer.BYTES;
+
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private final OutputStream output;
+    private final UnsafeBuffer header;
+    private final Map<String, Integer> pairs;
+
+    private byte[] frame;
+    private int unflushed;
+
+    CaptureWriter(
+        Path path)
+    {
+        OutputStream output = null;
+
+        try
+        {
+            output = new BufferedOutputStream(Files.newOutputStream(path), FLUSH_THRESHOLD);
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        this.output = output;
+        this.header = new UnsafeBuffer(new byte[RECORD_HEADER_LENGTH]);
+        this.pairs = new HashMap<>();
+        this.frame = new byte[1024];
+    }
+
+    @Override
+    public synchronized int pair(
+        String receiver,
+        String sender)
+    {
+        final String name = receiver + '\n' + sender;
+        Integer pair = pairs.get(name);
+
+        if (pair == null)
+        {
+            // defined once, ahead of the first frame of the pair
+            pair = pairs.size();
+            pairs.put(name, pair);
+
+            final DirectBuffer definition = definition(receiver, sender);
+            write(pair, RING_PAIR, 0, definition, 0, definition.capacity());
+        }
+
+        return pair;
+    }
+
+    @Override
+    public synchronized void write(
+        int pair,
+        int ring,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        if (frame.length < length)
+        {
+            frame = new byte[Integer.highestOneBit(length) << 1];
+        }
+
+        header.putInt(0, ring, LITTLE_ENDIAN);
+        header.putInt(Integer.BYTES, pair, LITTLE_ENDIAN);
+        header.putInt(2 * Integer.BYTES, msgTypeId, LITTLE_ENDIAN);
+        header.putInt(3 * Integer.BYTES, length, LITTLE_ENDIAN);
+        buffer.getBytes(offset, frame, 0, length);
+
+        try
+        {
+            output.write(header.byteArray());
+            output.write(frame, 0, length);
+
+            unflushed += RECORD_HEADER_LENGTH + length;
+            if (unflushed >= FLUSH_THRESHOLD)
+            {
+                output.flush();
+                unflushed = 0;
+            }
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        try
+        {
+            output.close();
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    // pair definition is receiver then sender, each a little endian int length followed by utf-8 bytes
+    static DirectBuffer definition(
+        String receiver,
+        String sender)
+    {
+        final byte[] receiverBytes = receiver.getBytes(UTF_8);
+        final byte[] senderBytes = sender.getBytes(UTF_8);
+        final UnsafeBuffer definition = new UnsafeBuffer(new byte[2 * Integer.BYTES + receiverBytes.length + senderBytes.length]);
+
+        definition.putInt(0, receiverBytes.length, LITTLE_ENDIAN);
+        definition.putBytes(Integer.BYTES, receiverBytes);
+        definition.putInt(Integer.BYTES + receiverBytes.length, senderBytes.length, LITTLE_ENDIAN);
+        definition.putBytes(2 * Integer.BYTES + receiverBytes.length, senderBytes);
+
+        return definition;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import org.agrona.collections.Long2LongHashMap;
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+public final class ConformanceStreamsListener implements StreamsListener
+{
+    private static final long STATE_UNKNOWN = 0L;
+    private static final long STATE_OPEN = 1L;
+    private static final long STATE_CLOSED = 2L;
+
+    private static final int CLOSED_HISTORY = 4096;
+
+    private final String streamFormat;
+    private final String throttleFormat;
+    private final Logger out;
+    private final Long2LongHashMap states;
+    private final Long2LongHashMap budgets;
+    private final long[] closed;
+
+    private int closedAt;
+
+    public ConformanceStreamsListener(
+        String receiver,
+        String sender,
+        Logger out)
+    {
+        this.streamFormat = String.format("{\"timestamp\":%%d, \"stream\":\"%s -> %s\", \"streamId\":\"0x%%016x\", " +
+                "\"violation\":\"%%s\"}\n", sender, receiver);
+        this.throttleFormat = String.format("{\"timestamp\":%%d, \"stream\":\"%s <- %s\", \"streamId\":\"0x%%016x\", " +
+                "\"violation\":\"%%s\"}\n", sender, receiver);
+        this.out = out;
+        this.states = new Long2LongHashMap(STATE_UNKNOWN);
+        this.budgets = new Long2LongHashMap(0L);
+        this.closed = new long[CLOSED_HISTORY];
+    }
+
+    @Override
+    public boolean ordered()
+    {
+        return true;
+    }
+
+    @Override
+    public void onBegin(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long sourceRef,
+        long correlationId,
+        long authorization,
+        BeginFW begin)
+    {
+        if (states.get(streamId) != STATE_UNKNOWN)
+        {
+            out.printf(streamFormat, timestamp, streamId, "duplicate BEGIN");
+        }
+        else
+        {
+            states.put(streamId, STATE_OPEN);
+        }
+    }
+
+    @Override
+    public void onData(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int length,
+        int padding,
+        int flags,
+        long authorization,
+        DataFW data)
+    {
+        final long state = states.get(streamId);
+
+        if (state == STATE_UNKNOWN)
+        {
+            out.printf(streamFormat, timestamp, streamId, "DATA before BEGIN");
+        }
+        else if (state == STATE_CLOSED)
+        {
+            out.printf(streamFormat, timestamp, streamId, "DATA after END, ABORT or RESET");
+        }
+        else
+        {
+            final long budget = budgets.get(streamId) - (length + padding);
+            if (budget < 0L)
+            {
+                out.printf(streamFormat, timestamp, streamId, "DATA exceeds budget");
+            }
+            budgets.put(streamId, Math.max(budget, 0L));
+        }
+    }
+
+    @Override
+    public void onEnd(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        EndFW end)
+    {
+        if (states.get(streamId) == STATE_UNKNOWN)
+        {
+            out.printf(streamFormat, timestamp, streamId, "END before BEGIN");
+        }
+        else
+        {
+            onClosed(streamId);
+        }
+    }
+
+    @Override
+    public void onAbort(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        AbortFW abort)
+    {
+        if (states.get(streamId) == STATE_UNKNOWN)
+        {
+            out.printf(streamFormat, timestamp, streamId, "ABORT before BEGIN");
+        }
+        else
+        {
+            onClosed(streamId);
+        }
+    }
+
+    @Override
+    public void onWindow(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int credit,
+        int padding,
+        long groupId,
+        WindowFW window)
+    {
+        final long state = states.get(streamId);
+
+        if (state == STATE_UNKNOWN)
+        {
+            out.printf(throttleFormat, timestamp, streamId, "WINDOW for unknown stream");
+        }
+        else if (state == STATE_OPEN)
+        {
+            budgets.put(streamId, budgets.get(streamId) + credit);
+        }
+    }
+
+    @Override
+    public void onReset(
+        long timestamp,
+        long traceId,
+        long streamId,
+        ResetFW reset)
+    {
+        if (states.get(streamId) == STATE_UNKNOWN)
+        {
+            out.printf(throttleFormat, timestamp, streamId, "RESET for unknown stream");
+        }
+        else
+        {
+            onClosed(streamId);
+        }
+    }
+
+    private void onClosed(
+        long streamId)
+    {
+        if (states.get(streamId) != STATE_CLOSED)
+        {
+            // remember recently closed streams only, bounding state for long running checks
+            final long evicted = closed[closedAt];
+            if (evicted != 0L)
+            {
+                states.remove(evicted);
+            }
+            closed[closedAt] = streamId;
+            closedAt = (closedAt + 1) % CLOSED_HISTORY;
+
+            states.put(streamId, STATE_CLOSED);
+            budgets.remove(streamId);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.agrona.DirectBuffer;
+import org.agrona.LangUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+final class CountersSnapshot
+{
+    // header is magic, version, epoch millis and nuklei count, followed by the
+    // label table for all nuklei, then the counter values for all nuklei in label order
+    static final int MAGIC = 0x534e4b52;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 3 * Integer.BYTES + Long.BYTES;
+
+    private final long timestamp;
+    private final String[] owners;
+    private final String[] names;
+    private final long[] values;
+    private final Map<String, Integer> positions;
+
+    private CountersSnapshot(
+        long timestamp,
+        String[] owners,
+        String[] names,
+        long[] values)
+    {
+        this.timestamp = timestamp;
+        this.owners = owners;
+        this.names = names;
+        this.values = values;
+        this.positions = new LinkedHashMap<>();
+
+        for (int i = 0; i < owners.length; i++)
+        {
+            positions.put(key(owners[i], names[i]), i);
+        }
+    }
+
+    long timestamp()
+    {
+        return timestamp;
+    }
+
+    int count()
+    {
+        return values.length;
+    }
+
+    String owner(
+        int index)
+    {
+        return owners[index];
+    }
+
+    String name(
+        int index)
+    {
+        return names[index];
+    }
+
+    long value(
+        int index)
+    {
+        return values[index];
+    }
+
+    int position(
+        String owner,
+        String name)
+    {
+        final Integer position = positions.get(key(owner, name));
+        return position != null ? position : -1;
+    }
+
+    static int putHeader(
+        MutableDirectBuffer buffer,
+        long timestamp,
+        int nuklei)
+    {
+        buffer.putInt(0, MAGIC, LITTLE_ENDIAN);
+        buffer.putInt(Integer.BYTES, VERSION, LITTLE_ENDIAN);
+        buffer.putLong(2 * Integer.BYTES, timestamp, LITTLE_ENDIAN);
+        buffer.putInt(2 * Integer.BYTES + Long.BYTES, nuklei, LITTLE_ENDIAN);
+        return HEADER_LENGTH;
+    }
+
+    static int putString(
+        MutableDirectBuffer buffer,
+        int offset,
+        byte[] value)
+    {
+        buffer.putShort(offset, (short) value.length, LITTLE_ENDIAN);
+        buffer.putBytes(offset + Short.BYTES, value);
+        return offset + Short.BYTES + value.length;
+    }
+
+    static CountersSnapshot read(
+        Path path)
+    {
+        CountersSnapshot snapshot = null;
+
+        try
+        {
+            final DirectBuffer buffer = new UnsafeBuffer(Files.readAllBytes(path));
+
+            if (buffer.capacity() < HEADER_LENGTH ||
+                buffer.getInt(0, LITTLE_ENDIAN) != MAGIC ||
+                buffer.getInt(Integer.BYTES, LITTLE_ENDIAN) != VERSION)
+            {
+                throw new IllegalArgumentException(String.format("%s is not a counters snapshot", path));
+            }
+
+            final long timestamp = buffer.getLong(2 * Integer.BYTES, LITTLE_ENDIAN);
+            final int nuklei = buffer.getInt(2 * Integer.BYTES + Long.BYTES, LITTLE_ENDIAN);
+
+            // first pass over the label table to size the arrays
+            int offset = HEADER_LENGTH;
+            int count = 0;
+            for (int n = 0; n < nuklei; n++)
+            {
+                offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+                final int counters = buffer.getInt(offset, LITTLE_ENDIAN);
+                offset += Integer.BYTES;
+                for (int c = 0; c < counters; c++)
+                {
+                    offset += Integer.BYTES;
+                    offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+                }
+                count += counters;
+            }
+
+            final String[] owners = new String[count];
+            final String[] names = new String[count];
+            final long[] values = new long[count];
+
+            offset = HEADER_LENGTH;
+            int index = 0;
+            for (int n = 0; n < nuklei; n++)
+            {
+                final String owner = getString(buffer, offset);
+                offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+                final int counters = buffer.getInt(offset, LITTLE_ENDIAN);
+                offset += Integer.BYTES;
+                for (int c = 0; c < counters; c++)
+                {
+                    offset += Integer.BYTES;
+                    owners[index] = owner;
+                    names[index] = getString(buffer, offset);
+                    offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+                    index++;
+                }
+            }
+
+            for (int i = 0; i < count; i++)
+            {
+                values[i] = buffer.getLong(offset, LITTLE_ENDIAN);
+                offset += Long.BYTES;
+            }
+
+            snapshot = new CountersSnapshot(timestamp, owners, names, values);
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        return snapshot;
+    }
+
+    static String getString(
+        DirectBuffer buffer,
+        int offset)
+    {
+        final byte[] bytes = new byte[buffer.getShort(offset, LITTLE_ENDIAN)];
+        buffer.getBytes(offset + Short.BYTES, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static String key(
+        String owner,
+        String name)
+    {
+        return owner + '\u0000' + name;
+    }
+}
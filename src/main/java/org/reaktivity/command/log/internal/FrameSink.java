@@ -0,0 +1,34 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import org.agrona.DirectBuffer;
+
+interface FrameSink
+{
+    // interns a nukleus pair, frames of the pair are written with the returned id
+    int pair(
+        String receiver,
+        String sender);
+
+    void write(
+        int pair,
+        int ring,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int offset,
+        int length);
+}
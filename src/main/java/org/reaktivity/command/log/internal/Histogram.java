@@ -0,0 +1,125 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import java.util.Arrays;
+
+public final class Histogram
+{
+    private static final int LINEAR_LIMIT = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MIN_EXPONENT = Long.numberOfTrailingZeros(LINEAR_LIMIT);
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (Long.SIZE - 1 - MIN_EXPONENT) * SUB_BUCKET_COUNT;
+
+    private final long[] buckets;
+
+    private long count;
+    private long min;
+    private long max;
+    private long sum;
+
+    public Histogram()
+    {
+        this.buckets = new long[BUCKET_COUNT];
+        reset();
+    }
+
+    public void record(
+        long value)
+    {
+        final long clamped = Math.max(value, 0L);
+        buckets[index(clamped)]++;
+        count++;
+        sum += clamped;
+        min = Math.min(min, clamped);
+        max = Math.max(max, clamped);
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public long min()
+    {
+        return count != 0L ? min : 0L;
+    }
+
+    public long max()
+    {
+        return max;
+    }
+
+    public double mean()
+    {
+        return count != 0L ? (double) sum / count : 0.0;
+    }
+
+    public long percentile(
+        double percentile)
+    {
+        final long threshold = (long) Math.ceil(count * percentile / 100.0);
+
+        long seen = 0L;
+        for (int i = 0; i < buckets.length; i++)
+        {
+            seen += buckets[i];
+            if (seen != 0L && seen >= threshold)
+            {
+                return Math.min(upperBound(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    public void reset()
+    {
+        Arrays.fill(buckets, 0L);
+        count = 0L;
+        sum = 0L;
+        min = Long.MAX_VALUE;
+        max = 0L;
+    }
+
+    private static int index(
+        long value)
+    {
+        if (value < LINEAR_LIMIT)
+        {
+            return (int) value;
+        }
+
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return LINEAR_LIMIT + (exponent - MIN_EXPONENT) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long upperBound(
+        int index)
+    {
+        if (index < LINEAR_LIMIT)
+        {
+            return index;
+        }
+
+        final int exponent = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + MIN_EXPONENT;
+        final int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        final long lowerBound = (long) (SUB_BUCKET_COUNT | subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1L;
+    }
+}
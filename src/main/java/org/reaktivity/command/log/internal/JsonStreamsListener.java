@@ -0,0 +1,396 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.function.Consumer;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Long2LongHashMap;
+import org.reaktivity.command.log.internal.types.HttpHeaderFW;
+import org.reaktivity.command.log.internal.types.OctetsFW;
+import org.reaktivity.command.log.internal.types.String16FW;
+import org.reaktivity.command.log.internal.types.StringFW;
+import org.reaktivity.command.log.internal.types.TcpAddressFW;
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.HttpBeginExFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.TcpBeginExFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+public final class JsonStreamsListener implements StreamsListener
+{
+    private static final byte[] TIMESTAMP = "{\"timestamp\":".getBytes(UTF_8);
+    private static final byte[] TRACE = ",\"trace\":\"0x".getBytes(UTF_8);
+    private static final byte[] STREAM = "\",\"stream\":\"0x".getBytes(UTF_8);
+    private static final byte[] BUDGET = ",\"budget\":".getBytes(UTF_8);
+    private static final byte[] BEGIN = ",\"frame\":\"BEGIN\",\"source\":".getBytes(UTF_8);
+    private static final byte[] DATA = ",\"frame\":\"DATA\",\"length\":".getBytes(UTF_8);
+    private static final byte[] END = ",\"frame\":\"END\"".getBytes(UTF_8);
+    private static final byte[] ABORT = ",\"frame\":\"ABORT\"".getBytes(UTF_8);
+    private static final byte[] RESET = ",\"frame\":\"RESET\"".getBytes(UTF_8);
+    private static final byte[] WINDOW = ",\"frame\":\"WINDOW\",\"credit\":".getBytes(UTF_8);
+    private static final byte[] SOURCE_REF = ",\"sourceRef\":\"0x".getBytes(UTF_8);
+    private static final byte[] CORRELATION_ID = "\",\"correlationId\":\"0x".getBytes(UTF_8);
+    private static final byte[] AUTHORIZATION = ",\"authorization\":\"0x".getBytes(UTF_8);
+    private static final byte[] PADDING = ",\"padding\":".getBytes(UTF_8);
+    private static final byte[] FLAGS = ",\"flags\":".getBytes(UTF_8);
+    private static final byte[] GROUP_ID = ",\"groupId\":".getBytes(UTF_8);
+    private static final byte[] TCP_LOCAL_ADDRESS = ",\"tcp\":{\"localAddress\":".getBytes(UTF_8);
+    private static final byte[] TCP_LOCAL_PORT = ",\"localPort\":".getBytes(UTF_8);
+    private static final byte[] TCP_REMOTE_ADDRESS = ",\"remoteAddress\":".getBytes(UTF_8);
+    private static final byte[] TCP_REMOTE_PORT = ",\"remotePort\":".getBytes(UTF_8);
+    private static final byte[] HTTP_HEADERS = ",\"http\":{\"headers\":[".getBytes(UTF_8);
+    private static final byte[] HTTP_HEADER_NAME = "{\"name\":".getBytes(UTF_8);
+    private static final byte[] HTTP_HEADER_VALUE = ",\"value\":".getBytes(UTF_8);
+    private static final byte[] HTTP_HEADERS_END = "]}".getBytes(UTF_8);
+    private static final byte[] HTTP = "http".getBytes(UTF_8);
+    private static final byte[] TCP = "tcp".getBytes(UTF_8);
+
+    private final TcpBeginExFW tcpBeginExRO = new TcpBeginExFW();
+    private final HttpBeginExFW httpBeginExRO = new HttpBeginExFW();
+
+    private final byte[] streamDirection;
+    private final byte[] throttleDirection;
+    private final boolean targetHttp;
+    private final boolean targetTcp;
+    private final Logger out;
+    private final TextBuffer buffer;
+    private final Long2LongHashMap budgets;
+    private final Consumer<HttpHeaderFW> encodeHttpHeader;
+
+    private int headerCount;
+
+    public JsonStreamsListener(
+        String receiver,
+        String sender,
+        Logger out)
+    {
+        final String names = String.format(",\"sender\":\"%s\",\"receiver\":\"%s\"", escape(sender), escape(receiver));
+        this.streamDirection = (names + ",\"ring\":\"streams\"").getBytes(UTF_8);
+        this.throttleDirection = (names + ",\"ring\":\"throttle\"").getBytes(UTF_8);
+        this.targetHttp = receiver.startsWith("http");
+        this.targetTcp = receiver.equals("tcp");
+        this.out = out;
+        this.buffer = new TextBuffer(1024);
+        this.budgets = new Long2LongHashMap(-1L);
+        this.encodeHttpHeader = this::encodeHttpHeader;
+    }
+
+    @Override
+    public void onBegin(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long sourceRef,
+        long correlationId,
+        long authorization,
+        BeginFW begin)
+    {
+        if (!budgets.containsKey(streamId))
+        {
+            budgets.put(streamId, 0L);
+        }
+
+        // budgets are tracked for every frame, lines are only encoded when the logger takes them
+        if (out.enabled())
+        {
+            final StringFW source = begin.source();
+            final int sourceAt = source.offset() + Byte.BYTES;
+
+            encodeHeader(streamDirection, timestamp, traceId, streamId, budgets.get(streamId));
+            buffer.put(BEGIN).putJsonString(source.buffer(), sourceAt, source.limit())
+                  .put(SOURCE_REF).putHex(sourceRef, 16)
+                  .put(CORRELATION_ID).putHex(correlationId, 16).put((byte) '"')
+                  .put(AUTHORIZATION).putHex(authorization, 16).put((byte) '"');
+
+            final OctetsFW extension = begin.extension();
+            if (extension.sizeof() != 0)
+            {
+                final boolean sourceTcp = matches(source.buffer(), sourceAt, source.limit(), TCP, true);
+                if (sourceTcp || targetTcp)
+                {
+                    encodeTcp(tcpBeginExRO.wrap(extension.buffer(), extension.offset(), extension.limit()));
+                }
+
+                final boolean sourceHttp = matches(source.buffer(), sourceAt, source.limit(), HTTP, false);
+                if (sourceHttp && isHttpBeginEx(sourceRef, correlationId, sourceHttp))
+                {
+                    encodeHttp(httpBeginExRO.wrap(extension.buffer(), extension.offset(), extension.limit()));
+                }
+            }
+
+            flush();
+        }
+    }
+
+    @Override
+    public void onData(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int length,
+        int padding,
+        int flags,
+        long authorization,
+        DataFW data)
+    {
+        final long budget = debit(streamId, length + padding);
+
+        if (out.enabled())
+        {
+            encodeHeader(streamDirection, timestamp, traceId, streamId, budget);
+            buffer.put(DATA).putLong(length)
+                  .put(PADDING).putLong(padding)
+                  .put(FLAGS).putLong(flags)
+                  .put(AUTHORIZATION).putHex(authorization, 16).put((byte) '"');
+            flush();
+        }
+    }
+
+    @Override
+    public void onEnd(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        EndFW end)
+    {
+        final long budget = budgets.remove(streamId);
+
+        if (out.enabled())
+        {
+            encodeHeader(streamDirection, timestamp, traceId, streamId, budget);
+            buffer.put(END)
+                  .put(AUTHORIZATION).putHex(authorization, 16).put((byte) '"');
+            flush();
+        }
+    }
+
+    @Override
+    public void onAbort(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        AbortFW abort)
+    {
+        final long budget = budgets.remove(streamId);
+
+        if (out.enabled())
+        {
+            encodeHeader(streamDirection, timestamp, traceId, streamId, budget);
+            buffer.put(ABORT)
+                  .put(AUTHORIZATION).putHex(authorization, 16).put((byte) '"');
+            flush();
+        }
+    }
+
+    @Override
+    public void onReset(
+        long timestamp,
+        long traceId,
+        long streamId,
+        ResetFW reset)
+    {
+        final long budget = budgets.remove(streamId);
+
+        if (out.enabled())
+        {
+            encodeHeader(throttleDirection, timestamp, traceId, streamId, budget);
+            buffer.put(RESET);
+            flush();
+        }
+    }
+
+    @Override
+    public void onWindow(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int credit,
+        int padding,
+        long groupId,
+        WindowFW window)
+    {
+        final long budget = debit(streamId, -credit);
+
+        if (out.enabled())
+        {
+            encodeHeader(throttleDirection, timestamp, traceId, streamId, budget);
+            buffer.put(WINDOW).putLong(credit)
+                  .put(PADDING).putLong(padding)
+                  .put(GROUP_ID).putLong(groupId);
+            flush();
+        }
+    }
+
+    // closed streams are removed, so frames in flight after close report no budget
+    private long debit(
+        long streamId,
+        long amount)
+    {
+        long budget = budgets.get(streamId);
+        if (budget != -1L)
+        {
+            budget -= amount;
+            budgets.put(streamId, budget);
+        }
+        return budget;
+    }
+
+    private void encodeHeader(
+        byte[] direction,
+        long timestamp,
+        long traceId,
+        long streamId,
+        long budget)
+    {
+        buffer.reset()
+              .put(TIMESTAMP).putLong(timestamp)
+              .put(TRACE).putHex(traceId, 16)
+              .put(STREAM).putHex(streamId, 16).put((byte) '"')
+              .put(direction)
+              .put(BUDGET).putLong(budget);
+    }
+
+    private void encodeTcp(
+        TcpBeginExFW tcpBeginEx)
+    {
+        buffer.put(TCP_LOCAL_ADDRESS);
+        encodeAddress(tcpBeginEx.localAddress());
+        buffer.put(TCP_LOCAL_PORT).putLong(tcpBeginEx.localPort());
+        buffer.put(TCP_REMOTE_ADDRESS);
+        encodeAddress(tcpBeginEx.remoteAddress());
+        buffer.put(TCP_REMOTE_PORT).putLong(tcpBeginEx.remotePort());
+        buffer.put((byte) '}');
+    }
+
+    private void encodeAddress(
+        TcpAddressFW address)
+    {
+        switch (address.kind())
+        {
+        case TcpAddressFW.KIND_IPV4_ADDRESS:
+            final OctetsFW ipv4 = address.ipv4Address();
+            buffer.put((byte) '"');
+            for (int i = ipv4.offset(); i < ipv4.limit(); i++)
+            {
+                if (i != ipv4.offset())
+                {
+                    buffer.put((byte) '.');
+                }
+                buffer.putLong(ipv4.buffer().getByte(i) & 0xff);
+            }
+            buffer.put((byte) '"');
+            break;
+        case TcpAddressFW.KIND_IPV6_ADDRESS:
+            final OctetsFW ipv6 = address.ipv6Address();
+            buffer.put((byte) '"');
+            for (int i = ipv6.offset(); i + 1 < ipv6.limit(); i += 2)
+            {
+                if (i != ipv6.offset())
+                {
+                    buffer.put((byte) ':');
+                }
+                buffer.putHex((ipv6.buffer().getByte(i) & 0xff) << 8 | ipv6.buffer().getByte(i + 1) & 0xff, 4);
+            }
+            buffer.put((byte) '"');
+            break;
+        case TcpAddressFW.KIND_HOST:
+            final StringFW host = address.host();
+            buffer.putJsonString(host.buffer(), host.offset() + Byte.BYTES, host.limit());
+            break;
+        default:
+            buffer.putAscii("null");
+            break;
+        }
+    }
+
+    private void encodeHttp(
+        HttpBeginExFW httpBeginEx)
+    {
+        headerCount = 0;
+        buffer.put(HTTP_HEADERS);
+        httpBeginEx.headers().forEach(encodeHttpHeader);
+        buffer.put(HTTP_HEADERS_END);
+    }
+
+    private void encodeHttpHeader(
+        HttpHeaderFW header)
+    {
+        final StringFW name = header.name();
+        final String16FW value = header.value();
+
+        if (headerCount++ != 0)
+        {
+            buffer.put((byte) ',');
+        }
+
+        buffer.put(HTTP_HEADER_NAME).putJsonString(name.buffer(), name.offset() + Byte.BYTES, name.limit())
+              .put(HTTP_HEADER_VALUE).putJsonString(value.buffer(), value.offset() + Short.BYTES, value.limit())
+              .put((byte) '}');
+    }
+
+    private boolean isHttpBeginEx(
+        long sourceRef,
+        long correlationId,
+        boolean sourceHttp)
+    {
+        // same role rules as the text listener, keyed on the route reference parity and sign
+        final boolean initial = sourceRef != 0L;
+        final long typedRef = initial ? sourceRef : correlationId;
+        final boolean client = typedRef > 0L && (typedRef & 0x01L) != 0x00L;
+        final boolean server = typedRef > 0L && (typedRef & 0x01L) == 0x00L;
+        final boolean proxy = typedRef < 0L && (typedRef & 0x01L) == 0x00L;
+
+        return client ? (initial ? targetHttp : sourceHttp)
+             : server ? (initial ? sourceHttp : targetHttp)
+             : proxy && (sourceHttp || targetHttp);
+    }
+
+    private void flush()
+    {
+        buffer.put((byte) '}').put((byte) '\n');
+        out.write(buffer.array(), 0, buffer.limit());
+    }
+
+    private static boolean matches(
+        DirectBuffer buffer,
+        int offset,
+        int limit,
+        byte[] value,
+        boolean exact)
+    {
+        final int length = limit - offset;
+        boolean matches = exact ? length == value.length : length >= value.length;
+        for (int i = 0; matches && i < value.length; i++)
+        {
+            matches = buffer.getByte(offset + i) == value[i];
+        }
+        return matches;
+    }
+
+    private static String escape(
+        String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.reaktivity.command.log.internal.LogRoutesCommand.ROUTES_BUFFER_CAPACITY_DEFAULT;
+import static org.reaktivity.command.log.internal.LogRoutesCommand.ROUTES_BUFFER_CAPACITY_PROPERTY_NAME;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.command.log.internal.layouts.Layout;
+import org.reaktivity.command.log.internal.layouts.RoutesLayout;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.nukleus.Configuration;
+
+final class LayoutRegistry implements AutoCloseable
+{
+    private final ConfigurationUtil configUtil = new ConfigurationUtil();
+
+    private final int commandBufferCapacity;
+    private final int responseBufferCapacity;
+    private final int counterLabelsBufferCapacity;
+    private final int counterValuesBufferCapacity;
+    private final long streamsCapacity;
+    private final long throttleCapacity;
+    private final int routesCapacity;
+    private final Map<Path, Registration> registrationsByPath;
+    private final List<Registration> retired;
+
+    LayoutRegistry(
+        Configuration config)
+    {
+        this.commandBufferCapacity = config.commandBufferCapacity();
+        this.responseBufferCapacity = config.responseBufferCapacity();
+        this.counterLabelsBufferCapacity = config.counterLabelsBufferCapacity();
+        this.counterValuesBufferCapacity = config.counterValuesBufferCapacity();
+        this.streamsCapacity = config.streamsBufferCapacity();
+        this.throttleCapacity = config.throttleBufferCapacity();
+        this.routesCapacity = configUtil.getInteger(ROUTES_BUFFER_CAPACITY_PROPERTY_NAME, ROUTES_BUFFER_CAPACITY_DEFAULT);
+        this.registrationsByPath = new LinkedHashMap<>();
+        this.retired = new ArrayList<>();
+    }
+
+    synchronized ControlLayout control(
+        Path path)
+    {
+        return acquire(path, this::newControlLayout);
+    }
+
+    synchronized StreamsLayout streams(
+        Path path)
+    {
+        return acquire(path, this::newStreamsLayout);
+    }
+
+    synchronized RoutesLayout routes(
+        Path path)
+    {
+        return acquire(path, this::newRoutesLayout);
+    }
+
+    synchronized void release(
+        Layout layout)
+    {
+        Registration registration = null;
+
+        for (Registration candidate : registrationsByPath.values())
+        {
+            if (candidate.layout == layout)
+            {
+                registration = candidate;
+                break;
+            }
+        }
+
+        if (registration == null)
+        {
+            for (Registration candidate : retired)
+            {
+                if (candidate.layout == layout)
+                {
+                    registration = candidate;
+                    break;
+                }
+            }
+        }
+
+        if (registration != null && --registration.references == 0)
+        {
+            registrationsByPath.remove(registration.path, registration);
+            retired.remove(registration);
+            registration.layout.close();
+        }
+    }
+
+    synchronized boolean isStale(
+        Path path)
+    {
+        final Registration registration = registrationsByPath.get(path);
+        return registration != null && !Objects.equals(registration.fileKey, fileKey(path));
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        registrationsByPath.values().forEach(r -> r.layout.close());
+        retired.forEach(r -> r.layout.close());
+        registrationsByPath.clear();
+        retired.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Layout> T acquire(
+        Path path,
+        Function<Path, T> factory)
+    {
+        Registration registration = registrationsByPath.get(path);
+
+        if (registration != null && !Objects.equals(registration.fileKey, fileKey(path)))
+        {
+            // file deleted or recreated by a restarted reaktor, keep mapped until released
+            registrationsByPath.remove(path);
+            retired.add(registration);
+            registration = null;
+        }
+
+        if (registration == null)
+        {
+            final Object fileKey = fileKey(path);
+            registration = new Registration(path, fileKey, factory.apply(path));
+            registrationsByPath.put(path, registration);
+        }
+
+        registration.references++;
+
+        return (T) registration.layout;
+    }
+
+    private static Object fileKey(
+        Path path)
+    {
+        try
+        {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            final Object fileKey = attributes.fileKey();
+            return fileKey != null ? fileKey : attributes.creationTime();
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+    }
+
+    private ControlLayout newControlLayout(
+        Path path)
+    {
+        return new ControlLayout.Builder()
+                .controlPath(path)
+                .commandBufferCapacity(commandBufferCapacity)
+                .responseBufferCapacity(responseBufferCapacity)
+                .counterLabelsBufferCapacity(counterLabelsBufferCapacity)
+                .counterValuesBufferCapacity(counterValuesBufferCapacity)
+                .readonly(true)
+                .build();
+    }
+
+    private StreamsLayout newStreamsLayout(
+        Path path)
+    {
+        return new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(streamsCapacity)
+                .throttleCapacity(throttleCapacity)
+                .readonly(true)
+                .build();
+    }
+
+    private RoutesLayout newRoutesLayout(
+        Path path)
+    {
+        return new RoutesLayout.Builder()
+                .routesPath(path)
+                .routesBufferCapacity(routesCapacity)
+                .build();
+    }
+
+    private static final class Registration
+    {
+        private final Path path;
+        private final Object fileKey;
+        private final Layout layout;
+
+        private int references;
+
+        private Registration(
+            Path path,
+            Object fileKey,
+            Layout layout)
+        {
+            this.path = path;
+            this.fileKey = fileKey;
+            this.layout = layout;
+        }
+    }
+}
@@ -15,20 +15,38 @@
  */
 package org.reaktivity.command.log.internal;
 
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.commons.cli.Option.builder;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Properties;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingIdleStrategy;
+import org.agrona.concurrent.YieldingIdleStrategy;
 import org.reaktivity.nukleus.Configuration;
 
 public final class LogCommand
 {
+
+    private static final long MAX_PARK_NS = MILLISECONDS.toNanos(1L);
+    private static final long MIN_PARK_NS = MICROSECONDS.toNanos(10L);
+    private static final int MAX_YIELDS = 30;
+    private static final int MAX_SPINS = 20;
+
     public static void main(String[] args) throws Exception
     {
         CommandLineParser parser = new DefaultParser();
@@ -38,11 +56,72 @@ public final class LogCommand
         options.addOption(builder("t").hasArg()
                                       .required(false)
                                       .longOpt("type")
-                                      .desc("streams* | streams-nowait | counters | queues | routes")
+                                      .desc("streams* | streams-nowait | conformance | capture | replay | trace | ship | " +
+                                            "counters | history | history-export | queues | rings | rings-export | routes | " +
+                                            "metrics | rules, comma separated with optional :period")
                                       .build());
-        options.addOption(builder("d").longOpt("directory").hasArg().desc("configuration directory").build());
+        options.addOption(builder("d").longOpt("directory").hasArg().desc("configuration directories, comma separated").build());
+        options.addOption(builder("N").hasArg().longOpt("workers").desc("worker threads shared by all directories").build());
         options.addOption(builder("v").longOpt("verbose").desc("verbose output").build());
-        options.addOption(builder("i").hasArg().longOpt("interval").desc("run command continuously at interval").build());
+        options.addOption(builder("i").hasArg()
+                                      .longOpt("interval")
+                                      .desc("run command continuously at interval, seconds or milliseconds with ms suffix")
+                                      .build());
+        options.addOption(builder("r").longOpt("rates").desc("counters deltas and rates per second").build());
+        options.addOption(builder("s").hasArg().longOpt("sort").desc("counters order name* | value | delta").build());
+        options.addOption(builder("n").hasArg().longOpt("top").desc("counters limit per interval").build());
+        options.addOption(builder("u").hasArg().longOpt("sample").desc("queues sampling period in microseconds").build());
+        options.addOption(builder("p").hasArg().longOpt("port").desc("metrics port on localhost").build());
+        options.addOption(builder("c").longOpt("changed").desc("counters changed since previous interval").build());
+        options.addOption(builder("m").longOpt("monitor").desc("publish own counters to directory log/control").build());
+        options.addOption(builder("f").hasArg().longOpt("capture").desc("capture file to write or replay").build());
+        options.addOption(builder("C").hasArg().longOpt("collector").desc("ship frames to collector host:port").build());
+        options.addOption(builder("T").hasArg()
+                                      .longOpt("target")
+                                      .desc("replay directory, relative to directory, one streams file per captured pair")
+                                      .build());
+        options.addOption(builder("x").hasArg()
+                                      .longOpt("speed")
+                                      .desc("replay speed factor of captured timing, 0 for as fast as possible")
+                                      .build());
+        options.addOption(builder("j").longOpt("json").desc("streams output as newline delimited json").build());
+        options.addOption(builder("o").hasArg().longOpt("output").desc("output file instead of standard output").build());
+        options.addOption(builder("S").hasArg()
+                                      .longOpt("rotate-size")
+                                      .desc("rotate output file at uncompressed size, bytes with optional k, m or g suffix")
+                                      .build());
+        options.addOption(builder("R").hasArg()
+                                      .longOpt("rotate-interval")
+                                      .desc("rotate output file at interval, seconds or milliseconds with ms suffix")
+                                      .build());
+        options.addOption(builder("k").hasArg().longOpt("keep").desc("rotated output files to keep").build());
+        options.addOption(builder("z").longOpt("gzip").desc("gzip compress output files").build());
+        options.addOption(builder("W").hasArg()
+                                      .longOpt("snapshot")
+                                      .desc("write counters or rings snapshot file, or read rings snapshot file")
+                                      .build());
+        options.addOption(builder("D").hasArg()
+                                      .longOpt("diff")
+                                      .desc("counters relative to snapshot file, or second snapshot relative to first, " +
+                                            "comma separated")
+                                      .build());
+        options.addOption(builder("q").hasArg().longOpt("query").desc("history counters matching nukleus.name regex").build());
+        options.addOption(builder("M").hasArg().longOpt("series").desc("history series limit, default 1024").build());
+        options.addOption(builder("e").hasArg()
+                                      .longOpt("resolution")
+                                      .desc("history resolution, seconds or milliseconds with ms suffix")
+                                      .build());
+        options.addOption(builder("l").hasArg().longOpt("rules").desc("rules file, evaluated at interval").build());
+        options.addOption(builder("H").hasArg().longOpt("hook").desc("shell command run when a rule fires or clears").build());
+        options.addOption(builder("L").hasArg()
+                                      .longOpt("limit")
+                                      .desc("streams output lines per second per nukleus pair, optionally comma overall limit")
+                                      .build());
+        options.addOption(builder("w").hasArg()
+                                      .longOpt("idle")
+                                      .desc("idle strategy spin | yield | backoff[:spins,yields,minParkMicros,maxParkMicros] | " +
+                                            "sleep[:parkMicros]")
+                                      .build());
 
         CommandLine cmdline = parser.parse(options, args);
 
@@ -53,40 +132,454 @@ public final class LogCommand
         }
         else
         {
-            String directory = cmdline.getOptionValue("directory");
-            boolean verbose = cmdline.hasOption("verbose");
+            String[] directories = cmdline.getOptionValue("directory").split(",");
             String type = cmdline.getOptionValue("type", "streams");
-            final int interval = Integer.parseInt(cmdline.getOptionValue("interval", "0"));
 
-            Properties properties = new Properties();
-            properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, directory);
+            final Configuration[] configs = new Configuration[directories.length];
+            for (int i = 0; i < directories.length; i++)
+            {
+                Properties properties = new Properties();
+                properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, directories[i]);
+                configs[i] = new LogCommandConfiguration(properties);
+            }
+
+            final Configuration config = configs[0];
+            final String[] types = type.split(",");
+
+            try (LogCounters counters = cmdline.hasOption("monitor") ? new LogCounters(config) : new LogCounters())
+            {
+                if (configs.length == 1)
+                {
+                    try (LayoutRegistry layouts = new LayoutRegistry(config))
+                    {
+                        run(cmdline, config, layouts, counters, types);
+                    }
+                }
+                else
+                {
+                    runInstances(cmdline, configs, counters, types);
+                }
+            }
+        }
+    }
+
+    private static void run(
+        CommandLine cmdline,
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        String[] types) throws InterruptedException
+    {
+        final String type = types[0];
+        final Logger out = counters.logger(newOutput(cmdline, counters));
+        final TraceEventWriter trace = new TraceEventWriter(out);
+
+        if (types.length == 1 && type.indexOf(':') == -1)
+        {
+            Runnable command = newCommand(cmdline, config, layouts, counters, out, trace, type, 0);
+            final long interval = interval(cmdline, type);
+
+            do
+            {
+                command.run();
+                Thread.sleep(interval);
+            } while (interval > 0);
+        }
+        else
+        {
+            final AccountingIdleStrategy idleStrategy = newIdleStrategy(cmdline, counters, "scheduler",
+                () -> new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS));
+            final LogScheduler scheduler = new LogScheduler(idleStrategy);
+
+            schedule(cmdline, config, layouts, counters, out, trace, types, 0, scheduler);
+
+            scheduler.run();
+        }
+    }
+
+    private static void runInstances(
+        CommandLine cmdline,
+        Configuration[] configs,
+        LogCounters counters,
+        String[] types) throws InterruptedException
+    {
+        final Logger out = counters.logger(newOutput(cmdline, counters));
+
+        // one trace for all directories, each directory a trace process instead of a tagged line prefix
+        final TraceEventWriter trace = new TraceEventWriter(out);
+        final int defaultWorkers = Math.min(configs.length, Runtime.getRuntime().availableProcessors());
+        final int workers = Math.min(Integer.parseInt(cmdline.getOptionValue("workers", Integer.toString(defaultWorkers))),
+                configs.length);
 
-            final Configuration config = new LogCommandConfiguration(properties);
+        final LogScheduler[] shards = new LogScheduler[workers];
+        for (int i = 0; i < workers; i++)
+        {
+            shards[i] = new LogScheduler(newIdleStrategy(cmdline, counters, "worker" + i,
+                () -> new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS)));
+        }
+
+        // each directory is polled by one worker, directories spread evenly across workers,
+        // ring and counters capacities come from each directory's own configuration
+        final LayoutRegistry[] layouts = new LayoutRegistry[configs.length];
+        for (int i = 0; i < configs.length; i++)
+        {
+            final String tag = tag(configs[i]);
+            layouts[i] = new LayoutRegistry(configs[i]);
+            final Logger tagged = new TaggedLogger(tag, out);
+
+            schedule(cmdline, configs[i], layouts[i], counters.scope(tag), tagged, trace, types, i,
+                    shards[i % workers]);
+        }
+
+        final Thread[] threads = new Thread[workers];
+        for (int i = 1; i < workers; i++)
+        {
+            threads[i] = new Thread(shards[i], "worker" + i);
+            threads[i].start();
+        }
+
+        shards[0].run();
 
-            Runnable command = null;
+        // unmapped only once no worker can still be reading
+        for (int i = 1; i < workers; i++)
+        {
+            threads[i].join();
+        }
+
+        for (LayoutRegistry registry : layouts)
+        {
+            registry.close();
+        }
+    }
 
-            if ("streams".equals(type) || "streams-nowait".equals(type))
+    private static void schedule(
+        CommandLine cmdline,
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        TraceEventWriter trace,
+        String[] types,
+        int instance,
+        LogScheduler scheduler)
+    {
+        for (String scheduled : types)
+        {
+            final int colonAt = scheduled.indexOf(':');
+            final String name = colonAt != -1 ? scheduled.substring(0, colonAt) : scheduled;
+            final long period = colonAt != -1 ? millis(scheduled.substring(colonAt + 1)) : interval(cmdline, name);
+            final LogCounters scoped = types.length > 1 ? counters.scope(name) : counters;
+            final Runnable command = newCommand(cmdline, config, layouts, scoped, out, trace, name, instance);
+
+            if (command instanceof LogStreamsCommand)
             {
-                command = new LogStreamsCommand(config, System.out::printf, verbose, "streams".equals(type));
+                final LogStreamsCommand streams = (LogStreamsCommand) command;
+                if (streams.continuous())
+                {
+                    scheduler.poll(streams::process);
+                }
+                else
+                {
+                    scheduler.poll(streams::process, streams::finish);
+                }
             }
-            else if ("counters".equals(type))
+            else if (command instanceof LogRulesCommand)
             {
-                command = new LogCountersCommand(config, System.out::printf, verbose);
+                scheduler.poll(((LogRulesCommand) command)::process);
             }
-            else if ("queues".equals(type))
+            else if (command instanceof LogMetricsCommand)
             {
-                command = new LogQueueDepthCommand(config, System.out::printf, verbose);
+                scheduler.start(command, name);
             }
-            else if ("routes".equals(type))
+            else
             {
-                command = new LogRoutesCommand(config, System.out::printf, verbose);
+                // without a period the command runs once, as it does on its own
+                scheduler.schedule(command, MILLISECONDS.toNanos(period));
             }
+        }
+    }
 
-            do
-            {
-                command.run();
-                Thread.sleep(TimeUnit.SECONDS.toMillis(interval));
-            } while (interval > 0);
+    private static Logger newOutput(
+        CommandLine cmdline,
+        LogCounters counters)
+    {
+        Logger output = new PrintStreamLogger(System.out);
+
+        if (cmdline.hasOption("output"))
+        {
+            final long maxBytes = bytes(cmdline.getOptionValue("rotate-size", "0"));
+            final long maxMillis = millis(cmdline.getOptionValue("rotate-interval", "0"));
+            final int retain = Integer.parseInt(cmdline.getOptionValue("keep", "10"));
+            final boolean gzip = cmdline.hasOption("gzip");
+            final RotatingFileLogger file = new RotatingFileLogger(Paths.get(cmdline.getOptionValue("output")),
+                    maxBytes, maxMillis, retain, gzip, counters.counter("output.queue.depth"),
+                    counters.counter("output.dropped.bytes"));
+            Runtime.getRuntime().addShutdownHook(new Thread(file::close));
+            output = file;
+        }
+
+        return output;
+    }
+
+    private static Runnable newCommand(
+        CommandLine cmdline,
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        TraceEventWriter trace,
+        String type,
+        int instance)
+    {
+        final boolean verbose = cmdline.hasOption("verbose");
+
+        Runnable command = null;
+
+        if ("streams".equals(type) || "streams-nowait".equals(type))
+        {
+            final AccountingIdleStrategy idleStrategy =
+                    newIdleStrategy(cmdline, counters, "streams", LogStreamsCommand::newIdleStrategy);
+            final boolean continuous = "streams".equals(type);
+            final String[] limits = cmdline.getOptionValue("limit", "0").split(",");
+            final long pairLimit = Long.parseLong(limits[0]);
+            final long globalLimit = limits.length > 1 ? Long.parseLong(limits[1]) : 0L;
+            final StreamsListener.Factory listeners = cmdline.hasOption("json")
+                    ? (r, s, o) -> new JsonStreamsListener(r, s, o)
+                    : (r, s, o) -> new LoggingStreamsListener(r, s, o, verbose);
+            command = new LogStreamsCommand(config, layouts, counters, out, verbose, continuous, idleStrategy, listeners,
+                    pairLimit, globalLimit);
+        }
+        else if ("conformance".equals(type))
+        {
+            final AccountingIdleStrategy idleStrategy =
+                    newIdleStrategy(cmdline, counters, "streams", LogStreamsCommand::newIdleStrategy);
+            command = new LogStreamsCommand(config, layouts, counters, out, verbose, true, idleStrategy,
+                    (r, s, o) -> new ConformanceStreamsListener(r, s, o));
+        }
+        else if ("capture".equals(type))
+        {
+            final AccountingIdleStrategy idleStrategy =
+                    newIdleStrategy(cmdline, counters, "streams", LogStreamsCommand::newIdleStrategy);
+            final CaptureWriter capture = new CaptureWriter(Paths.get(cmdline.getOptionValue("capture")));
+            Runtime.getRuntime().addShutdownHook(new Thread(capture::close));
+            command = new LogStreamsCommand(config, layouts, counters, out, verbose, true, idleStrategy,
+                    (r, s, o) -> new CaptureStreamsListener(r, s, capture));
+        }
+        else if ("ship".equals(type))
+        {
+            final AccountingIdleStrategy idleStrategy =
+                    newIdleStrategy(cmdline, counters, "streams", LogStreamsCommand::newIdleStrategy);
+            final TcpFrameSink sink = new TcpFrameSink(address(cmdline.getOptionValue("collector")), counters);
+            Runtime.getRuntime().addShutdownHook(new Thread(sink::close));
+            command = new LogStreamsCommand(config, layouts, counters, out, verbose, true, idleStrategy,
+                    (r, s, o) -> new CaptureStreamsListener(r, s, sink));
+        }
+        else if ("trace".equals(type))
+        {
+            final AccountingIdleStrategy idleStrategy =
+                    newIdleStrategy(cmdline, counters, "streams", LogStreamsCommand::newIdleStrategy);
+            trace.processName(instance + 1, tag(config));
+            command = new LogStreamsCommand(config, layouts, counters, out, verbose, true, idleStrategy,
+                    (r, s, o) -> new TraceEventStreamsListener(r, s, trace, instance + 1));
+        }
+        else if ("replay".equals(type))
+        {
+            command = newReplayCommand(cmdline, config, out, verbose);
+        }
+        else if ("counters".equals(type))
+        {
+            final boolean rates = cmdline.hasOption("rates");
+            final LogCountersCommand.Order order =
+                    LogCountersCommand.Order.valueOf(cmdline.getOptionValue("sort", "name").toUpperCase());
+            final int limit = Integer.parseInt(cmdline.getOptionValue("top", Integer.toString(Integer.MAX_VALUE)));
+            final boolean changedOnly = cmdline.hasOption("changed");
+            final String snapshot = cmdline.getOptionValue("snapshot");
+            final String[] diff = cmdline.hasOption("diff") ? cmdline.getOptionValue("diff").split(",") : new String[0];
+            final CountersSnapshot baseline = diff.length > 0 ? CountersSnapshot.read(Paths.get(diff[0])) : null;
+            final CountersSnapshot current = diff.length > 1 ? CountersSnapshot.read(Paths.get(diff[1])) : null;
+            command = new LogCountersCommand(config, layouts, out, verbose, rates, order, limit, changedOnly,
+                    snapshot != null ? Paths.get(snapshot) : null, baseline, current);
+        }
+        else if ("history".equals(type))
+        {
+            command = newHistoryCommand(cmdline, config, layouts, counters, out, verbose);
+        }
+        else if ("history-export".equals(type))
+        {
+            final String query = cmdline.getOptionValue("query");
+            final long resolution = millis(cmdline.getOptionValue("resolution", "1"));
+            command = new LogHistoryExportCommand(config, out, query != null ? Pattern.compile(query) : null, resolution);
+        }
+        else if ("rules".equals(type))
+        {
+            final AccountingIdleStrategy idleStrategy =
+                    newIdleStrategy(cmdline, counters, "rules", LogStreamsCommand::newIdleStrategy);
+            final long period = millis(cmdline.getOptionValue("interval", "1"));
+            command = new LogRulesCommand(config, layouts, counters, out, verbose, idleStrategy,
+                    Paths.get(cmdline.getOptionValue("rules")), period, cmdline.getOptionValue("hook"));
+        }
+        else if ("queues".equals(type))
+        {
+            final long samplePeriod = MICROSECONDS.toNanos(Long.parseLong(cmdline.getOptionValue("sample", "0")));
+            command = new LogQueueDepthCommand(config, layouts, out, verbose, samplePeriod);
+        }
+        else if ("rings".equals(type))
+        {
+            command = new LogRingsCommand(config, layouts, out, verbose, Paths.get(cmdline.getOptionValue("snapshot", "rings")));
+        }
+        else if ("rings-export".equals(type))
+        {
+            command = new LogRingsExportCommand(out, Paths.get(cmdline.getOptionValue("snapshot", "rings")));
+        }
+        else if ("metrics".equals(type))
+        {
+            // one port per directory, counting up from the given port
+            final int port = Integer.parseInt(cmdline.getOptionValue("port", "9095")) + instance;
+            command = new LogMetricsCommand(config, layouts, out, verbose, port);
+        }
+        else if ("routes".equals(type))
+        {
+            final IdleStrategy idleStrategy = newIdleStrategy(cmdline, counters, "routes", LogRoutesCommand::newIdleStrategy);
+            command = new LogRoutesCommand(config, layouts, out, verbose, idleStrategy);
+        }
+        else
+        {
+            throw new IllegalArgumentException(type);
+        }
+
+        return command;
+    }
+
+    private static AccountingIdleStrategy newIdleStrategy(
+        CommandLine cmdline,
+        LogCounters counters,
+        String name,
+        Supplier<IdleStrategy> defaultStrategy)
+    {
+        final String idle = cmdline.getOptionValue("idle");
+        return new AccountingIdleStrategy(idle != null ? newIdleStrategy(idle) : defaultStrategy.get(),
+                counters.counter(name + ".idle.nanos"), counters.counter(name + ".work.nanos"));
+    }
+
+    private static IdleStrategy newIdleStrategy(
+        String idle)
+    {
+        final int colonAt = idle.indexOf(':');
+        final String name = colonAt != -1 ? idle.substring(0, colonAt) : idle;
+        final String[] params = colonAt != -1 ? idle.substring(colonAt + 1).split(",") : new String[0];
+
+        IdleStrategy idleStrategy = null;
+
+        if ("spin".equals(name))
+        {
+            idleStrategy = new BusySpinIdleStrategy();
         }
+        else if ("yield".equals(name))
+        {
+            idleStrategy = new YieldingIdleStrategy();
+        }
+        else if ("backoff".equals(name))
+        {
+            final long maxSpins = params.length > 0 ? Long.parseLong(params[0]) : MAX_SPINS;
+            final long maxYields = params.length > 1 ? Long.parseLong(params[1]) : MAX_YIELDS;
+            final long minParkNanos = params.length > 2 ? MICROSECONDS.toNanos(Long.parseLong(params[2])) : MIN_PARK_NS;
+            final long maxParkNanos = params.length > 3 ? MICROSECONDS.toNanos(Long.parseLong(params[3])) : MAX_PARK_NS;
+            idleStrategy = new BackoffIdleStrategy(maxSpins, maxYields, minParkNanos, maxParkNanos);
+        }
+        else if ("sleep".equals(name))
+        {
+            final long parkMicros = params.length > 0 ? Long.parseLong(params[0]) : MILLISECONDS.toMicros(1L);
+            idleStrategy = new SleepingIdleStrategy(MICROSECONDS.toNanos(parkMicros));
+        }
+        else
+        {
+            throw new IllegalArgumentException(idle);
+        }
+
+        return idleStrategy;
+    }
+
+    private static String tag(
+        Configuration config)
+    {
+        final Path directory = config.directory();
+        final Path fileName = directory.getFileName();
+        return fileName != null ? fileName.toString() : directory.toString();
+    }
+
+    private static LogHistoryCommand newHistoryCommand(
+        CommandLine cmdline,
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        boolean verbose)
+    {
+        final int maxSeries = Integer.parseInt(cmdline.getOptionValue("series",
+                Integer.toString(LogHistoryCommand.DEFAULT_MAX_SERIES)));
+
+        // every resolution is one mapping of series times slots values
+        if (maxSeries < 1 || maxSeries > LogHistoryCommand.MAX_SERIES)
+        {
+            throw new IllegalArgumentException(String.format("--series must be between 1 and %d", LogHistoryCommand.MAX_SERIES));
+        }
+
+        final LogHistoryCommand history = new LogHistoryCommand(config, layouts, counters, out, verbose, maxSeries);
+        Runtime.getRuntime().addShutdownHook(new Thread(history::close));
+        return history;
+    }
+
+    private static LogReplayCommand newReplayCommand(
+        CommandLine cmdline,
+        Configuration config,
+        Logger out,
+        boolean verbose)
+    {
+        // replayed rings need a consumer, so the caller names the directory a reaktor reads from
+        if (!cmdline.hasOption("target"))
+        {
+            throw new IllegalArgumentException("replay requires --target");
+        }
+
+        final double speed = Double.parseDouble(cmdline.getOptionValue("speed", "1"));
+        return new LogReplayCommand(config, out, verbose, Paths.get(cmdline.getOptionValue("capture")),
+                Paths.get(cmdline.getOptionValue("target")), speed, LogReplayCommand.DEFAULT_STALL_MILLIS);
+    }
+
+    private static InetSocketAddress address(
+        String hostAndPort)
+    {
+        final int colonAt = hostAndPort.lastIndexOf(':');
+        return new InetSocketAddress(hostAndPort.substring(0, colonAt), Integer.parseInt(hostAndPort.substring(colonAt + 1)));
+    }
+
+    private static long bytes(
+        String size)
+    {
+        final int last = size.length() - 1;
+        final char unit = Character.toLowerCase(size.charAt(last));
+        final int shift = unit == 'k' ? 10 : unit == 'm' ? 20 : unit == 'g' ? 30 : 0;
+
+        return shift != 0
+                ? Long.parseLong(size.substring(0, last)) << shift
+                : Long.parseLong(size);
+    }
+
+    private static long interval(
+        CommandLine cmdline,
+        String type)
+    {
+        final boolean rates = cmdline.hasOption("rates") && !cmdline.hasOption("diff");
+        final boolean sampling = cmdline.hasOption("sample");
+        final String defaultInterval = "history".equals(type) ? "100ms" : rates || sampling ? "1" : "0";
+        return millis(cmdline.getOptionValue("interval", defaultInterval));
+    }
+
+    private static long millis(
+        String interval)
+    {
+        return interval.endsWith("ms")
+                ? Long.parseLong(interval.substring(0, interval.length() - 2))
+                : SECONDS.toMillis(Long.parseLong(interval));
     }
 }
@@ -0,0 +1,243 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.agrona.LangUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.nukleus.Configuration;
+
+final class LogCounters implements AutoCloseable
+{
+    private final Path controlPath;
+    private final ControlLayout layout;
+    private final CountersManager manager;
+    private final AtomicCounter discard;
+    private final Object lock;
+    private final String prefix;
+
+    LogCounters()
+    {
+        this.controlPath = null;
+        this.layout = null;
+        this.manager = null;
+        this.discard = new CountersManager(new UnsafeBuffer(new byte[1024]), new UnsafeBuffer(new byte[512]))
+                .newCounter("discard");
+        this.lock = this;
+        this.prefix = "";
+    }
+
+    private LogCounters(
+        LogCounters parent,
+        String prefix)
+    {
+        // scoped view, owns nothing so close leaves the control file alone
+        this.controlPath = null;
+        this.layout = null;
+        this.manager = parent.manager;
+        this.discard = parent.discard;
+        this.lock = parent.lock;
+        this.prefix = prefix;
+    }
+
+    LogCounters(
+        Configuration config)
+    {
+        this.controlPath = config.directory().resolve("log").resolve("control");
+
+        try
+        {
+            Files.createDirectories(controlPath.getParent());
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        // same capacities as reaktor control files, so the counters command can read it
+        this.layout = new ControlLayout.Builder()
+                .controlPath(controlPath)
+                .commandBufferCapacity(config.commandBufferCapacity())
+                .responseBufferCapacity(config.responseBufferCapacity())
+                .counterLabelsBufferCapacity(config.counterLabelsBufferCapacity())
+                .counterValuesBufferCapacity(config.counterValuesBufferCapacity())
+                .readonly(false)
+                .build();
+        controlPath.toFile().deleteOnExit();
+        this.manager = new CountersManager(layout.counterLabelsBuffer(), layout.counterValuesBuffer());
+        this.discard = null;
+        this.lock = this;
+        this.prefix = "";
+    }
+
+    // labels of the returned view start with name, so instances and commands do not share labels
+    LogCounters scope(
+        String name)
+    {
+        return new LogCounters(this, prefix + name + ".");
+    }
+
+    // counters are allocated from parallel discovery and from every worker
+    AtomicCounter counter(
+        String name)
+    {
+        synchronized (lock)
+        {
+            return manager != null ? manager.newCounter(prefix + name) : discard;
+        }
+    }
+
+    void release(
+        AtomicCounter counter)
+    {
+        synchronized (lock)
+        {
+            if (counter != discard)
+            {
+                counter.close();
+            }
+        }
+    }
+
+    Logger logger(
+        Logger out)
+    {
+        Logger logger = out;
+
+        if (manager != null)
+        {
+            logger = new CountingLogger(out, counter("output.lines"), counter("output.bytes"));
+        }
+
+        return logger;
+    }
+
+    private static final class CountingLogger implements Logger
+    {
+        private final Logger out;
+        private final AtomicCounter lines;
+        private final AtomicCounter bytes;
+
+        private CountingLogger(
+            Logger out,
+            AtomicCounter lines,
+            AtomicCounter bytes)
+        {
+            this.out = out;
+            this.lines = lines;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void printf(
+            String format,
+            Object... args)
+        {
+            final String output = String.format(format, args);
+            out.printf("%s", output);
+
+            long newlines = 0L;
+            long encoded = 0L;
+            for (int i = 0; i < output.length(); i++)
+            {
+                final char ch = output.charAt(i);
+                if (ch == '\n')
+                {
+                    newlines++;
+                }
+                encoded += utf8Length(ch);
+            }
+
+            lines.add(newlines);
+            bytes.add(encoded);
+        }
+
+        @Override
+        public void write(
+            byte[] bytes,
+            int offset,
+            int length)
+        {
+            out.write(bytes, offset, length);
+
+            long newlines = 0L;
+            for (int i = offset; i < offset + length; i++)
+            {
+                if (bytes[i] == '\n')
+                {
+                    newlines++;
+                }
+            }
+
+            this.lines.add(newlines);
+            this.bytes.add(length);
+        }
+
+        // surrogate pairs encode as four bytes, counted on the high surrogate
+        private static int utf8Length(
+            char ch)
+        {
+            int length;
+
+            if (ch < 0x80)
+            {
+                length = 1;
+            }
+            else if (ch < 0x800)
+            {
+                length = 2;
+            }
+            else if (Character.isHighSurrogate(ch))
+            {
+                length = 4;
+            }
+            else if (Character.isLowSurrogate(ch))
+            {
+                length = 0;
+            }
+            else
+            {
+                length = 3;
+            }
+
+            return length;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (layout != null)
+        {
+            layout.close();
+
+            try
+            {
+                Files.deleteIfExists(controlPath);
+            }
+            catch (IOException ex)
+            {
+                LangUtil.rethrowUnchecked(ex);
+            }
+        }
+    }
+}
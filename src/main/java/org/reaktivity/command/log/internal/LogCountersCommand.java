@@ -15,41 +15,94 @@
  */
 package org.reaktivity.command.log.internal;
 
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
+
+import org.agrona.ExpandableArrayBuffer;
 import org.agrona.LangUtil;
-import org.agrona.concurrent.status.CountersManager;
+import org.reaktivity.command.log.internal.counters.CountersIndex;
 import org.reaktivity.command.log.internal.layouts.ControlLayout;
 import org.reaktivity.nukleus.Configuration;
 
 public final class LogCountersCommand implements Runnable
 {
+    public enum Order
+    {
+        NAME,
+        VALUE,
+        DELTA
+    }
+
     private final Path directory;
     private final boolean verbose;
-    private final int commandBufferCapacity;
-    private final int responseBufferCapacity;
-    private final int counterLabelsBufferCapacity;
-    private final int counterValuesBufferCapacity;
+    private final LayoutRegistry layouts;
     private final Logger out;
-    private final Map<Path, CountersManager> countersByPath;
+    private final Map<Path, NukleusCounters> countersByPath;
+    private final boolean rates;
+    private final Order order;
+    private final int limit;
+    private final boolean changedOnly;
+    private final Path snapshot;
+    private final CountersSnapshot baseline;
+    private final CountersSnapshot current;
+    private final ExpandableArrayBuffer snapshotLabels;
+    private final ExpandableArrayBuffer snapshotValues;
+    private final boolean[] baselineMatched;
+
+    private String[] rowOwners;
+    private String[] rowNames;
+    private long[] rowValues;
+    private long[] rowDeltas;
+    private long[] rowKeys;
+    private int[] rowOrder;
+    private int rowCount;
+    private long sampledAt;
 
     LogCountersCommand(
         Configuration config,
+        LayoutRegistry layouts,
         Logger out,
-        boolean verbose)
+        boolean verbose,
+        boolean rates,
+        Order order,
+        int limit,
+        boolean changedOnly,
+        Path snapshot,
+        CountersSnapshot baseline,
+        CountersSnapshot current)
     {
         this.directory = config.directory();
         this.verbose = verbose;
-        this.commandBufferCapacity = config.commandBufferCapacity();
-        this.responseBufferCapacity = config.responseBufferCapacity();
-        this.counterLabelsBufferCapacity = config.counterLabelsBufferCapacity();
-        this.counterValuesBufferCapacity = config.counterValuesBufferCapacity();
+        this.layouts = layouts;
         this.out = out;
         this.countersByPath = new LinkedHashMap<>();
+        this.rates = rates;
+        this.order = order;
+        this.limit = limit;
+        this.changedOnly = changedOnly;
+        this.snapshot = snapshot;
+        this.baseline = baseline;
+        this.current = current;
+        this.snapshotLabels = new ExpandableArrayBuffer(64 * 1024);
+        this.snapshotValues = new ExpandableArrayBuffer(64 * 1024);
+        this.baselineMatched = baseline != null ? new boolean[baseline.count()] : null;
+        this.rowOwners = new String[0];
+        this.rowNames = new String[0];
+        this.rowValues = new long[0];
+        this.rowDeltas = new long[0];
+        this.rowKeys = new long[0];
+        this.rowOrder = new int[0];
     }
 
     private boolean isControlFile(
@@ -72,43 +125,405 @@ public final class LogCountersCommand implements Runnable
     private void counters(
         Path controlPath)
     {
-        String owner = controlPath.getName(controlPath.getNameCount() - 2).toString();
-        CountersManager manager = countersByPath.computeIfAbsent(controlPath, this::newCountersManager);
-        manager.forEach((id, name) -> out.printf(
-                "{" +
-                "\"nukleus\": \"%s\"," +
-                "\"name\": \"%s\"," +
-                "\"value\":%,d" +
-                "}\n", owner, name, manager.getCounterValue(id)));
+        NukleusCounters counters = countersByPath.computeIfAbsent(controlPath, this::newNukleusCounters);
+        counters.sample();
+    }
+
+    private void onCounter(
+        String owner,
+        String name,
+        boolean primed,
+        long value,
+        long delta)
+    {
+        if ((!changedOnly || delta != 0L) && (!rates || primed))
+        {
+            ensureRowCapacity(rowCount + 1);
+            rowOwners[rowCount] = owner;
+            rowNames[rowCount] = name;
+            rowValues[rowCount] = value;
+            rowDeltas[rowCount] = delta;
+            rowCount++;
+        }
+    }
+
+    private void printRows(
+        long elapsedNanos)
+    {
+        for (int row = 0; row < rowCount; row++)
+        {
+            rowOrder[row] = row;
+            switch (order)
+            {
+            case VALUE:
+                rowKeys[row] = rowValues[row];
+                break;
+            case DELTA:
+                rowKeys[row] = Math.abs(rowDeltas[row]);
+                break;
+            default:
+                break;
+            }
+        }
+
+        sortRows(0, rowCount - 1);
+
+        final double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1L);
+        final int rows = Math.min(rowCount, limit);
+        for (int i = 0; i < rows; i++)
+        {
+            final int row = rowOrder[i];
+            final String owner = rowOwners[row];
+            final String name = rowNames[row];
+
+            if (rates)
+            {
+                final double rate = elapsedSeconds > 0.0 ? rowDeltas[row] / elapsedSeconds : 0.0;
+                out.printf(
+                        "{" +
+                        "\"nukleus\": \"%s\"," +
+                        "\"name\": \"%s\"," +
+                        "\"value\":%,d," +
+                        "\"delta\":%,d," +
+                        "\"rate\":%,.2f" +
+                        "}\n", owner, name, rowValues[row], rowDeltas[row], rate);
+            }
+            else if (baseline != null)
+            {
+                out.printf(
+                        "{" +
+                        "\"nukleus\": \"%s\"," +
+                        "\"name\": \"%s\"," +
+                        "\"value\":%,d," +
+                        "\"delta\":%,d" +
+                        "}\n", owner, name, rowValues[row], rowDeltas[row]);
+            }
+            else
+            {
+                out.printf(
+                        "{" +
+                        "\"nukleus\": \"%s\"," +
+                        "\"name\": \"%s\"," +
+                        "\"value\":%,d" +
+                        "}\n", owner, name, rowValues[row]);
+            }
+        }
+
+        clearRows();
+    }
+
+    private void clearRows()
+    {
+        Arrays.fill(rowOwners, 0, rowCount, null);
+        Arrays.fill(rowNames, 0, rowCount, null);
+        rowCount = 0;
+    }
+
+    private void ensureRowCapacity(
+        int capacity)
+    {
+        if (capacity > rowValues.length)
+        {
+            final int newCapacity = Math.max(capacity, rowValues.length << 1);
+            rowOwners = Arrays.copyOf(rowOwners, newCapacity);
+            rowNames = Arrays.copyOf(rowNames, newCapacity);
+            rowValues = Arrays.copyOf(rowValues, newCapacity);
+            rowDeltas = Arrays.copyOf(rowDeltas, newCapacity);
+            rowKeys = Arrays.copyOf(rowKeys, newCapacity);
+            rowOrder = Arrays.copyOf(rowOrder, newCapacity);
+        }
     }
 
-    private CountersManager newCountersManager(Path path)
+    // by nukleus then name, otherwise by descending key
+    private int compareRows(
+        int left,
+        int right)
     {
-        ControlLayout layout = new ControlLayout.Builder()
-                .controlPath(path)
-                .commandBufferCapacity(commandBufferCapacity)
-                .responseBufferCapacity(responseBufferCapacity)
-                .counterLabelsBufferCapacity(counterLabelsBufferCapacity)
-                .counterValuesBufferCapacity(counterValuesBufferCapacity)
-                .readonly(true)
-                .build();
+        int comparison;
+
+        if (order == Order.NAME)
+        {
+            comparison = rowOwners[left].compareTo(rowOwners[right]);
+            if (comparison == 0)
+            {
+                comparison = rowNames[left].compareTo(rowNames[right]);
+            }
+        }
+        else
+        {
+            comparison = Long.compare(rowKeys[right], rowKeys[left]);
+        }
 
-        return new CountersManager(layout.counterLabelsBuffer(), layout.counterValuesBuffer());
+        return comparison;
+    }
+
+    private void sortRows(
+        int low,
+        int high)
+    {
+        final int[] order = rowOrder;
+
+        while (low < high)
+        {
+            final int pivot = order[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j)
+            {
+                while (compareRows(order[i], pivot) < 0)
+                {
+                    i++;
+                }
+                while (compareRows(order[j], pivot) > 0)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    final int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (j - low < high - i)
+            {
+                sortRows(low, j);
+                low = i;
+            }
+            else
+            {
+                sortRows(i, high);
+                high = j;
+            }
+        }
+    }
+
+    private NukleusCounters newNukleusCounters(
+        Path controlPath)
+    {
+        String owner = controlPath.getName(controlPath.getNameCount() - 2).toString();
+        ControlLayout layout = layouts.control(controlPath);
+        return new NukleusCounters(owner, layout);
+    }
+
+    private void releaseStale()
+    {
+        for (Iterator<Map.Entry<Path, NukleusCounters>> i = countersByPath.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry<Path, NukleusCounters> entry = i.next();
+            if (layouts.isStale(entry.getKey()))
+            {
+                layouts.release(entry.getValue().layout);
+                i.remove();
+            }
+        }
     }
 
     @Override
     public void run()
     {
+        if (current != null)
+        {
+            diffSnapshots();
+            return;
+        }
+
+        releaseStale();
+
+        if (baseline != null)
+        {
+            Arrays.fill(baselineMatched, false);
+        }
+
         try (Stream<Path> files = Files.walk(directory, 2))
         {
             files.filter(this::isControlFile)
                  .peek(this::onDiscovered)
                  .forEach(this::counters);
-            out.printf("\n");
+
+            if (baseline != null)
+            {
+                onRemoved();
+            }
+
+            if (snapshot != null)
+            {
+                writeSnapshot();
+                clearRows();
+            }
+            else
+            {
+                final long now = System.nanoTime();
+                final long elapsedNanos = baseline != null
+                        ? TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - baseline.timestamp())
+                        : now - sampledAt;
+                printRows(elapsedNanos);
+                sampledAt = now;
+
+                out.printf("\n");
+            }
         }
         catch (IOException ex)
         {
             LangUtil.rethrowUnchecked(ex);
         }
     }
+
+    private void diffSnapshots()
+    {
+        Arrays.fill(baselineMatched, false);
+
+        for (int i = 0; i < current.count(); i++)
+        {
+            final String owner = current.owner(i);
+            final String name = current.name(i);
+            final long value = current.value(i);
+            onCounter(owner, name, true, value, value - baselineValue(baseline.position(owner, name)));
+        }
+
+        onRemoved();
+
+        printRows(TimeUnit.MILLISECONDS.toNanos(current.timestamp() - baseline.timestamp()));
+
+        out.printf("\n");
+    }
+
+    private long baselineValue(
+        int position)
+    {
+        long value = 0L;
+
+        if (position != -1)
+        {
+            baselineMatched[position] = true;
+            value = baseline.value(position);
+        }
+
+        return value;
+    }
+
+    private void onRemoved()
+    {
+        // counters in the baseline that no longer exist read as zero
+        for (int i = 0; i < baselineMatched.length; i++)
+        {
+            if (!baselineMatched[i])
+            {
+                onCounter(baseline.owner(i), baseline.name(i), true, 0L, -baseline.value(i));
+            }
+        }
+    }
+
+    private void writeSnapshot() throws IOException
+    {
+        final long startedAt = System.nanoTime();
+
+        int labelsLimit = CountersSnapshot.putHeader(snapshotLabels, System.currentTimeMillis(), countersByPath.size());
+        int valuesLimit = 0;
+
+        // label table for every nukleus first, then raw values, so the values block is a straight copy
+        for (NukleusCounters counters : countersByPath.values())
+        {
+            final CountersIndex index = counters.index;
+            final int count = index.count();
+
+            labelsLimit = CountersSnapshot.putString(snapshotLabels, labelsLimit, counters.ownerBytes);
+            snapshotLabels.putInt(labelsLimit, count, LITTLE_ENDIAN);
+            labelsLimit += Integer.BYTES;
+
+            for (int i = 0; i < count; i++)
+            {
+                final int id = index.id(i);
+                snapshotLabels.putInt(labelsLimit, id, LITTLE_ENDIAN);
+                labelsLimit = CountersSnapshot.putString(snapshotLabels, labelsLimit + Integer.BYTES, counters.labelBytes(id));
+                snapshotValues.putLong(valuesLimit, index.value(id), LITTLE_ENDIAN);
+                valuesLimit += Long.BYTES;
+            }
+        }
+
+        try (OutputStream output = Files.newOutputStream(snapshot))
+        {
+            output.write(snapshotLabels.byteArray(), 0, labelsLimit);
+            output.write(snapshotValues.byteArray(), 0, valuesLimit);
+        }
+
+        if (verbose)
+        {
+            out.printf("Snapshot: %s %d counters in %dus\n", snapshot, valuesLimit / Long.BYTES,
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+        }
+    }
+
+    private final class NukleusCounters
+    {
+        private final String owner;
+        private final byte[] ownerBytes;
+        private final ControlLayout layout;
+        private final CountersIndex index;
+        private final long[] previous;
+        private final String[] sampled;
+        private final int[] baselinePositions;
+        private final String[] labels;
+        private final byte[][] labelsBytes;
+        private boolean primed;
+
+        private NukleusCounters(
+            String owner,
+            ControlLayout layout)
+        {
+            this.owner = owner;
+            this.ownerBytes = owner.getBytes(UTF_8);
+            this.layout = layout;
+            // one sample per report, so every report rechecks reused ids
+            this.index = new CountersIndex(layout.counterLabelsBuffer(), layout.counterValuesBuffer(), 0L);
+            this.previous = new long[index.maxCounters()];
+            this.sampled = new String[index.maxCounters()];
+            this.baselinePositions = new int[index.maxCounters()];
+            this.labels = new String[index.maxCounters()];
+            this.labelsBytes = new byte[index.maxCounters()][];
+        }
+
+        private byte[] labelBytes(
+            int id)
+        {
+            final String label = index.label(id);
+            if (labels[id] != label)
+            {
+                labels[id] = label;
+                labelsBytes[id] = label.getBytes(UTF_8);
+            }
+            return labelsBytes[id];
+        }
+
+        private void sample()
+        {
+            final CountersIndex index = this.index;
+            final long[] previous = this.previous;
+            final int count = index.sample();
+
+            for (int i = 0; i < count; i++)
+            {
+                final int id = index.id(i);
+                final long value = index.value(id);
+                final String label = index.label(id);
+
+                // new label instance means the id was allocated since the last sample
+                if (sampled[id] != label)
+                {
+                    sampled[id] = label;
+                    previous[id] = value;
+                    baselinePositions[id] = baseline != null ? baseline.position(owner, label) : -1;
+                }
+
+                final long delta = baseline != null ? value - baselineValue(baselinePositions[id]) : value - previous[id];
+                previous[id] = value;
+                onCounter(owner, label, primed || baseline != null, value, delta);
+            }
+
+            primed = true;
+        }
+    }
 }
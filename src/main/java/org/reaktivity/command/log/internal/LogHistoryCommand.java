@@ -0,0 +1,344 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.MISSING_VALUE;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.SERIES_LENGTH;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.SERIES_NAME_OFFSET;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.SERIES_NUKLEUS_OFFSET;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.agrona.BitUtil;
+import org.agrona.LangUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.reaktivity.command.log.internal.counters.CountersIndex;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.command.log.internal.layouts.HistoryLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public final class LogHistoryCommand implements Runnable, AutoCloseable
+{
+    static final int DEFAULT_MAX_SERIES = 1024;
+
+    // 1s for 10 minutes, 10s for 6 hours, 1m for 7 days
+    private static final long[] PERIODS_MILLIS = { SECONDS.toMillis(1L), SECONDS.toMillis(10L), MINUTES.toMillis(1L) };
+    private static final int[] SLOTS = { 600, 2160, 10080 };
+
+    // each resolution maps its values separately, indexed by int, and the last resolution has the most slots
+    static final int MAX_SERIES = Integer.MAX_VALUE / (SLOTS[SLOTS.length - 1] * BitUtil.SIZE_OF_LONG);
+
+    private final Path directory;
+    private final boolean verbose;
+    private final LayoutRegistry layouts;
+    private final Logger out;
+    private final Map<Path, NukleusHistory> historiesByPath;
+    private final Map<String, Integer> seriesByKey;
+    private final HistoryLayout history;
+    private final int[] slots;
+    private final AtomicCounter dropped;
+
+    private int seriesCount;
+    private boolean closed;
+
+    LogHistoryCommand(
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        boolean verbose,
+        int maxSeries)
+    {
+        this.directory = config.directory();
+        this.verbose = verbose;
+        this.layouts = layouts;
+        this.out = out;
+        this.historiesByPath = new LinkedHashMap<>();
+        this.seriesByKey = new LinkedHashMap<>();
+        this.history = newHistoryLayout(historyPath(directory), maxSeries);
+        this.slots = new int[history.resolutions()];
+        this.dropped = counters.counter("history.series.dropped");
+    }
+
+    static Path historyPath(
+        Path directory)
+    {
+        return directory.resolve("log").resolve("history");
+    }
+
+    private boolean isControlFile(
+        Path path)
+    {
+        return path.getNameCount() - directory.getNameCount() == 2 &&
+               "control".equals(path.getName(path.getNameCount() - 1).toString()) &&
+               Files.isRegularFile(path);
+    }
+
+    private void onDiscovered(
+        Path path)
+    {
+        if (verbose)
+        {
+            out.printf("Discovered: %s\n", path);
+        }
+    }
+
+    @Override
+    public synchronized void run()
+    {
+        // closed from a shutdown hook while the command thread may still be sampling
+        if (closed)
+        {
+            return;
+        }
+
+        releaseStale();
+        advance(System.currentTimeMillis());
+
+        try (Stream<Path> files = Files.walk(directory, 2))
+        {
+            files.filter(this::isControlFile)
+                 .forEach(this::sample);
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (!closed)
+        {
+            closed = true;
+            history.close();
+        }
+    }
+
+    private void advance(
+        long timeMillis)
+    {
+        for (int r = 0; r < slots.length; r++)
+        {
+            final int slotCount = history.slots(r);
+            final long period = timeMillis / history.periodMillis(r);
+            final long head = history.head(r);
+
+            if (head == -1L)
+            {
+                history.start(r, period);
+                history.head(r, period);
+            }
+            else if (period > head)
+            {
+                // mark skipped periods missing, including the new one for series not sampled again
+                final AtomicBuffer values = history.valuesBuffer(r);
+                final long skipped = Math.min(period - head, slotCount);
+                for (int series = 0; series < seriesCount; series++)
+                {
+                    for (long p = period - skipped + 1; p <= period; p++)
+                    {
+                        values.putLong(offset(series, slotCount, (int) (p % slotCount)), MISSING_VALUE);
+                    }
+                }
+                history.head(r, period);
+            }
+
+            slots[r] = (int) (history.head(r) % slotCount);
+        }
+    }
+
+    private void sample(
+        Path controlPath)
+    {
+        NukleusHistory nukleus = historiesByPath.get(controlPath);
+        if (nukleus == null)
+        {
+            onDiscovered(controlPath);
+            nukleus = newNukleusHistory(controlPath);
+            historiesByPath.put(controlPath, nukleus);
+        }
+        nukleus.sample();
+    }
+
+    private NukleusHistory newNukleusHistory(
+        Path controlPath)
+    {
+        String owner = controlPath.getName(controlPath.getNameCount() - 2).toString();
+        ControlLayout layout = layouts.control(controlPath);
+        return new NukleusHistory(owner, layout);
+    }
+
+    private void releaseStale()
+    {
+        for (Iterator<Map.Entry<Path, NukleusHistory>> i = historiesByPath.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry<Path, NukleusHistory> entry = i.next();
+            if (layouts.isStale(entry.getKey()))
+            {
+                layouts.release(entry.getValue().layout);
+                i.remove();
+            }
+        }
+    }
+
+    private int series(
+        String owner,
+        String label)
+    {
+        final String key = owner + '\u0000' + label;
+
+        Integer series = seriesByKey.get(key);
+        if (series == null && seriesCount < history.maxSeries())
+        {
+            series = seriesCount;
+            final AtomicBuffer seriesBuffer = history.seriesBuffer();
+            final int offset = series * SERIES_LENGTH;
+            putString(seriesBuffer, offset + SERIES_NUKLEUS_OFFSET, owner, SERIES_NAME_OFFSET - SERIES_NUKLEUS_OFFSET);
+            putString(seriesBuffer, offset + SERIES_NAME_OFFSET, label, SERIES_LENGTH - SERIES_NAME_OFFSET);
+
+            for (int r = 0; r < slots.length; r++)
+            {
+                final AtomicBuffer values = history.valuesBuffer(r);
+                final int slotCount = history.slots(r);
+                for (int slot = 0; slot < slotCount; slot++)
+                {
+                    values.putLong(offset(series, slotCount, slot), MISSING_VALUE);
+                }
+            }
+
+            seriesByKey.put(key, series);
+            history.seriesCount(++seriesCount);
+        }
+        else if (series == null)
+        {
+            // each counter is reported once, its label is cached by the nukleus history
+            out.printf("Dropped: %s.%s, history full at %d series\n", owner, label, seriesCount);
+            dropped.increment();
+        }
+
+        return series != null ? series : -1;
+    }
+
+    static int offset(
+        int series,
+        int slotCount,
+        int slot)
+    {
+        return Math.toIntExact(((long) series * slotCount + slot) * BitUtil.SIZE_OF_LONG);
+    }
+
+    static String getString(
+        AtomicBuffer buffer,
+        int offset)
+    {
+        final byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.getBytes(offset + BitUtil.SIZE_OF_INT, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void putString(
+        AtomicBuffer buffer,
+        int offset,
+        String value,
+        int maxLength)
+    {
+        // truncated to fit, history labels are for display only
+        final byte[] bytes = value.getBytes(UTF_8);
+        final int length = Math.min(bytes.length, maxLength - BitUtil.SIZE_OF_INT);
+        buffer.putInt(offset, length);
+        buffer.putBytes(offset + BitUtil.SIZE_OF_INT, bytes, 0, length);
+    }
+
+    private static HistoryLayout newHistoryLayout(
+        Path path,
+        int maxSeries)
+    {
+        final HistoryLayout.Builder builder = new HistoryLayout.Builder()
+                .path(path)
+                .maxSeries(maxSeries)
+                .readonly(false);
+
+        for (int r = 0; r < SLOTS.length; r++)
+        {
+            builder.resolution(PERIODS_MILLIS[r], SLOTS[r]);
+        }
+
+        return builder.build();
+    }
+
+    private final class NukleusHistory
+    {
+        private final String owner;
+        private final ControlLayout layout;
+        private final CountersIndex index;
+        private final String[] labels;
+        private final int[] series;
+
+        private NukleusHistory(
+            String owner,
+            ControlLayout layout)
+        {
+            this.owner = owner;
+            this.layout = layout;
+            this.index = new CountersIndex(layout.counterLabelsBuffer(), layout.counterValuesBuffer());
+            this.labels = new String[index.maxCounters()];
+            this.series = new int[index.maxCounters()];
+            Arrays.fill(series, -1);
+        }
+
+        private void sample()
+        {
+            final CountersIndex index = this.index;
+            final int count = index.sample();
+
+            for (int i = 0; i < count; i++)
+            {
+                final int id = index.id(i);
+                final String label = index.label(id);
+
+                if (labels[id] != label)
+                {
+                    labels[id] = label;
+                    series[id] = series(owner, label);
+                }
+
+                final int seriesId = series[id];
+                if (seriesId != -1)
+                {
+                    final long value = index.value(id);
+                    for (int r = 0; r < slots.length; r++)
+                    {
+                        // last sample in each period wins
+                        history.valuesBuffer(r).putLongOrdered(offset(seriesId, history.slots(r), slots[r]), value);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.MISSING_VALUE;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.SERIES_LENGTH;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.SERIES_NAME_OFFSET;
+import static org.reaktivity.command.log.internal.layouts.HistoryLayout.SERIES_NUKLEUS_OFFSET;
+
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import org.agrona.concurrent.AtomicBuffer;
+import org.reaktivity.command.log.internal.layouts.HistoryLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public final class LogHistoryExportCommand implements Runnable
+{
+    private final Path path;
+    private final Logger out;
+    private final Pattern query;
+    private final long resolutionMillis;
+
+    LogHistoryExportCommand(
+        Configuration config,
+        Logger out,
+        Pattern query,
+        long resolutionMillis)
+    {
+        this.path = LogHistoryCommand.historyPath(config.directory());
+        this.out = out;
+        this.query = query;
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    @Override
+    public void run()
+    {
+        try (HistoryLayout history = new HistoryLayout.Builder().path(path).readonly(true).build())
+        {
+            final int resolution = resolution(history);
+            final long periodMillis = history.periodMillis(resolution);
+            final int slotCount = history.slots(resolution);
+            final long head = history.head(resolution);
+            final long first = Math.max(head - slotCount + 1, history.start(resolution));
+            final AtomicBuffer seriesBuffer = history.seriesBuffer();
+            final AtomicBuffer values = history.valuesBuffer(resolution);
+            final int seriesCount = history.seriesCount();
+
+            for (int series = 0; series < seriesCount; series++)
+            {
+                final int offset = series * SERIES_LENGTH;
+                final String nukleus = LogHistoryCommand.getString(seriesBuffer, offset + SERIES_NUKLEUS_OFFSET);
+                final String name = LogHistoryCommand.getString(seriesBuffer, offset + SERIES_NAME_OFFSET);
+
+                if (query == null || query.matcher(nukleus + "." + name).find())
+                {
+                    for (long period = first; period <= head; period++)
+                    {
+                        final int slot = (int) (period % slotCount);
+                        final long value = values.getLongVolatile(LogHistoryCommand.offset(series, slotCount, slot));
+
+                        if (value != MISSING_VALUE)
+                        {
+                            out.printf(
+                                    "{" +
+                                    "\"nukleus\": \"%s\"," +
+                                    "\"name\": \"%s\"," +
+                                    "\"resolution\":%d," +
+                                    "\"timestamp\":%d," +
+                                    "\"value\":%d" +
+                                    "}\n", nukleus, name, periodMillis, period * periodMillis, value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int resolution(
+        HistoryLayout history)
+    {
+        // finest resolution unless one matches the requested period
+        int resolution = 0;
+        for (int r = 0; r < history.resolutions(); r++)
+        {
+            if (history.periodMillis(r) == resolutionMillis)
+            {
+                resolution = r;
+            }
+        }
+        return resolution;
+    }
+}
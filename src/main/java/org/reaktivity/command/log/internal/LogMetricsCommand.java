@@ -0,0 +1,425 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.agrona.LangUtil;
+import org.reaktivity.command.log.internal.counters.CountersIndex;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.command.log.internal.layouts.Layout;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.spy.RingBufferSpy;
+import org.reaktivity.nukleus.Configuration;
+
+public final class LogMetricsCommand implements Runnable
+{
+    private static final int DISCOVERY_MILLIS = 1000;
+    private static final int REQUEST_TIMEOUT_MILLIS = 1000;
+
+    private static final byte[] METRICS_REQUEST = "GET /metrics".getBytes(US_ASCII);
+    private static final byte[] END_OF_HEADERS = "\r\n\r\n".getBytes(US_ASCII);
+    private static final byte[] OK_HEADERS = ("HTTP/1.1 200 OK\r\n" +
+            "Content-Type: text/plain; version=0.0.4\r\n" +
+            "Connection: close\r\n" +
+            "Content-Length: ").getBytes(US_ASCII);
+    private static final byte[] NOT_FOUND_RESPONSE = ("HTTP/1.1 404 Not Found\r\n" +
+            "Connection: close\r\n" +
+            "Content-Length: 0\r\n" +
+            "\r\n").getBytes(US_ASCII);
+    private static final byte[] COUNTER_TYPE = "# TYPE reaktor_counter untyped\n".getBytes(US_ASCII);
+    private static final byte[] QUEUE_DEPTH_TYPE = "# TYPE reaktor_queue_depth gauge\n".getBytes(US_ASCII);
+    private static final byte[] QUEUE_CAPACITY_TYPE = "# TYPE reaktor_queue_capacity gauge\n".getBytes(US_ASCII);
+
+    private final Path directory;
+    private final boolean verbose;
+    private final Logger out;
+    private final int port;
+    private final LayoutRegistry layouts;
+    private final Map<Path, CounterMetrics> countersByPath;
+    private final Map<Path, QueueMetrics> queuesByPath;
+    private final byte[] request;
+    private final TextBuffer headers;
+    private final TextBuffer body;
+
+    private CounterMetrics[] counters;
+    private QueueMetrics[] queues;
+    private long discoveredAt;
+
+    LogMetricsCommand(
+        Configuration config,
+        LayoutRegistry layouts,
+        Logger out,
+        boolean verbose,
+        int port)
+    {
+        this.directory = config.directory();
+        this.verbose = verbose;
+        this.out = out;
+        this.port = port;
+        this.layouts = layouts;
+        this.countersByPath = new LinkedHashMap<>();
+        this.queuesByPath = new LinkedHashMap<>();
+        this.counters = new CounterMetrics[0];
+        this.queues = new QueueMetrics[0];
+        this.request = new byte[4096];
+        this.headers = new TextBuffer(256);
+        this.body = new TextBuffer(64 * 1024);
+    }
+
+    private boolean isControlFile(
+        Path path)
+    {
+        return path.getNameCount() - directory.getNameCount() == 2 &&
+               "control".equals(path.getName(path.getNameCount() - 1).toString()) &&
+               Files.isRegularFile(path);
+    }
+
+    private boolean isStreamsFile(
+        Path path)
+    {
+        return path.getNameCount() - directory.getNameCount() == 3 &&
+               "streams".equals(path.getName(path.getNameCount() - 2).toString()) &&
+               Files.isRegularFile(path);
+    }
+
+    private boolean isUndiscovered(
+        Path path)
+    {
+        return isControlFile(path) && !countersByPath.containsKey(path) ||
+               isStreamsFile(path) && !queuesByPath.containsKey(path);
+    }
+
+    private void onDiscovered(
+        Path path)
+    {
+        if (verbose)
+        {
+            out.printf("Discovered: %s\n", path);
+        }
+    }
+
+    private void discover()
+    {
+        releaseStale(countersByPath, c -> c.layout);
+        releaseStale(queuesByPath, q -> q.layout);
+
+        try (Stream<Path> files = Files.walk(directory, 3))
+        {
+            files.filter(this::isUndiscovered)
+                 .peek(this::onDiscovered)
+                 .forEach(this::newMetrics);
+
+            counters = countersByPath.values().toArray(new CounterMetrics[0]);
+            queues = queuesByPath.values().toArray(new QueueMetrics[0]);
+            discoveredAt = System.currentTimeMillis();
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    private <T> void releaseStale(
+        Map<Path, T> metricsByPath,
+        Function<T, Layout> layout)
+    {
+        for (Iterator<Map.Entry<Path, T>> i = metricsByPath.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry<Path, T> entry = i.next();
+            if (layouts.isStale(entry.getKey()))
+            {
+                layouts.release(layout.apply(entry.getValue()));
+                i.remove();
+            }
+        }
+    }
+
+    private void newMetrics(
+        Path path)
+    {
+        if (isControlFile(path))
+        {
+            countersByPath.put(path, newCounterMetrics(path));
+        }
+        else
+        {
+            queuesByPath.put(path, newQueueMetrics(path));
+        }
+    }
+
+    private CounterMetrics newCounterMetrics(
+        Path path)
+    {
+        ControlLayout layout = layouts.control(path);
+
+        String nukleus = path.getName(path.getNameCount() - 2).toString();
+
+        return new CounterMetrics(nukleus, layout);
+    }
+
+    private QueueMetrics newQueueMetrics(
+        Path path)
+    {
+        StreamsLayout layout = layouts.streams(path);
+
+        String nukleus = path.getName(path.getNameCount() - 3).toString();
+        String source = path.getName(path.getNameCount() - 1).toString();
+
+        return new QueueMetrics(nukleus, source, layout);
+    }
+
+    @Override
+    public void run()
+    {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress()))
+        {
+            server.setSoTimeout(DISCOVERY_MILLIS);
+
+            if (verbose)
+            {
+                out.printf("Serving: http://%s:%d/metrics\n",
+                        server.getInetAddress().getHostAddress(), server.getLocalPort());
+            }
+
+            discover();
+
+            while (!Thread.currentThread().isInterrupted())
+            {
+                try (Socket client = server.accept())
+                {
+                    client.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+                    onRequest(client);
+                }
+                catch (SocketTimeoutException ex)
+                {
+                    discover();
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    private void onRequest(
+        Socket client) throws IOException
+    {
+        final InputStream input = client.getInputStream();
+        final OutputStream output = client.getOutputStream();
+
+        int length = 0;
+        while (length < request.length && indexOf(request, length, END_OF_HEADERS) == -1)
+        {
+            final int bytesRead = input.read(request, length, request.length - length);
+            if (bytesRead == -1)
+            {
+                break;
+            }
+            length += bytesRead;
+        }
+
+        if (isMetricsRequest(request, length))
+        {
+            // scrapers polling faster than the accept timeout still see new nuklei
+            if (System.currentTimeMillis() - discoveredAt >= DISCOVERY_MILLIS)
+            {
+                discover();
+            }
+
+            // nukleus counters mix running totals and current levels
+            body.reset();
+            body.put(COUNTER_TYPE);
+            for (int i = 0; i < counters.length; i++)
+            {
+                counters[i].scrape(body);
+            }
+
+            body.put(QUEUE_DEPTH_TYPE);
+            for (int i = 0; i < queues.length; i++)
+            {
+                queues[i].scrapeDepth(body);
+            }
+
+            body.put(QUEUE_CAPACITY_TYPE);
+            for (int i = 0; i < queues.length; i++)
+            {
+                queues[i].scrapeCapacity(body);
+            }
+
+            headers.reset()
+                   .put(OK_HEADERS)
+                   .putLong(body.limit())
+                   .put(END_OF_HEADERS);
+
+            headers.writeTo(output);
+            body.writeTo(output);
+        }
+        else
+        {
+            output.write(NOT_FOUND_RESPONSE);
+        }
+
+        output.flush();
+    }
+
+    // the path ends at a space or a query, so /metricsfoo is not found
+    private static boolean isMetricsRequest(
+        byte[] request,
+        int length)
+    {
+        final int pathEnd = METRICS_REQUEST.length;
+        return length > pathEnd &&
+               indexOf(request, pathEnd, METRICS_REQUEST) == 0 &&
+               (request[pathEnd] == ' ' || request[pathEnd] == '?');
+    }
+
+    private static int indexOf(
+        byte[] buffer,
+        int limit,
+        byte[] value)
+    {
+        outer:
+        for (int i = 0; i + value.length <= limit; i++)
+        {
+            for (int j = 0; j < value.length; j++)
+            {
+                if (buffer[i + j] != value[j])
+                {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String escape(
+        String label)
+    {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class CounterMetrics
+    {
+        private final String nukleus;
+        private final ControlLayout layout;
+        private final CountersIndex index;
+        private final String[] labels;
+        private final byte[][] prefixes;
+
+        private CounterMetrics(
+            String nukleus,
+            ControlLayout layout)
+        {
+            this.nukleus = escape(nukleus);
+            this.layout = layout;
+            this.index = new CountersIndex(layout.counterLabelsBuffer(), layout.counterValuesBuffer());
+            this.labels = new String[index.maxCounters()];
+            this.prefixes = new byte[index.maxCounters()][];
+        }
+
+        private void scrape(
+            TextBuffer body)
+        {
+            final CountersIndex index = this.index;
+            final int count = index.sample();
+
+            for (int i = 0; i < count; i++)
+            {
+                final int id = index.id(i);
+                final String label = index.label(id);
+
+                if (labels[id] != label)
+                {
+                    labels[id] = label;
+                    prefixes[id] = String.format("reaktor_counter{nukleus=\"%s\",name=\"%s\"} ",
+                            nukleus, escape(label)).getBytes(UTF_8);
+                }
+
+                body.put(prefixes[id]).putLong(index.value(id)).put((byte) '\n');
+            }
+        }
+    }
+
+    private static final class QueueMetrics
+    {
+        private final StreamsLayout layout;
+        private final RingBufferSpy streams;
+        private final RingBufferSpy throttle;
+        private final byte[] streamsDepthPrefix;
+        private final byte[] throttleDepthPrefix;
+        private final byte[] streamsCapacityPrefix;
+        private final byte[] throttleCapacityPrefix;
+
+        private QueueMetrics(
+            String nukleus,
+            String source,
+            StreamsLayout layout)
+        {
+            final String labels = String.format("{nukleus=\"%s\",source=\"%s\",type=", escape(nukleus), escape(source));
+
+            this.layout = layout;
+            this.streams = layout.streamsBuffer();
+            this.throttle = layout.throttleBuffer();
+            this.streamsDepthPrefix = ("reaktor_queue_depth" + labels + "\"streams\"} ").getBytes(UTF_8);
+            this.throttleDepthPrefix = ("reaktor_queue_depth" + labels + "\"throttle\"} ").getBytes(UTF_8);
+            this.streamsCapacityPrefix = ("reaktor_queue_capacity" + labels + "\"streams\"} ").getBytes(UTF_8);
+            this.throttleCapacityPrefix = ("reaktor_queue_capacity" + labels + "\"throttle\"} ").getBytes(UTF_8);
+        }
+
+        private void scrapeDepth(
+            TextBuffer body)
+        {
+            body.put(streamsDepthPrefix).putLong(depth(streams)).put((byte) '\n');
+            body.put(throttleDepthPrefix).putLong(depth(throttle)).put((byte) '\n');
+        }
+
+        private void scrapeCapacity(
+            TextBuffer body)
+        {
+            body.put(streamsCapacityPrefix).putLong(streams.capacity()).put((byte) '\n');
+            body.put(throttleCapacityPrefix).putLong(throttle.capacity()).put((byte) '\n');
+        }
+
+        private static long depth(
+            RingBufferSpy buffer)
+        {
+            // read consumer position first for pessimistic queue depth
+            long consumerAt = buffer.consumerPosition();
+            long producerAt = buffer.producerPosition();
+
+            return producerAt - consumerAt;
+        }
+    }
+}
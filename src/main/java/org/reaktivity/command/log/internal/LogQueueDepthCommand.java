@@ -16,6 +16,7 @@
 package org.reaktivity.command.log.internal;
 
 import org.agrona.LangUtil;
+import org.reaktivity.command.log.internal.QueueDepthSampler.RingSample;
 import org.reaktivity.command.log.internal.layouts.StreamsLayout;
 import org.reaktivity.command.log.internal.spy.RingBufferSpy;
 import org.reaktivity.nukleus.Configuration;
@@ -23,6 +24,9 @@ import org.reaktivity.nukleus.Configuration;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.LinkedHashMap;
 import java.util.stream.Stream;
@@ -33,21 +37,31 @@ public final class LogQueueDepthCommand implements Runnable
     private final boolean verbose;
     private final Logger out;
 
-    private final long streamsCapacity;
-    private final long throttleCapacity;
+    private final LayoutRegistry layouts;
     private final Map<Path, StreamsLayout> layoutsByPath;
+    private final Map<Path, RingThroughput> streamsThroughputByPath;
+    private final Map<Path, RingThroughput> throttleThroughputByPath;
+    private final QueueDepthSampler sampler;
+    private final List<RingSample> samples;
+
+    private Thread samplerThread;
 
     public LogQueueDepthCommand(
         Configuration config,
+        LayoutRegistry layouts,
         Logger out,
-        boolean verbose)
+        boolean verbose,
+        long samplePeriodNanos)
     {
         this.directory = config.directory();
         this.out = out;
         this.verbose = verbose;
-        this.streamsCapacity = config.streamsBufferCapacity();
-        this.throttleCapacity = config.throttleBufferCapacity();
+        this.layouts = layouts;
         this.layoutsByPath = new LinkedHashMap<>();
+        this.streamsThroughputByPath = new LinkedHashMap<>();
+        this.throttleThroughputByPath = new LinkedHashMap<>();
+        this.sampler = samplePeriodNanos > 0L ? new QueueDepthSampler(samplePeriodNanos) : null;
+        this.samples = new ArrayList<>();
     }
 
     private boolean isStreamsFile(
@@ -67,54 +81,152 @@ public final class LogQueueDepthCommand implements Runnable
         }
     }
 
+    private List<StreamsLayout> retireStale()
+    {
+        final List<StreamsLayout> stale = new ArrayList<>();
+
+        for (Iterator<Map.Entry<Path, StreamsLayout>> i = layoutsByPath.entrySet().iterator(); i.hasNext();)
+        {
+            final Map.Entry<Path, StreamsLayout> entry = i.next();
+            final Path path = entry.getKey();
+
+            if (layouts.isStale(path))
+            {
+                final StreamsLayout layout = entry.getValue();
+                samples.removeIf(s -> s.buffer == layout.streamsBuffer() || s.buffer == layout.throttleBuffer());
+                streamsThroughputByPath.remove(path);
+                throttleThroughputByPath.remove(path);
+                stale.add(layout);
+                i.remove();
+            }
+        }
+
+        return stale;
+    }
+
     private void displayQueueDepth(
         Path path)
     {
 
-        StreamsLayout layout = layoutsByPath.computeIfAbsent(path, this::newStreamsLayout);
+        StreamsLayout layout = layoutsByPath.computeIfAbsent(path, layouts::streams);
         String nukleus = path.getName(path.getNameCount() - 3).toString();
         String source = path.getName(path.getNameCount() - 1).toString();
-        displayQueueDepth(nukleus, source, "streams", layout.streamsBuffer());
-        displayQueueDepth(nukleus, source, "throttle", layout.throttleBuffer());
+        RingThroughput streamsThroughput = streamsThroughputByPath.computeIfAbsent(path, p -> new RingThroughput());
+        RingThroughput throttleThroughput = throttleThroughputByPath.computeIfAbsent(path, p -> new RingThroughput());
+        displayQueueDepth(nukleus, source, "streams", layout.streamsBuffer(), streamsThroughput);
+        displayQueueDepth(nukleus, source, "throttle", layout.throttleBuffer(), throttleThroughput);
+    }
+
+    private void onSampled(
+        Path path)
+    {
+        if (!layoutsByPath.containsKey(path))
+        {
+            StreamsLayout layout = layouts.streams(path);
+            layoutsByPath.put(path, layout);
+
+            String nukleus = path.getName(path.getNameCount() - 3).toString();
+            String source = path.getName(path.getNameCount() - 1).toString();
+            samples.add(sampler.newSample(nukleus, source, "streams", layout.streamsBuffer()));
+            samples.add(sampler.newSample(nukleus, source, "throttle", layout.throttleBuffer()));
+        }
     }
 
-    private StreamsLayout newStreamsLayout(Path path)
+    private void displaySamples()
     {
-        return new StreamsLayout.Builder()
-                .path(path)
-                .streamsCapacity(streamsCapacity)
-                .throttleCapacity(throttleCapacity)
-                .readonly(true)
-                .build();
+        sampler.samples(samples.toArray(new RingSample[0]));
+
+        if (samplerThread == null)
+        {
+            samplerThread = new Thread(sampler, "queues-sampler");
+            samplerThread.setDaemon(true);
+            samplerThread.start();
+        }
+
+        final int phase = sampler.flip();
+
+        for (RingSample sample : samples)
+        {
+            final Histogram histogram = sample.histograms[phase];
+            final RingBufferSpy buffer = sample.buffer;
+            final RingThroughput throughput = sample.throughput;
+            final int capacity = buffer.capacity();
+            final long max = histogram.max();
+
+            // read consumer position first for pessimistic queue depth
+            long consumerAt = buffer.consumerPosition();
+            long producerAt = buffer.producerPosition();
+            throughput.sample(producerAt, consumerAt, System.nanoTime());
+
+            out.printf("{\"nukleus\":\"%s\", \"source\":\"%s\", \"type\":\"%s\", \"depth\":%d, " +
+                       "\"samples\":%d, \"p50\":%d, \"p90\":%d, \"p99\":%d, \"max\":%d, \"watermark\":%d, " +
+                       "\"capacity\":%d, \"used\":%.1f, \"produced\":%.0f, \"consumed\":%.0f, \"full\":%s}\n",
+                    sample.nukleus, sample.source, sample.type, producerAt - consumerAt,
+                    histogram.count(), histogram.percentile(50.0), histogram.percentile(90.0),
+                    histogram.percentile(99.0), max, sample.watermark, capacity, 100.0 * max / capacity,
+                    throughput.producedRate(), throughput.consumedRate(), secondsToFull(throughput, capacity));
+
+            histogram.reset();
+        }
     }
 
     private void displayQueueDepth(
         String nukleus,
         String source,
         String type,
-        RingBufferSpy buffer)
+        RingBufferSpy buffer,
+        RingThroughput throughput)
     {
         // read consumer position first for pessimistic queue depth
         long consumerAt = buffer.consumerPosition();
         long producerAt = buffer.producerPosition();
+        throughput.sample(producerAt, consumerAt, System.nanoTime());
+
+        out.printf("{\"nukleus\":\"%s\", \"source\":\"%s\", \"type\":\"%s\", \"depth\":%d, " +
+                   "\"produced\":%.0f, \"consumed\":%.0f, \"full\":%s}\n",
+                nukleus, source, type, producerAt - consumerAt,
+                throughput.producedRate(), throughput.consumedRate(), secondsToFull(throughput, buffer.capacity()));
+    }
 
-        out.printf("{\"nukleus\":\"%s\", \"source\":\"%s\", \"type\":\"%s\", \"depth\":%d}\n",
-                nukleus, source, type, producerAt - consumerAt);
+    private static String secondsToFull(
+        RingThroughput throughput,
+        int capacity)
+    {
+        final double secondsToFull = throughput.secondsToFull(capacity);
+        return Double.isInfinite(secondsToFull) ? "null" : String.format("%.3f", secondsToFull);
     }
 
     @Override
     public void run()
     {
+        final List<StreamsLayout> stale = retireStale();
+
         try (Stream<Path> files = Files.walk(directory, 3))
         {
-            files.filter(this::isStreamsFile)
-                 .peek(this::onDiscovered)
-                 .forEach(this::displayQueueDepth);
+            if (sampler != null)
+            {
+                files.filter(this::isStreamsFile)
+                     .filter(p -> !layoutsByPath.containsKey(p))
+                     .peek(this::onDiscovered)
+                     .forEach(this::onSampled);
+                displaySamples();
+            }
+            else
+            {
+                files.filter(this::isStreamsFile)
+                     .peek(this::onDiscovered)
+                     .forEach(this::displayQueueDepth);
+            }
             out.printf("\n");
         }
         catch (IOException ex)
         {
             LangUtil.rethrowUnchecked(ex);
         }
+        finally
+        {
+            // sampler no longer sweeps stale rings once flipped
+            stale.forEach(layouts::release);
+        }
     }
 }
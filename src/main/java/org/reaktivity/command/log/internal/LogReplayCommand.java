@@ -0,0 +1,377 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.reaktivity.command.log.internal.CaptureWriter.RECORD_HEADER_LENGTH;
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_PAIR;
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_STREAMS;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import org.agrona.LangUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.hints.ThreadHints;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.types.stream.FrameFW;
+import org.reaktivity.nukleus.Configuration;
+
+public final class LogReplayCommand implements Runnable
+{
+    private static final long MAX_PARK_NS = MILLISECONDS.toNanos(1L);
+    private static final long MIN_PARK_NS = MICROSECONDS.toNanos(50L);
+    private static final int MAX_YIELDS = 30;
+    private static final int MAX_SPINS = 20;
+
+    static final long DEFAULT_STALL_MILLIS = 10_000L;
+
+    private final FrameFW frameRO = new FrameFW();
+
+    private final Path capture;
+    private final Path target;
+    private final long streamsCapacity;
+    private final long throttleCapacity;
+    private final Logger out;
+    private final boolean verbose;
+    private final double speed;
+    private final Histogram errors;
+    private final IdleStrategy idleStrategy;
+    private final long stallNanos;
+
+    LogReplayCommand(
+        Configuration config,
+        Logger out,
+        boolean verbose,
+        Path capture,
+        Path target,
+        double speed,
+        long stallMillis)
+    {
+        this.capture = capture;
+        this.target = config.directory().resolve(target);
+        this.streamsCapacity = config.streamsBufferCapacity();
+        this.throttleCapacity = config.throttleBufferCapacity();
+        this.out = out;
+        this.verbose = verbose;
+        this.speed = speed;
+        this.errors = new Histogram();
+        this.idleStrategy = new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS);
+        this.stallNanos = MILLISECONDS.toNanos(stallMillis);
+    }
+
+    @Override
+    public void run()
+    {
+        final List<StreamsLayout> layouts = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(capture, READ))
+        {
+            if (verbose)
+            {
+                out.printf("Replaying: %s -> %s\n", capture, target);
+            }
+
+            final List<RecordSource> sources = index(layouts);
+            final PriorityQueue<RecordSource> pending = new PriorityQueue<>(Math.max(sources.size(), 1),
+                    comparingLong(RecordSource::timestamp));
+            sources.stream().filter(RecordSource::hasNext).forEach(pending::add);
+
+            final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH).order(LITTLE_ENDIAN);
+            UnsafeBuffer frame = new UnsafeBuffer(new byte[1024]);
+
+            long frames = 0L;
+            long stalls = 0L;
+            final long firstTimestamp = pending.isEmpty() ? 0L : pending.peek().timestamp();
+            final long startedAt = System.nanoTime();
+
+            // rings are captured in turn, so frames are merged back into timestamp order across all rings
+            while (!pending.isEmpty())
+            {
+                final RecordSource source = pending.poll();
+                final long position = source.position();
+                final long timestamp = source.timestamp();
+
+                header.clear();
+                readFully(channel, header, position);
+                final int msgTypeId = header.getInt(2 * Integer.BYTES);
+                final int length = header.getInt(3 * Integer.BYTES);
+
+                if (frame.capacity() < length)
+                {
+                    frame = new UnsafeBuffer(new byte[Integer.highestOneBit(length) << 1]);
+                }
+                readFully(channel, ByteBuffer.wrap(frame.byteArray(), 0, length), position + RECORD_HEADER_LENGTH);
+
+                long scheduledAt = 0L;
+                if (speed > 0.0)
+                {
+                    scheduledAt = startedAt + (long) ((timestamp - firstTimestamp) / speed);
+                    awaitNanos(scheduledAt);
+                }
+
+                final long stalledAt = System.nanoTime();
+                while (!source.buffer.write(msgTypeId, frame, 0, length))
+                {
+                    // ring full until the receiver catches up, fail rather than wait for a consumer that never comes
+                    if (System.nanoTime() - stalledAt > stallNanos)
+                    {
+                        throw new IllegalStateException(String.format("%s full, no consumer for %d ms",
+                                source.path, NANOSECONDS.toMillis(stallNanos)));
+                    }
+                    stalls++;
+                    idleStrategy.idle(0);
+                }
+                idleStrategy.reset();
+
+                if (speed > 0.0)
+                {
+                    errors.record(Math.max(System.nanoTime() - scheduledAt, 0L));
+                }
+
+                if (source.advance())
+                {
+                    pending.add(source);
+                }
+
+                frames++;
+            }
+
+            final double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+            out.printf("{\"frames\":%d, \"seconds\":%.3f, \"rate\":%.0f, \"stalls\":%d, " +
+                       "\"errorP50Nanos\":%d, \"errorP90Nanos\":%d, \"errorP99Nanos\":%d, \"errorMaxNanos\":%d}\n",
+                    frames, seconds, seconds > 0.0 ? frames / seconds : 0.0, stalls,
+                    errors.percentile(50.0), errors.percentile(90.0), errors.percentile(99.0), errors.max());
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+        finally
+        {
+            layouts.forEach(StreamsLayout::close);
+        }
+    }
+
+    // first pass creates the replay rings and indexes each captured frame by ring, 16 bytes per frame
+    private List<RecordSource> index(
+        List<StreamsLayout> layouts) throws IOException
+    {
+        final List<RecordSource> sources = new ArrayList<>();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(capture))))
+        {
+            final UnsafeBuffer header = new UnsafeBuffer(new byte[RECORD_HEADER_LENGTH]);
+            UnsafeBuffer frame = new UnsafeBuffer(new byte[1024]);
+            long position = 0L;
+
+            while (readFully(input, header.byteArray()))
+            {
+                final int ring = header.getInt(0, LITTLE_ENDIAN);
+                final int pair = header.getInt(Integer.BYTES, LITTLE_ENDIAN);
+                final int length = header.getInt(3 * Integer.BYTES, LITTLE_ENDIAN);
+
+                if (frame.capacity() < length)
+                {
+                    frame = new UnsafeBuffer(new byte[Integer.highestOneBit(length) << 1]);
+                }
+                input.readFully(frame.byteArray(), 0, length);
+
+                if (ring == RING_PAIR)
+                {
+                    // pairs are defined in id order, each replayed into its own streams file
+                    final Path path = path(frame);
+                    final StreamsLayout layout = newStreamsLayout(path);
+                    layouts.add(layout);
+                    sources.add(new RecordSource(path, (AtomicBuffer) layout.streamsBuffer().buffer()));
+                    sources.add(new RecordSource(path, (AtomicBuffer) layout.throttleBuffer().buffer()));
+                }
+                else
+                {
+                    final long timestamp = frameRO.wrap(frame, 0, length).timestamp();
+                    sources.get(2 * pair + (ring == RING_STREAMS ? 0 : 1)).add(position, timestamp);
+                }
+
+                position += RECORD_HEADER_LENGTH + length;
+            }
+        }
+
+        return sources;
+    }
+
+    private Path path(
+        UnsafeBuffer definition)
+    {
+        final int receiverLength = definition.getInt(0, LITTLE_ENDIAN);
+        final String receiver = definition.getStringWithoutLengthUtf8(Integer.BYTES, receiverLength);
+        final int senderAt = Integer.BYTES + receiverLength;
+        final String sender = definition.getStringWithoutLengthUtf8(senderAt + Integer.BYTES,
+                definition.getInt(senderAt, LITTLE_ENDIAN));
+        return target.resolve(receiver).resolve("streams").resolve(sender);
+    }
+
+    private StreamsLayout newStreamsLayout(
+        Path path)
+    {
+        try
+        {
+            Files.createDirectories(path.getParent());
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        return new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(streamsCapacity)
+                .throttleCapacity(throttleCapacity)
+                .readonly(false)
+                .build();
+    }
+
+    private static boolean readFully(
+        DataInputStream input,
+        byte[] header) throws IOException
+    {
+        boolean read = false;
+
+        try
+        {
+            input.readFully(header);
+            read = true;
+        }
+        catch (EOFException ex)
+        {
+            // end of capture
+        }
+
+        return read;
+    }
+
+    private static void readFully(
+        FileChannel channel,
+        ByteBuffer buffer,
+        long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            final int read = channel.read(buffer, position);
+            if (read == -1)
+            {
+                throw new EOFException();
+            }
+            position += read;
+        }
+    }
+
+    private static void awaitNanos(
+        long deadline)
+    {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > 0L)
+        {
+            if (remaining > MIN_PARK_NS)
+            {
+                LockSupport.parkNanos(remaining - MIN_PARK_NS);
+            }
+            else
+            {
+                ThreadHints.onSpinWait();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    private static final class RecordSource
+    {
+        private final Path path;
+        private final RingBuffer buffer;
+
+        private long[] positions;
+        private long[] timestamps;
+        private int count;
+        private int next;
+
+        RecordSource(
+            Path path,
+            AtomicBuffer buffer)
+        {
+            this.path = path;
+            this.buffer = new OneToOneRingBuffer(buffer);
+            this.positions = new long[16];
+            this.timestamps = new long[16];
+        }
+
+        void add(
+            long position,
+            long timestamp)
+        {
+            if (count == positions.length)
+            {
+                positions = Arrays.copyOf(positions, count << 1);
+                timestamps = Arrays.copyOf(timestamps, count << 1);
+            }
+
+            positions[count] = position;
+            timestamps[count] = timestamp;
+            count++;
+        }
+
+        boolean hasNext()
+        {
+            return next < count;
+        }
+
+        boolean advance()
+        {
+            next++;
+            return hasNext();
+        }
+
+        long position()
+        {
+            return positions[next];
+        }
+
+        long timestamp()
+        {
+            return timestamps[next];
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.LangUtil;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.spy.RingBufferSpy;
+import org.reaktivity.nukleus.Configuration;
+
+public final class LogRingsCommand implements Runnable
+{
+    private static final byte[] STREAMS = "streams".getBytes(UTF_8);
+    private static final byte[] THROTTLE = "throttle".getBytes(UTF_8);
+
+    private final Path directory;
+    private final LayoutRegistry layouts;
+    private final Logger out;
+    private final boolean verbose;
+    private final Path snapshot;
+    private final Map<Path, StreamsRings> ringsByPath;
+    private final ExpandableArrayBuffer buffer;
+
+    LogRingsCommand(
+        Configuration config,
+        LayoutRegistry layouts,
+        Logger out,
+        boolean verbose,
+        Path snapshot)
+    {
+        this.directory = config.directory();
+        this.layouts = layouts;
+        this.out = out;
+        this.verbose = verbose;
+        this.snapshot = snapshot;
+        this.ringsByPath = new LinkedHashMap<>();
+        this.buffer = new ExpandableArrayBuffer(1024 * 1024);
+    }
+
+    private boolean isStreamsFile(
+        Path path)
+    {
+        return path.getNameCount() - directory.getNameCount() == 3 &&
+                "streams".equals(path.getName(path.getNameCount() - 2).toString()) &&
+                Files.isRegularFile(path);
+    }
+
+    private void onDiscovered(
+        Path path)
+    {
+        if (verbose)
+        {
+            out.printf("Discovered: %s\n", path);
+        }
+    }
+
+    private void releaseStale()
+    {
+        for (Iterator<Map.Entry<Path, StreamsRings>> i = ringsByPath.entrySet().iterator(); i.hasNext();)
+        {
+            final Map.Entry<Path, StreamsRings> entry = i.next();
+            if (layouts.isStale(entry.getKey()))
+            {
+                layouts.release(entry.getValue().layout);
+                i.remove();
+            }
+        }
+    }
+
+    private StreamsRings newRings(
+        Path path)
+    {
+        final String nukleus = path.getName(path.getNameCount() - 3).toString();
+        final String source = path.getName(path.getNameCount() - 1).toString();
+
+        return new StreamsRings(nukleus, source, layouts.streams(path));
+    }
+
+    @Override
+    public void run()
+    {
+        releaseStale();
+
+        try (Stream<Path> files = Files.walk(directory, 3))
+        {
+            files.filter(this::isStreamsFile)
+                 .filter(p -> !ringsByPath.containsKey(p))
+                 .peek(this::onDiscovered)
+                 .forEach(p -> ringsByPath.put(p, newRings(p)));
+
+            writeSnapshot();
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    private void writeSnapshot() throws IOException
+    {
+        final long startedAt = System.nanoTime();
+        final long timestamp = System.currentTimeMillis();
+
+        int limit = RingsSnapshot.putHeader(buffer, timestamp, ringsByPath.size() << 1);
+
+        // copy every ring before writing any of them, so the snapshot spans as short a time as possible
+        for (StreamsRings rings : ringsByPath.values())
+        {
+            limit = putRing(buffer, limit, rings.nukleusBytes, rings.sourceBytes, STREAMS, rings.layout.streamsBuffer());
+            limit = putRing(buffer, limit, rings.nukleusBytes, rings.sourceBytes, THROTTLE, rings.layout.throttleBuffer());
+        }
+
+        final long copiedAt = System.nanoTime();
+
+        try (OutputStream output = Files.newOutputStream(snapshot))
+        {
+            output.write(buffer.byteArray(), 0, limit);
+        }
+
+        out.printf("{\"snapshot\":\"%s\", \"timestamp\":%d, \"rings\":%d, \"bytes\":%d, \"copy\":%d, \"write\":%d}\n",
+                snapshot, timestamp, ringsByPath.size() << 1, limit,
+                TimeUnit.NANOSECONDS.toMicros(copiedAt - startedAt),
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - copiedAt));
+    }
+
+    static int putRing(
+        ExpandableArrayBuffer buffer,
+        int offset,
+        byte[] nukleus,
+        byte[] source,
+        byte[] type,
+        RingBufferSpy ring)
+    {
+        final DirectBuffer records = ring.buffer();
+        final int capacity = ring.capacity();
+
+        offset = CountersSnapshot.putString(buffer, offset, nukleus);
+        offset = CountersSnapshot.putString(buffer, offset, source);
+        offset = CountersSnapshot.putString(buffer, offset, type);
+
+        final int positionsAt = offset;
+        final int recordsAt = offset + Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+
+        // read only mapping, so the reaktor never waits on this copy
+        final long consumerAt = ring.consumerPosition();
+        final long producerAt = ring.producerPosition();
+        final int length = (int) Math.min(Math.max(producerAt - consumerAt, 0L), capacity);
+        final int index = (int) consumerAt & (capacity - 1);
+        final int headLength = Math.min(length, capacity - index);
+
+        records.getBytes(index, buffer, recordsAt, headLength);
+        records.getBytes(0, buffer, recordsAt + headLength, length - headLength);
+
+        // the consumer zeroes records behind it, so drop any consumed while copying
+        final long consumedAt = Math.min(Math.max(ring.consumerPosition(), consumerAt), consumerAt + length);
+        final int consumed = (int) (consumedAt - consumerAt);
+        if (consumed != 0)
+        {
+            final byte[] bytes = buffer.byteArray();
+            System.arraycopy(bytes, recordsAt + consumed, bytes, recordsAt, length - consumed);
+        }
+
+        buffer.putInt(positionsAt, capacity, LITTLE_ENDIAN);
+        buffer.putLong(positionsAt + Integer.BYTES, producerAt, LITTLE_ENDIAN);
+        buffer.putLong(positionsAt + Integer.BYTES + Long.BYTES, consumedAt, LITTLE_ENDIAN);
+        buffer.putInt(positionsAt + Integer.BYTES + 2 * Long.BYTES, length - consumed, LITTLE_ENDIAN);
+
+        return recordsAt + length - consumed;
+    }
+
+    private static final class StreamsRings
+    {
+        private final byte[] nukleusBytes;
+        private final byte[] sourceBytes;
+        private final StreamsLayout layout;
+
+        private StreamsRings(
+            String nukleus,
+            String source,
+            StreamsLayout layout)
+        {
+            this.nukleusBytes = nukleus.getBytes(UTF_8);
+            this.sourceBytes = source.getBytes(UTF_8);
+            this.layout = layout;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import java.nio.file.Path;
+
+import org.agrona.MutableDirectBuffer;
+import org.reaktivity.command.log.internal.types.stream.FrameFW;
+
+public final class LogRingsExportCommand implements Runnable
+{
+    private final FrameFW frameRO = new FrameFW();
+
+    private final Logger out;
+    private final Path snapshot;
+
+    private int ring;
+    private RingsSnapshot rings;
+
+    LogRingsExportCommand(
+        Logger out,
+        Path snapshot)
+    {
+        this.out = out;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void run()
+    {
+        rings = RingsSnapshot.read(snapshot);
+
+        for (ring = 0; ring < rings.count(); ring++)
+        {
+            out.printf(
+                    "{" +
+                    "\"nukleus\":\"%s\"," +
+                    "\"source\":\"%s\"," +
+                    "\"type\":\"%s\"," +
+                    "\"capacity\":%d," +
+                    "\"producer\":%d," +
+                    "\"consumer\":%d" +
+                    "}\n", rings.nukleus(ring), rings.source(ring), rings.type(ring), rings.capacity(ring),
+                    rings.producerPosition(ring), rings.consumerPosition(ring));
+
+            rings.read(ring, this::onFrame);
+        }
+    }
+
+    private void onFrame(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+        final FrameFW frame = frameRO.wrap(buffer, index, index + length);
+
+        out.printf(
+                "{" +
+                "\"nukleus\":\"%s\"," +
+                "\"source\":\"%s\"," +
+                "\"type\":\"%s\"," +
+                "\"msgTypeId\":%d," +
+                "\"streamId\":%d," +
+                "\"timestamp\":%d," +
+                "\"length\":%d" +
+                "}\n", rings.nukleus(ring), rings.source(ring), rings.type(ring), msgTypeId, frame.streamId(),
+                frame.timestamp(), length);
+    }
+}
@@ -21,6 +21,9 @@ import static java.util.stream.Collectors.toList;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import org.agrona.LangUtil;
@@ -42,21 +45,25 @@ public class LogRoutesCommand implements Runnable
 
     private final Path directory;
     private final boolean verbose;
-    private final int routesCapacity;
+    private final LayoutRegistry layouts;
     private final Logger out;
-    private final ConfigurationUtil configUtil = new ConfigurationUtil();
-    private final IdleStrategy idleStrategy = new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS);
+    private final Map<Path, RoutesLayout> layoutsByPath;
+    private final IdleStrategy idleStrategy;
 
 
     LogRoutesCommand(
         Configuration config,
+        LayoutRegistry layouts,
         Logger out,
-        boolean verbose)
+        boolean verbose,
+        IdleStrategy idleStrategy)
     {
         this.directory = config.directory();
         this.verbose = verbose;
-        this.routesCapacity = configUtil.getInteger(ROUTES_BUFFER_CAPACITY_PROPERTY_NAME, ROUTES_BUFFER_CAPACITY_DEFAULT);
+        this.layouts = layouts;
         this.out = out;
+        this.idleStrategy = idleStrategy;
+        this.layoutsByPath = new LinkedHashMap<>();
     }
 
     private boolean isRoutesFile(
@@ -70,15 +77,14 @@ public class LogRoutesCommand implements Runnable
     private LoggableRoutes newLoggable(
         Path path)
     {
+        // retain one reference across runs so the routes file stays mapped
+        layoutsByPath.computeIfAbsent(path, layouts::routes);
 
-        RoutesLayout layout = new RoutesLayout.Builder()
-                .routesPath(path)
-                .routesBufferCapacity(routesCapacity)
-                .build();
+        RoutesLayout layout = layouts.routes(path);
 
         String nukleusName = path.getName(path.getNameCount() - 2).toString();
 
-        return new LoggableRoutes(layout, nukleusName, out, idleStrategy);
+        return new LoggableRoutes(layouts, layout, nukleusName, out, idleStrategy);
     }
 
     private void onDiscovered(
@@ -90,9 +96,29 @@ public class LogRoutesCommand implements Runnable
         }
     }
 
+    static IdleStrategy newIdleStrategy()
+    {
+        return new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS);
+    }
+
+    private void releaseStale()
+    {
+        for (Iterator<Map.Entry<Path, RoutesLayout>> i = layoutsByPath.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry<Path, RoutesLayout> entry = i.next();
+            if (layouts.isStale(entry.getKey()))
+            {
+                layouts.release(entry.getValue());
+                i.remove();
+            }
+        }
+    }
+
     @Override
     public void run()
     {
+        releaseStale();
+
         try (Stream<Path> files = Files.walk(directory, 2))
         {
         LoggableRoutes[] loggables = files.filter(this::isRoutesFile)
@@ -104,6 +130,7 @@ public class LogRoutesCommand implements Runnable
             for (int i=0; i < loggables.length; i++)
             {
                 loggables[i].process();
+                loggables[i].close();
             }
             out.printf("\n");
         }
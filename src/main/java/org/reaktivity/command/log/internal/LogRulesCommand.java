@@ -0,0 +1,600 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.agrona.concurrent.status.CountersReader.counterOffset;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.agrona.LangUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.reaktivity.command.log.internal.counters.CountersIndex;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.spy.RingBufferSpy;
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.nukleus.Configuration;
+
+public final class LogRulesCommand implements Runnable
+{
+    private static final long REFRESH_PERIOD_NS = MILLISECONDS.toNanos(1000L);
+
+    private final Path directory;
+    private final LayoutRegistry layouts;
+    private final Logger out;
+    private final boolean verbose;
+    private final AccountingIdleStrategy idleStrategy;
+    private final long periodNanos;
+    private final String hook;
+    private final Map<String, EventCounts> eventsByPair;
+    private final Rule[] rules;
+    private final LogStreamsCommand streams;
+
+    private long evaluateAt;
+    private long refreshAt;
+
+    LogRulesCommand(
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        boolean verbose,
+        AccountingIdleStrategy idleStrategy,
+        Path rulesPath,
+        long periodMillis,
+        String hook)
+    {
+        this.directory = config.directory();
+        this.layouts = layouts;
+        this.out = out;
+        this.verbose = verbose;
+        this.idleStrategy = idleStrategy;
+        this.periodNanos = MILLISECONDS.toNanos(periodMillis);
+        this.hook = hook;
+        this.eventsByPair = new LinkedHashMap<>();
+        this.rules = parse(rulesPath);
+
+        // stream events are only decoded when some rule needs them
+        this.streams = eventsByPair.isEmpty() ? null
+                : new LogStreamsCommand(config, layouts, counters, out, verbose, true, idleStrategy,
+                        (r, s, o) -> new EventsListener(events(r, s)));
+    }
+
+    int process()
+    {
+        int workCount = streams != null ? streams.process() : 0;
+
+        final long now = System.nanoTime();
+        if (now - evaluateAt >= 0L)
+        {
+            if (now - refreshAt >= 0L)
+            {
+                for (int i = 0; i < rules.length; i++)
+                {
+                    rules[i].metric.refresh();
+                }
+                refreshAt = now + REFRESH_PERIOD_NS;
+            }
+
+            for (int i = 0; i < rules.length; i++)
+            {
+                evaluate(rules[i], now);
+            }
+
+            evaluateAt = now + periodNanos;
+            workCount++;
+        }
+
+        return workCount;
+    }
+
+    @Override
+    public void run()
+    {
+        if (verbose)
+        {
+            out.printf("Rules: %d\n", rules.length);
+        }
+
+        while (!Thread.currentThread().isInterrupted())
+        {
+            idleStrategy.idle(process());
+        }
+    }
+
+    private void evaluate(
+        Rule rule,
+        long now)
+    {
+        final double value = rule.metric.value(now);
+
+        if (!Double.isNaN(value))
+        {
+            // hysteresis, fire at the threshold but only clear once past the clear threshold
+            if (!rule.firing && rule.op.test(value, rule.threshold))
+            {
+                rule.firing = true;
+                onTransition(rule, value);
+            }
+            else if (rule.firing && !rule.op.test(value, rule.clear))
+            {
+                rule.firing = false;
+                onTransition(rule, value);
+            }
+        }
+    }
+
+    private void onTransition(
+        Rule rule,
+        double value)
+    {
+        final String state = rule.firing ? "firing" : "cleared";
+
+        out.printf("{\"timestamp\":%d,\"rule\":\"%s\",\"state\":\"%s\",\"value\":%.3f,\"threshold\":%.3f}\n",
+                System.currentTimeMillis(), rule.name, state, value, rule.firing ? rule.threshold : rule.clear);
+
+        if (hook != null)
+        {
+            final ProcessBuilder builder = new ProcessBuilder("sh", "-c", hook).inheritIO();
+            builder.environment().put("RULE_NAME", rule.name);
+            builder.environment().put("RULE_STATE", state);
+            builder.environment().put("RULE_VALUE", Double.toString(value));
+
+            try
+            {
+                builder.start();
+            }
+            catch (IOException ex)
+            {
+                // a failed hook must not stop evaluating the other rules
+                System.err.printf("rule %s hook failed: %s\n", rule.name, ex);
+            }
+        }
+    }
+
+    private synchronized EventCounts events(
+        String receiver,
+        String sender)
+    {
+        return eventsByPair.computeIfAbsent(receiver + " " + sender, k -> new EventCounts());
+    }
+
+    private Rule[] parse(
+        Path rulesPath)
+    {
+        final List<Rule> rules = new ArrayList<>();
+
+        try
+        {
+            final List<String> lines = Files.readAllLines(rulesPath, UTF_8);
+            for (int i = 0; i < lines.size(); i++)
+            {
+                final String line = lines.get(i).replaceFirst("#.*", "").trim();
+                if (!line.isEmpty())
+                {
+                    try
+                    {
+                        rules.add(parseRule(line.split("\\s+")));
+                    }
+                    catch (RuntimeException ex)
+                    {
+                        throw new IllegalArgumentException(String.format("%s:%d: %s", rulesPath, i + 1, lines.get(i)), ex);
+                    }
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        return rules.toArray(new Rule[0]);
+    }
+
+    // name counter|rate nukleus label op threshold [clear threshold]
+    // name depth|fill nukleus source streams|throttle op threshold [clear threshold]
+    // name resets|aborts receiver sender op threshold [clear threshold]
+    private Rule parseRule(
+        String[] tokens)
+    {
+        final String name = tokens[0];
+        final String kind = tokens[1];
+
+        Metric metric;
+        int at;
+
+        switch (kind)
+        {
+        case "counter":
+            metric = new CounterMetric(directory.resolve(tokens[2]).resolve("control"), tokens[3]);
+            at = 4;
+            break;
+        case "rate":
+            metric = new RateMetric(new CounterMetric(directory.resolve(tokens[2]).resolve("control"), tokens[3]));
+            at = 4;
+            break;
+        case "depth":
+        case "fill":
+            metric = new DepthMetric(directory.resolve(tokens[2]).resolve("streams").resolve(tokens[3]),
+                    "throttle".equals(tokens[4]), "fill".equals(kind));
+            at = 5;
+            break;
+        case "resets":
+        case "aborts":
+            metric = new RateMetric(new EventsMetric(events(tokens[2], tokens[3]), "resets".equals(kind)));
+            at = 4;
+            break;
+        default:
+            throw new IllegalArgumentException(kind);
+        }
+
+        final Op op = Op.of(tokens[at]);
+        final double threshold = Double.parseDouble(tokens[at + 1]);
+        final double clear = tokens.length > at + 2 && "clear".equals(tokens[at + 2])
+                ? Double.parseDouble(tokens[at + 3])
+                : threshold;
+
+        return new Rule(name, metric, op, threshold, clear);
+    }
+
+    private enum Op
+    {
+        GT
+        {
+            @Override
+            boolean test(
+                double value,
+                double threshold)
+            {
+                return value > threshold;
+            }
+        },
+        GE
+        {
+            @Override
+            boolean test(
+                double value,
+                double threshold)
+            {
+                return value >= threshold;
+            }
+        },
+        LT
+        {
+            @Override
+            boolean test(
+                double value,
+                double threshold)
+            {
+                return value < threshold;
+            }
+        },
+        LE
+        {
+            @Override
+            boolean test(
+                double value,
+                double threshold)
+            {
+                return value <= threshold;
+            }
+        };
+
+        abstract boolean test(
+            double value,
+            double threshold);
+
+        static Op of(
+            String symbol)
+        {
+            switch (symbol)
+            {
+            case ">":
+                return GT;
+            case ">=":
+                return GE;
+            case "<":
+                return LT;
+            case "<=":
+                return LE;
+            default:
+                throw new IllegalArgumentException(symbol);
+            }
+        }
+    }
+
+    private static final class Rule
+    {
+        private final String name;
+        private final Metric metric;
+        private final Op op;
+        private final double threshold;
+        private final double clear;
+
+        private boolean firing;
+
+        private Rule(
+            String name,
+            Metric metric,
+            Op op,
+            double threshold,
+            double clear)
+        {
+            this.name = name;
+            this.metric = metric;
+            this.op = op;
+            this.threshold = threshold;
+            this.clear = clear;
+        }
+    }
+
+    private interface Metric
+    {
+        // resolves layouts, called at a slower pace than value
+        default void refresh()
+        {
+        }
+
+        // NaN until the metric can be read
+        double value(
+            long now);
+
+        // changes whenever the metric starts reading a different source
+        default int binding()
+        {
+            return 0;
+        }
+    }
+
+    private final class CounterMetric implements Metric
+    {
+        private final Path path;
+        private final String label;
+
+        private ControlLayout layout;
+        private CountersIndex index;
+        private AtomicBuffer values;
+        private int id = -1;
+        private int binding;
+
+        private CounterMetric(
+            Path path,
+            String label)
+        {
+            this.path = path;
+            this.label = label;
+        }
+
+        @Override
+        public void refresh()
+        {
+            if (layout != null && layouts.isStale(path))
+            {
+                layouts.release(layout);
+                layout = null;
+                id = -1;
+            }
+
+            if (layout == null && Files.isRegularFile(path))
+            {
+                layout = layouts.control(path);
+                index = new CountersIndex(layout.counterLabelsBuffer(), layout.counterValuesBuffer());
+                values = layout.counterValuesBuffer();
+            }
+
+            // the counter may have been freed and its id reused for another label
+            if (layout != null && id != -1 && index.refresh() && !label.equals(index.label(id)))
+            {
+                id = -1;
+            }
+
+            if (layout != null && id == -1)
+            {
+                index.rescan();
+                for (int i = 0; i < index.count(); i++)
+                {
+                    if (label.equals(index.label(index.id(i))))
+                    {
+                        id = index.id(i);
+                    }
+                }
+
+                if (id != -1)
+                {
+                    binding++;
+                }
+            }
+        }
+
+        @Override
+        public int binding()
+        {
+            return binding;
+        }
+
+        @Override
+        public double value(
+            long now)
+        {
+            return id != -1 ? values.getLongVolatile(counterOffset(id)) : Double.NaN;
+        }
+    }
+
+    private final class DepthMetric implements Metric
+    {
+        private final Path path;
+        private final boolean throttle;
+        private final boolean fill;
+
+        private StreamsLayout layout;
+        private RingBufferSpy buffer;
+
+        private DepthMetric(
+            Path path,
+            boolean throttle,
+            boolean fill)
+        {
+            this.path = path;
+            this.throttle = throttle;
+            this.fill = fill;
+        }
+
+        @Override
+        public void refresh()
+        {
+            if (layout != null && layouts.isStale(path))
+            {
+                layouts.release(layout);
+                layout = null;
+                buffer = null;
+            }
+
+            if (layout == null && Files.isRegularFile(path))
+            {
+                layout = layouts.streams(path);
+                buffer = throttle ? layout.throttleBuffer() : layout.streamsBuffer();
+            }
+        }
+
+        @Override
+        public double value(
+            long now)
+        {
+            double value = Double.NaN;
+
+            if (buffer != null)
+            {
+                // read consumer position first for pessimistic queue depth
+                final long consumerAt = buffer.consumerPosition();
+                final long producerAt = buffer.producerPosition();
+                final long depth = producerAt - consumerAt;
+                value = fill ? (double) depth / buffer.capacity() : depth;
+            }
+
+            return value;
+        }
+    }
+
+    private static final class RateMetric implements Metric
+    {
+        private final Metric total;
+
+        private double previous = Double.NaN;
+        private long previousAt;
+        private int binding;
+
+        private RateMetric(
+            Metric total)
+        {
+            this.total = total;
+        }
+
+        @Override
+        public void refresh()
+        {
+            total.refresh();
+
+            // a rebound counter starts from an unrelated value, so start the rate again
+            if (total.binding() != binding)
+            {
+                binding = total.binding();
+                previous = Double.NaN;
+            }
+        }
+
+        @Override
+        public double value(
+            long now)
+        {
+            final double value = total.value(now);
+            final double rate = (value - previous) * SECONDS.toNanos(1L) / (now - previousAt);
+
+            previous = value;
+            previousAt = now;
+
+            return rate;
+        }
+    }
+
+    private static final class EventsMetric implements Metric
+    {
+        private final EventCounts counts;
+        private final boolean resets;
+
+        private EventsMetric(
+            EventCounts counts,
+            boolean resets)
+        {
+            this.counts = counts;
+            this.resets = resets;
+        }
+
+        @Override
+        public double value(
+            long now)
+        {
+            return resets ? counts.resets : counts.aborts;
+        }
+    }
+
+    private static final class EventCounts
+    {
+        private long resets;
+        private long aborts;
+    }
+
+    private static final class EventsListener implements StreamsListener
+    {
+        private final EventCounts counts;
+
+        private EventsListener(
+            EventCounts counts)
+        {
+            this.counts = counts;
+        }
+
+        @Override
+        public void onAbort(
+            long timestamp,
+            long traceId,
+            long streamId,
+            long authorization,
+            AbortFW abort)
+        {
+            counts.aborts++;
+        }
+
+        @Override
+        public void onReset(
+            long timestamp,
+            long traceId,
+            long streamId,
+            ResetFW reset)
+        {
+            counts.resets++;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+final class LogScheduler implements Runnable
+{
+    private static final long MAX_PARK_NS = SECONDS.toNanos(1L);
+
+    private final AccountingIdleStrategy idleStrategy;
+
+    private ScheduledTask[] tasks;
+    private Thread[] threads;
+
+    LogScheduler(
+        AccountingIdleStrategy idleStrategy)
+    {
+        this.idleStrategy = idleStrategy;
+        this.tasks = new ScheduledTask[0];
+        this.threads = new Thread[0];
+    }
+
+    // polled until interrupted
+    void poll(
+        IntSupplier task)
+    {
+        schedule(task, 0L, true, true, null);
+    }
+
+    // polled until a pass finds no work, then finish runs once
+    void poll(
+        IntSupplier task,
+        Runnable finish)
+    {
+        schedule(task, 0L, true, false, finish);
+    }
+
+    // run at every period, or only once when the period is zero
+    void schedule(
+        Runnable task,
+        long periodNanos)
+    {
+        schedule(() ->
+        {
+            task.run();
+            return 1;
+        }, periodNanos, false, periodNanos != 0L, null);
+    }
+
+    // blocking commands run on their own thread, interrupted and joined before run returns
+    void start(
+        Runnable task,
+        String name)
+    {
+        threads = Arrays.copyOf(threads, threads.length + 1);
+        threads[threads.length - 1] = new Thread(task, name);
+    }
+
+    @Override
+    public void run()
+    {
+        final ScheduledTask[] tasks = this.tasks;
+        final Thread[] threads = this.threads;
+
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+
+        try
+        {
+            runTasks(tasks, threads);
+        }
+        finally
+        {
+            stop(threads);
+        }
+    }
+
+    private void runTasks(
+        ScheduledTask[] tasks,
+        Thread[] threads)
+    {
+        long now = System.nanoTime();
+        for (int i = 0; i < tasks.length; i++)
+        {
+            tasks[i].deadline = now;
+        }
+
+        while (!Thread.currentThread().isInterrupted() && (isAnyPending(tasks) || isAnyAlive(threads)))
+        {
+            int workCount = 0;
+            long nextDeadline = Long.MAX_VALUE;
+            boolean polling = false;
+
+            now = System.nanoTime();
+            for (int i = 0; i < tasks.length; i++)
+            {
+                final ScheduledTask task = tasks[i];
+
+                if (task.done)
+                {
+                    continue;
+                }
+
+                if (task.polled)
+                {
+                    final int taskWorkCount = task.work.getAsInt();
+
+                    // without continuous discovery a pass finding no work means the rings are drained
+                    if (taskWorkCount == 0 && !task.repeat)
+                    {
+                        task.done = true;
+                        task.finish.run();
+                    }
+
+                    workCount += taskWorkCount;
+                    polling |= !task.done;
+                }
+                else
+                {
+                    if (now - task.deadline >= 0L)
+                    {
+                        workCount += task.work.getAsInt();
+
+                        task.done = !task.repeat;
+                        task.deadline += task.periodNanos;
+                        if (now - task.deadline >= 0L)
+                        {
+                            task.deadline = now + task.periodNanos;
+                        }
+                    }
+
+                    if (!task.done)
+                    {
+                        nextDeadline = Math.min(nextDeadline, task.deadline);
+                    }
+                }
+            }
+
+            if (polling)
+            {
+                idleStrategy.idle(workCount);
+            }
+            else
+            {
+                // threads are checked again at least once per second
+                final long parkNanos = Math.min(nextDeadline - System.nanoTime(), MAX_PARK_NS);
+                if (parkNanos > 0L)
+                {
+                    LockSupport.parkNanos(parkNanos);
+                }
+            }
+        }
+    }
+
+    private void schedule(
+        IntSupplier work,
+        long periodNanos,
+        boolean polled,
+        boolean repeat,
+        Runnable finish)
+    {
+        tasks = Arrays.copyOf(tasks, tasks.length + 1);
+        tasks[tasks.length - 1] = new ScheduledTask(work, periodNanos, polled, repeat, finish);
+    }
+
+    private static boolean isAnyPending(
+        ScheduledTask[] tasks)
+    {
+        boolean pending = false;
+        for (int i = 0; i < tasks.length && !pending; i++)
+        {
+            pending = !tasks[i].done;
+        }
+        return pending;
+    }
+
+    private static boolean isAnyAlive(
+        Thread[] threads)
+    {
+        boolean alive = false;
+        for (int i = 0; i < threads.length && !alive; i++)
+        {
+            alive = threads[i].isAlive();
+        }
+        return alive;
+    }
+
+    private static void stop(
+        Thread[] threads)
+    {
+        for (Thread thread : threads)
+        {
+            thread.interrupt();
+        }
+
+        boolean interrupted = false;
+        for (Thread thread : threads)
+        {
+            while (thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ScheduledTask
+    {
+        private final IntSupplier work;
+        private final long periodNanos;
+        private final boolean polled;
+        private final boolean repeat;
+        private final Runnable finish;
+
+        private long deadline;
+        private boolean done;
+
+        private ScheduledTask(
+            IntSupplier work,
+            long periodNanos,
+            boolean polled,
+            boolean repeat,
+            Runnable finish)
+        {
+            this.work = work;
+            this.periodNanos = periodNanos;
+            this.polled = polled;
+            this.repeat = repeat;
+            this.finish = finish;
+        }
+    }
+}
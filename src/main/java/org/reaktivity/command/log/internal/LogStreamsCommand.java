@@ -16,10 +16,15 @@
 package org.reaktivity.command.log.internal;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -27,6 +32,7 @@ import java.util.stream.Stream;
 import org.agrona.LangUtil;
 import org.agrona.concurrent.BackoffIdleStrategy;
 import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
 import org.reaktivity.command.log.internal.layouts.StreamsLayout;
 import org.reaktivity.nukleus.Configuration;
 
@@ -39,26 +45,95 @@ public final class LogStreamsCommand implements Runnable
     private static final int MAX_YIELDS = 30;
     private static final int MAX_SPINS = 20;
 
+    private static final long DISCOVERY_PERIOD_NS = MILLISECONDS.toNanos(1000L);
+    private static final long SUMMARY_PERIOD_NS = MILLISECONDS.toNanos(1000L);
+
+    private static final int PASS_BUDGET = 1024;
+
     private final Path directory;
     private final boolean verbose;
-    private final long streamsCapacity;
-    private final long throttleCapacity;
+    private final LayoutRegistry layouts;
     private final boolean continuous;
     private final Logger out;
+    private final StreamsListener.Factory listeners;
+    private final AccountingIdleStrategy idleStrategy;
+    private final LogCounters counters;
+    private final AtomicCounter processNanos;
+    private final AtomicCounter processPasses;
+    private final Map<Path, LoggableStream> loggablesByPath;
+    private final long pairLinesPerSecond;
+    private final RateLimiter globalLimiter;
+    private final Map<String, RateLimiter> limitersByPair;
+
+    private LoggableStream[] loggables;
+    private RateLimiter[] limiters;
+    private long discoverAt;
+    private long summarizeAt;
+    private int startAt;
+
+    public LogStreamsCommand(
+        Configuration config,
+        StreamsListener.Factory listeners,
+        boolean continuous)
+    {
+        this(config, new LayoutRegistry(config), new LogCounters(), System.out::printf, false, continuous, listeners);
+    }
+
+    private LogStreamsCommand(
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        boolean verbose,
+        boolean continuous,
+        StreamsListener.Factory listeners)
+    {
+        this(config, layouts, counters, out, verbose, continuous,
+                new AccountingIdleStrategy(newIdleStrategy(), counters.counter("streams.idle.nanos"),
+                        counters.counter("streams.work.nanos")),
+                listeners);
+    }
 
+    LogStreamsCommand(
+        Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
+        Logger out,
+        boolean verbose,
+        boolean continuous,
+        AccountingIdleStrategy idleStrategy,
+        StreamsListener.Factory listeners)
+    {
+        this(config, layouts, counters, out, verbose, continuous, idleStrategy, listeners, 0L, 0L);
+    }
 
     LogStreamsCommand(
         Configuration config,
+        LayoutRegistry layouts,
+        LogCounters counters,
         Logger out,
         boolean verbose,
-        boolean continuous)
+        boolean continuous,
+        AccountingIdleStrategy idleStrategy,
+        StreamsListener.Factory listeners,
+        long pairLinesPerSecond,
+        long globalLinesPerSecond)
     {
         this.directory = config.directory();
         this.verbose = verbose;
-        this.streamsCapacity = config.streamsBufferCapacity();
-        this.throttleCapacity = config.throttleBufferCapacity();
+        this.layouts = layouts;
         this.continuous = continuous;
         this.out = out;
+        this.listeners = listeners;
+        this.idleStrategy = idleStrategy;
+        this.counters = counters;
+        this.processNanos = counters.counter("streams.process.nanos");
+        this.processPasses = counters.counter("streams.process.passes");
+        this.loggablesByPath = new LinkedHashMap<>();
+        this.pairLinesPerSecond = pairLinesPerSecond;
+        this.globalLimiter = globalLinesPerSecond > 0L ? new RateLimiter("all", out, globalLinesPerSecond, null) : null;
+        this.limitersByPair = new LinkedHashMap<>();
+        this.limiters = new RateLimiter[0];
     }
 
     private boolean isStreamsFile(
@@ -69,20 +144,42 @@ public final class LogStreamsCommand implements Runnable
                Files.isRegularFile(path);
     }
 
+    private boolean isUndiscovered(
+        Path path)
+    {
+        return isStreamsFile(path) && !loggablesByPath.containsKey(path);
+    }
+
     private LoggableStream newLoggable(
         Path path)
     {
-        StreamsLayout layout = new StreamsLayout.Builder()
-                .path(path)
-                .streamsCapacity(streamsCapacity)
-                .throttleCapacity(throttleCapacity)
-                .readonly(true)
-                .build();
+        StreamsLayout layout = layouts.streams(path);
 
         String receiver = path.getName(path.getNameCount() - 3).toString();
         String sender = sender(path);
 
-        return new LoggableStream(receiver, sender, layout, out, verbose);
+        String name = String.format("%s.%s", receiver, path.getFileName());
+
+        // listeners print through the pair limiter, so frames still update their state when lines are suppressed
+        final RateLimiter limiter = limiter(receiver, sender);
+        final StreamsListener listener = listeners.newListener(receiver, sender, limiter != null ? limiter : out);
+
+        return new LoggableStream(layouts, layout, listener, counters, name, limiter);
+    }
+
+    private synchronized RateLimiter limiter(
+        String receiver,
+        String sender)
+    {
+        RateLimiter limiter = null;
+
+        if (pairLinesPerSecond > 0L || globalLimiter != null)
+        {
+            final String pair = String.format("%s -> %s", sender, receiver);
+            limiter = limitersByPair.computeIfAbsent(pair, p -> new RateLimiter(p, out, pairLinesPerSecond, globalLimiter));
+        }
+
+        return limiter;
     }
 
     private void onDiscovered(
@@ -94,40 +191,128 @@ public final class LogStreamsCommand implements Runnable
         }
     }
 
+    private void discover()
+    {
+        for (Iterator<Map.Entry<Path, LoggableStream>> i = loggablesByPath.entrySet().iterator(); i.hasNext();)
+        {
+            Map.Entry<Path, LoggableStream> entry = i.next();
+            if (layouts.isStale(entry.getKey()))
+            {
+                entry.getValue().close();
+                i.remove();
+            }
+        }
+
+        try (Stream<Path> files = Files.walk(directory, 3))
+        {
+            final List<Path> paths = files.parallel()
+                 .filter(this::isUndiscovered)
+                 .collect(toList());
+
+            // only file checks run in parallel, listeners are created on the command thread
+            for (Path path : paths)
+            {
+                onDiscovered(path);
+                loggablesByPath.put(path, newLoggable(path));
+            }
+
+            loggables = loggablesByPath.values().toArray(new LoggableStream[0]);
+            limiters = limitersByPair.values().toArray(new RateLimiter[0]);
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    int process()
+    {
+        final long processAt = System.nanoTime();
+
+        if (loggables == null || continuous && System.nanoTime() - discoverAt >= 0L)
+        {
+            discover();
+            discoverAt = System.nanoTime() + DISCOVERY_PERIOD_NS;
+        }
+
+        final LoggableStream[] loggables = this.loggables;
+        final int length = loggables.length;
+
+        int workCount = 0;
+
+        // rotate the first ring each pass so the budget is shared fairly
+        for (int i=0; i < length && workCount < PASS_BUDGET; i++)
+        {
+            workCount += loggables[(startAt + i) % length].process(PASS_BUDGET - workCount);
+        }
+
+        startAt = length != 0 ? (startAt + 1) % length : 0;
+
+        if (limiters.length != 0 && processAt - summarizeAt >= 0L)
+        {
+            summarize();
+            summarizeAt = processAt + SUMMARY_PERIOD_NS;
+        }
+
+        processNanos.addOrdered(System.nanoTime() - processAt);
+        processPasses.addOrdered(1L);
+
+        return workCount;
+    }
+
     @Override
     public void run()
     {
-        try (Stream<Path> files = Files.walk(directory, 3))
+        final int exitWorkCount = continuous ? -1 : 0;
+
+        int workCount;
+        do
         {
-            LoggableStream[] loggables = files.filter(this::isStreamsFile)
-                 .peek(this::onDiscovered)
-                 .map(this::newLoggable)
-                 .toArray(LoggableStream[]::new);
+            workCount = process();
 
-            final IdleStrategy idleStrategy = new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS);
+            idleStrategy.idle(workCount);
 
-            final int exitWorkCount = continuous ? -1 : 0;
+        } while (workCount != exitWorkCount);
 
-            int workCount;
-            do
-            {
-                workCount = 0;
+        finish();
+    }
 
-                for (int i=0; i < loggables.length; i++)
-                {
-                    workCount += loggables[i].process();
-                }
+    boolean continuous()
+    {
+        return continuous;
+    }
+
+    // summarizes and closes the rings once a run without continuous discovery has drained them
+    void finish()
+    {
+        if (limiters.length != 0)
+        {
+            summarize();
+        }
 
-                idleStrategy.idle(workCount);
+        loggablesByPath.values().forEach(LoggableStream::close);
+        loggablesByPath.clear();
+        loggables = null;
 
-            } while (workCount != exitWorkCount);
+        if (verbose)
+        {
+            out.printf("Idle: %.1f%%\n", 100.0 * idleStrategy.idleRatio());
         }
-        catch (IOException ex)
+    }
+
+    private void summarize()
+    {
+        for (int i = 0; i < limiters.length; i++)
         {
-            LangUtil.rethrowUnchecked(ex);
+            limiters[i].summarize();
         }
     }
 
+    static IdleStrategy newIdleStrategy()
+    {
+        return new BackoffIdleStrategy(MAX_SPINS, MAX_YIELDS, MIN_PARK_NS, MAX_PARK_NS);
+    }
+
     private static String sender(
         Path path)
     {
@@ -32,6 +32,7 @@ import org.reaktivity.command.log.internal.types.state.RouteTableFW;
 
 public final class LoggableRoutes implements AutoCloseable
 {
+    private final LayoutRegistry layouts;
     private final RoutesLayout layout;
     private final MutableDirectBuffer routesBuffer;
     private final Logger out;
@@ -45,11 +46,13 @@ public final class LoggableRoutes implements AutoCloseable
     private final String nukleusName;
 
     LoggableRoutes(
+        LayoutRegistry layouts,
         RoutesLayout layout,
         String nukleusName,
         Logger logger,
         IdleStrategy idleStrategy)
     {
+        this.layouts = layouts;
         this.layout = layout;
         this.nukleusName  = nukleusName;
         this.routesBuffer = layout.routesBuffer();
@@ -170,9 +173,9 @@ public final class LoggableRoutes implements AutoCloseable
     }
 
     @Override
-    public void close() throws Exception
+    public void close()
     {
-        layout.close();
+        layouts.release(layout);
     }
 
 }
@@ -15,32 +15,25 @@
  */
 package org.reaktivity.command.log.internal;
 
-import static java.lang.String.format;
-import static java.net.InetAddress.getByAddress;
-
-import java.net.InetSocketAddress;
-import java.net.UnknownHostException;
-import java.util.function.LongPredicate;
-import java.util.function.Predicate;
-
-import org.agrona.LangUtil;
+import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
-import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.status.AtomicCounter;
 import org.reaktivity.command.log.internal.layouts.StreamsLayout;
 import org.reaktivity.command.log.internal.spy.RingBufferSpy;
-import org.reaktivity.command.log.internal.types.OctetsFW;
-import org.reaktivity.command.log.internal.types.TcpAddressFW;
 import org.reaktivity.command.log.internal.types.stream.AbortFW;
 import org.reaktivity.command.log.internal.types.stream.BeginFW;
 import org.reaktivity.command.log.internal.types.stream.DataFW;
 import org.reaktivity.command.log.internal.types.stream.EndFW;
-import org.reaktivity.command.log.internal.types.stream.HttpBeginExFW;
+import org.reaktivity.command.log.internal.types.stream.FrameFW;
 import org.reaktivity.command.log.internal.types.stream.ResetFW;
-import org.reaktivity.command.log.internal.types.stream.TcpBeginExFW;
 import org.reaktivity.command.log.internal.types.stream.WindowFW;
 
 public final class LoggableStream implements AutoCloseable
 {
+    private static final int MIN_BATCH = 1;
+    private static final int MAX_BATCH = 256;
+
     private final BeginFW beginRO = new BeginFW();
     private final DataFW dataRO = new DataFW();
     private final EndFW endRO = new EndFW();
@@ -49,260 +42,276 @@ public final class LoggableStream implements AutoCloseable
     private final ResetFW resetRO = new ResetFW();
     private final WindowFW windowRO = new WindowFW();
 
-    private final TcpBeginExFW tcpBeginExRO = new TcpBeginExFW();
-    private final HttpBeginExFW httpBeginExRO = new HttpBeginExFW();
+    private final FrameFW frameRO = new FrameFW();
 
-    private final String streamFormat;
-    private final String throttleFormat;
-    private final String targetName;
+    private final LayoutRegistry layouts;
     private final StreamsLayout layout;
     private final RingBufferSpy streamsBuffer;
     private final RingBufferSpy throttleBuffer;
-    private final Logger out;
-    private final boolean verbose;
-    private final Long2LongHashMap budgets;
+    private final StreamsListener listener;
+    private final LogCounters counters;
+    private final AtomicCounter streamsFrames;
+    private final AtomicCounter throttleFrames;
+    private final AtomicCounter bytes;
+    private final AtomicCounter streamsLag;
+    private final AtomicCounter throttleLag;
+    private final AtomicCounter laps;
+    private final AtomicCounter suppressed;
+    private final RateLimiter limiter;
+    private final boolean ordered;
+    private final MessageHandler peekTimestamp;
+    private final MessageHandler handleStream;
+    private final MessageHandler handleThrottle;
+
+    private boolean lapped;
+    private long peekedAt;
+    private long processedAt;
+    private long suppressedAt;
+    private int streamsBatch = MIN_BATCH;
+    private int throttleBatch = MIN_BATCH;
 
     LoggableStream(
-        String receiver,
-        String sender,
+        LayoutRegistry layouts,
         StreamsLayout layout,
-        Logger logger,
-        boolean verbose)
+        StreamsListener listener,
+        LogCounters counters,
+        String name,
+        RateLimiter limiter)
     {
-        this.streamFormat = String.format("[%%d] [0x%%08x] [0x%%016x] [%s -> %s]\t[0x%%016x] %%s\n", sender, receiver);
-        this.throttleFormat = String.format("[%%d] [0x%%08x] [0x%%016x] [%s <- %s]\t[0x%%016x] %%s\n", sender, receiver);
-
+        this.layouts = layouts;
         this.layout = layout;
         this.streamsBuffer = layout.streamsBuffer();
         this.throttleBuffer = layout.throttleBuffer();
-        this.targetName = receiver;
-        this.out = logger;
-        this.verbose = verbose;
-        this.budgets = new Long2LongHashMap(-1L);
+        this.listener = listener;
+        this.counters = counters;
+        this.streamsFrames = counters.counter(name + ".streams.frames");
+        this.throttleFrames = counters.counter(name + ".throttle.frames");
+        this.bytes = counters.counter(name + ".bytes");
+        this.streamsLag = counters.counter(name + ".streams.lag");
+        this.throttleLag = counters.counter(name + ".throttle.lag");
+        this.laps = counters.counter(name + ".laps");
+        this.suppressed = counters.counter(name + ".suppressed.lines");
+        this.limiter = limiter;
+        this.ordered = listener.ordered();
+        this.peekTimestamp = this::peekTimestamp;
+        this.handleStream = this::handleStream;
+        this.handleThrottle = this::handleThrottle;
     }
 
-    int process()
+    int process(
+        int budget)
     {
-        return streamsBuffer.spy(this::handleStream, 1) +
-                throttleBuffer.spy(this::handleThrottle, 1);
-    }
+        if (limiter != null)
+        {
+            processedAt = System.nanoTime();
+        }
 
-    @Override
-    public void close() throws Exception
-    {
-        layout.close();
-    }
+        if (ordered)
+        {
+            return processOrdered(budget);
+        }
 
-    private void handleStream(
-        int msgTypeId,
-        MutableDirectBuffer buffer,
-        int index,
-        int length)
-    {
-        switch (msgTypeId)
+        final int streamsCount = streamsBuffer.spy(handleStream, Math.min(streamsBatch, budget));
+        final long streamsBacklog = backlog(streamsBuffer);
+        streamsBatch = nextBatch(streamsBacklog, streamsBatch);
+        streamsFrames.addOrdered(streamsCount);
+        streamsLag.setOrdered(streamsBacklog);
+
+        int throttleCount = 0;
+        long throttleBacklog = 0L;
+        if (streamsCount < budget)
         {
-        case BeginFW.TYPE_ID:
-            final BeginFW begin = beginRO.wrap(buffer, index, index + length);
-            handleBegin(begin);
-            break;
-        case DataFW.TYPE_ID:
-            final DataFW data = dataRO.wrap(buffer, index, index + length);
-            handleData(data);
-            break;
-        case EndFW.TYPE_ID:
-            final EndFW end = endRO.wrap(buffer, index, index + length);
-            handleEnd(end);
-            break;
-        case AbortFW.TYPE_ID:
-            final AbortFW abort = abortRO.wrap(buffer, index, index + length);
-            handleAbort(abort);
-            break;
+            throttleCount = throttleBuffer.spy(handleThrottle, Math.min(throttleBatch, budget - streamsCount));
+            throttleBacklog = backlog(throttleBuffer);
+            throttleBatch = nextBatch(throttleBacklog, throttleBatch);
+            throttleFrames.addOrdered(throttleCount);
+            throttleLag.setOrdered(throttleBacklog);
         }
+
+        onBacklog(streamsBacklog, throttleBacklog);
+
+        return streamsCount + throttleCount;
     }
 
-    private void handleBegin(
-        final BeginFW begin)
+    private int processOrdered(
+        int budget)
     {
+        final int limit = Math.min(budget, MAX_BATCH);
 
-        final long timestamp = begin.timestamp();
-        final long streamId = begin.streamId();
-        final long traceId = begin.trace();
-        final String sourceName = begin.source().asString();
-        final long sourceRef = begin.sourceRef();
-        final long correlationId = begin.correlationId();
-        final long authorization = begin.authorization();
-        final long budget = budgets.computeIfAbsent(streamId, id -> 0L);
-
-        out.printf(streamFormat, timestamp, budget, traceId, streamId,
-                   format("BEGIN \"%s\" [0x%016x] [0x%016x] [0x%016x]", sourceName, sourceRef, correlationId, authorization));
+        int streamsCount = 0;
+        int throttleCount = 0;
 
-        OctetsFW extension = begin.extension();
-        if (verbose && extension.sizeof() != 0)
+        // frames on each ring are caused by frames on the other, so merge by timestamp
+        while (streamsCount + throttleCount < limit)
         {
-            if (sourceName.equals("tcp") || targetName.equals("tcp"))
+            // a throttle frame seen first implies its cause is already visible on streams
+            final long throttleAt = peekTimestamp(throttleBuffer);
+            final long streamsAt = peekTimestamp(streamsBuffer);
+
+            if (throttleAt == Long.MAX_VALUE && peekTimestamp(throttleBuffer) != Long.MAX_VALUE)
             {
-                TcpBeginExFW tcpBeginEx = tcpBeginExRO.wrap(extension.buffer(), extension.offset(), extension.limit());
-                InetSocketAddress localAddress = toInetSocketAddress(tcpBeginEx.localAddress(), tcpBeginEx.localPort());
-                InetSocketAddress remoteAddress = toInetSocketAddress(tcpBeginEx.remoteAddress(), tcpBeginEx.remotePort());
-                out.printf("%s\t%s\n", localAddress, remoteAddress);
+                // throttle frame arrived after peeking streams, so its cause may not have been visible
+                continue;
             }
 
-            if (sourceName.startsWith("http"))
+            if (streamsAt == Long.MAX_VALUE && throttleAt == Long.MAX_VALUE)
+            {
+                break;
+            }
+
+            if (streamsAt <= throttleAt)
+            {
+                streamsCount += streamsBuffer.spy(handleStream, 1);
+            }
+            else
             {
-                final boolean initial = (sourceRef != 0);
-                final long typedRef = (sourceRef != 0) ? sourceRef : correlationId;
-                final Predicate<String> isHttp = n -> n.startsWith("http");
-                final LongPredicate isClient = r -> r > 0L && (r & 0x01L) != 0x00L;
-                final LongPredicate isServer = r -> r > 0L && (r & 0x01L) == 0x00L;
-                final LongPredicate isProxy = r -> r < 0L && (r & 0x01L) == 0x00L;
-                final boolean isHttpClientInitial = initial && isClient.test(typedRef) && isHttp.test(targetName);
-                final boolean isHttpClientReply = !initial && isClient.test(typedRef) && isHttp.test(sourceName);
-                final boolean isHttpServerInitial = initial && isServer.test(typedRef) && isHttp.test(sourceName);
-                final boolean isHttpServerReply = !initial && isServer.test(typedRef) && isHttp.test(targetName);
-                final boolean isHttpProxyInitial = initial && isProxy.test(typedRef) && (isHttp.test(sourceName)
-                        || isHttp.test(targetName));
-                final boolean isHttpProxyReply = !initial && isProxy.test(typedRef) && (isHttp.test(sourceName)
-                        || isHttp.test(targetName));
-
-                if (isHttpClientInitial
-                        || isHttpServerReply
-                        || isHttpClientReply
-                        || isHttpServerInitial
-                        || isHttpProxyInitial
-                        | isHttpProxyReply)
-                {
-                    HttpBeginExFW httpBeginEx = httpBeginExRO.wrap(extension.buffer(), extension.offset(), extension.limit());
-                    httpBeginEx.headers()
-                            .forEach(h -> out.printf("%s: %s\n", h.name().asString(), h.value().asString()));
-                }
+                throttleCount += throttleBuffer.spy(handleThrottle, 1);
             }
         }
+
+        final long streamsBacklog = backlog(streamsBuffer);
+        final long throttleBacklog = backlog(throttleBuffer);
+        streamsFrames.addOrdered(streamsCount);
+        streamsLag.setOrdered(streamsBacklog);
+        throttleFrames.addOrdered(throttleCount);
+        throttleLag.setOrdered(throttleBacklog);
+
+        onBacklog(streamsBacklog, throttleBacklog);
+
+        return streamsCount + throttleCount;
     }
 
-    private void handleData(
-        final DataFW data)
+    private void onBacklog(
+        long streamsBacklog,
+        long throttleBacklog)
     {
-        final long timestamp = data.timestamp();
-        final long streamId = data.streamId();
-        final long traceId = data.trace();
-        final int length = data.length();
-        final int padding = data.padding();
-        final long authorization = data.authorization();
-        final byte flags = (byte) (data.flags() & 0xFF);
-        final long budget = budgets.computeIfPresent(streamId, (i, b) -> b - (length + padding));
-
-        out.printf(format(streamFormat, timestamp, budget, traceId, streamId,
-                          format("DATA [%d] [%d] [%x] [0x%016x]", length, padding, flags, authorization)));
+        final boolean lapped = streamsBacklog > streamsBuffer.capacity() || throttleBacklog > throttleBuffer.capacity();
+        if (lapped && !this.lapped)
+        {
+            laps.addOrdered(1L);
+        }
+        this.lapped = lapped;
     }
 
-    private void handleEnd(
-        final EndFW end)
+    private long peekTimestamp(
+        RingBufferSpy buffer)
     {
-        final long timestamp = end.timestamp();
-        final long streamId = end.streamId();
-        final long traceId = end.trace();
-        final long authorization = end.authorization();
-        final long budget = budgets.get(streamId);
+        peekedAt = Long.MAX_VALUE;
+        buffer.peek(peekTimestamp);
+        return peekedAt;
+    }
 
-        out.printf(format(streamFormat, timestamp, budget, traceId, streamId, format("END [0x%016x]", authorization)));
+    private void peekTimestamp(
+        int msgTypeId,
+        DirectBuffer buffer,
+        int index,
+        int length)
+    {
+        peekedAt = frameRO.wrap(buffer, index, index + length).timestamp();
     }
 
-    private void handleAbort(
-        final AbortFW abort)
+    @Override
+    public void close()
     {
-        final long timestamp = abort.timestamp();
-        final long streamId = abort.streamId();
-        final long traceId = abort.trace();
-        final long authorization = abort.authorization();
-        final long budget = budgets.get(streamId);
+        counters.release(streamsFrames);
+        counters.release(throttleFrames);
+        counters.release(bytes);
+        counters.release(streamsLag);
+        counters.release(throttleLag);
+        counters.release(laps);
+        counters.release(suppressed);
+        layouts.release(layout);
+    }
 
-        out.printf(format(streamFormat, timestamp, budget, traceId, streamId, format("ABORT [0x%016x]", authorization)));
+    private static long backlog(
+        RingBufferSpy buffer)
+    {
+        return buffer.producerPosition() - buffer.spyPosition();
     }
 
-    private void handleThrottle(
+    private static int nextBatch(
+        long backlog,
+        int batch)
+    {
+        // grow while frames remain unread, shrink back towards one frame when caught up
+        return backlog > 0L ? Math.min(batch << 1, MAX_BATCH) : Math.max(batch >> 1, MIN_BATCH);
+    }
+
+    private void limit(
+        int msgTypeId)
+    {
+        // the listener sees every frame, only its output lines are limited
+        if (limiter != null)
+        {
+            limiter.frame(processedAt, msgTypeId);
+            suppressedAt = limiter.suppressed();
+        }
+    }
+
+    private void onLimited()
+    {
+        if (limiter != null)
+        {
+            suppressed.addOrdered(limiter.suppressed() - suppressedAt);
+        }
+    }
+
+    private void handleStream(
         int msgTypeId,
         MutableDirectBuffer buffer,
         int index,
         int length)
     {
+        bytes.addOrdered(length);
+        limit(msgTypeId);
+
         switch (msgTypeId)
         {
-        case ResetFW.TYPE_ID:
-            final ResetFW reset = resetRO.wrap(buffer, index, index + length);
-            handleReset(reset);
+        case BeginFW.TYPE_ID:
+            final BeginFW begin = beginRO.wrap(buffer, index, index + length);
+            listener.onBegin(begin.timestamp(), begin.trace(), begin.streamId(), begin.sourceRef(),
+                    begin.correlationId(), begin.authorization(), begin);
             break;
-        case WindowFW.TYPE_ID:
-            final WindowFW window = windowRO.wrap(buffer, index, index + length);
-            handleWindow(window);
+        case DataFW.TYPE_ID:
+            final DataFW data = dataRO.wrap(buffer, index, index + length);
+            listener.onData(data.timestamp(), data.trace(), data.streamId(), data.length(), data.padding(),
+                    data.flags() & 0xFF, data.authorization(), data);
+            break;
+        case EndFW.TYPE_ID:
+            final EndFW end = endRO.wrap(buffer, index, index + length);
+            listener.onEnd(end.timestamp(), end.trace(), end.streamId(), end.authorization(), end);
+            break;
+        case AbortFW.TYPE_ID:
+            final AbortFW abort = abortRO.wrap(buffer, index, index + length);
+            listener.onAbort(abort.timestamp(), abort.trace(), abort.streamId(), abort.authorization(), abort);
             break;
         }
-    }
-
-    private void handleReset(
-        final ResetFW reset)
-    {
-        final long timestamp = reset.timestamp();
-        final long streamId = reset.streamId();
-        final long traceId = reset.trace();
-        final long budget = budgets.get(streamId);
 
-        out.printf(format(throttleFormat, timestamp, budget, traceId, streamId, "RESET"));
-    }
-
-    private void handleWindow(
-        final WindowFW window)
-    {
-        final long timestamp = window.timestamp();
-        final long streamId = window.streamId();
-        final long traceId = window.trace();
-        final int credit = window.credit();
-        final int padding = window.padding();
-        final long groupId = window.groupId();
-        final long budget = budgets.computeIfPresent(streamId, (i, b) -> b + credit);
-
-        out.printf(format(throttleFormat, timestamp, budget, traceId, streamId,
-                          format("WINDOW [%d] [%d] [%d]", credit, padding, groupId)));
+        onLimited();
     }
 
-    private InetSocketAddress toInetSocketAddress(
-        TcpAddressFW tcpAddress,
-        int tcpPort)
+    private void handleThrottle(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
     {
-        InetSocketAddress socketAddress = null;
-
-        try
-        {
-            byte[] address;
+        bytes.addOrdered(length);
+        limit(msgTypeId);
 
-            switch (tcpAddress.kind())
-            {
-            case TcpAddressFW.KIND_IPV4_ADDRESS:
-                address = new byte[4];
-                tcpAddress.ipv4Address().get((b, o, l) ->
-                {
-                    b.getBytes(o, address); return address;
-                });
-                socketAddress = new InetSocketAddress(getByAddress(address), tcpPort);
-                break;
-            case TcpAddressFW.KIND_IPV6_ADDRESS:
-                address = new byte[16];
-                tcpAddress.ipv4Address().get((b, o, l) ->
-                {
-                    b.getBytes(o, address); return address;
-                });
-                socketAddress = new InetSocketAddress(getByAddress(address), tcpPort);
-                break;
-            case TcpAddressFW.KIND_HOST:
-                String hostName = tcpAddress.host().asString();
-                socketAddress = new InetSocketAddress(hostName, tcpPort);
-                break;
-            }
-        }
-        catch (UnknownHostException ex)
+        switch (msgTypeId)
         {
-            LangUtil.rethrowUnchecked(ex);
+        case ResetFW.TYPE_ID:
+            final ResetFW reset = resetRO.wrap(buffer, index, index + length);
+            listener.onReset(reset.timestamp(), reset.trace(), reset.streamId(), reset);
+            break;
+        case WindowFW.TYPE_ID:
+            final WindowFW window = windowRO.wrap(buffer, index, index + length);
+            listener.onWindow(window.timestamp(), window.trace(), window.streamId(), window.credit(), window.padding(),
+                    window.groupId(), window);
+            break;
         }
 
-        return socketAddress;
+        onLimited();
     }
 }
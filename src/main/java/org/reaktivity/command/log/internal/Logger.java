@@ -15,8 +15,24 @@
  */
 package org.reaktivity.command.log.internal;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 @FunctionalInterface
 public interface Logger
 {
     void printf(String format, Object... args);
+
+    default void write(
+        byte[] bytes,
+        int offset,
+        int length)
+    {
+        printf("%s", new String(bytes, offset, length, UTF_8));
+    }
+
+    // false when the next line would be dropped, so callers can skip formatting it
+    default boolean enabled()
+    {
+        return true;
+    }
 }
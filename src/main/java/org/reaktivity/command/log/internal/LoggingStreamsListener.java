@@ -0,0 +1,256 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.lang.String.format;
+import static java.net.InetAddress.getByAddress;
+
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+import org.agrona.LangUtil;
+import org.agrona.collections.Long2LongHashMap;
+import org.reaktivity.command.log.internal.types.OctetsFW;
+import org.reaktivity.command.log.internal.types.TcpAddressFW;
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.HttpBeginExFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.TcpBeginExFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+public final class LoggingStreamsListener implements StreamsListener
+{
+    private final TcpBeginExFW tcpBeginExRO = new TcpBeginExFW();
+    private final HttpBeginExFW httpBeginExRO = new HttpBeginExFW();
+
+    private final String streamFormat;
+    private final String throttleFormat;
+    private final String targetName;
+    private final Logger out;
+    private final boolean verbose;
+    private final Long2LongHashMap budgets;
+
+    public LoggingStreamsListener(
+        String receiver,
+        String sender,
+        Logger logger,
+        boolean verbose)
+    {
+        this.streamFormat = String.format("[%%d] [0x%%08x] [0x%%016x] [%s -> %s]\t[0x%%016x] %%s\n", sender, receiver);
+        this.throttleFormat = String.format("[%%d] [0x%%08x] [0x%%016x] [%s <- %s]\t[0x%%016x] %%s\n", sender, receiver);
+
+        this.targetName = receiver;
+        this.out = logger;
+        this.verbose = verbose;
+        this.budgets = new Long2LongHashMap(-1L);
+    }
+
+    @Override
+    public void onBegin(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long sourceRef,
+        long correlationId,
+        long authorization,
+        BeginFW begin)
+    {
+        final long budget = budgets.computeIfAbsent(streamId, id -> 0L);
+
+        // budgets are tracked for every frame, lines are only formatted when the logger takes them
+        if (out.enabled())
+        {
+            final String sourceName = begin.source().asString();
+            out.printf(streamFormat, timestamp, budget, traceId, streamId,
+                       format("BEGIN \"%s\" [0x%016x] [0x%016x] [0x%016x]", sourceName, sourceRef, correlationId, authorization));
+
+            OctetsFW extension = begin.extension();
+            if (verbose && extension.sizeof() != 0)
+            {
+                if (sourceName.equals("tcp") || targetName.equals("tcp"))
+                {
+                    TcpBeginExFW tcpBeginEx = tcpBeginExRO.wrap(extension.buffer(), extension.offset(), extension.limit());
+                    InetSocketAddress localAddress = toInetSocketAddress(tcpBeginEx.localAddress(), tcpBeginEx.localPort());
+                    InetSocketAddress remoteAddress = toInetSocketAddress(tcpBeginEx.remoteAddress(), tcpBeginEx.remotePort());
+                    out.printf("%s\t%s\n", localAddress, remoteAddress);
+                }
+
+                if (sourceName.startsWith("http"))
+                {
+                    final boolean initial = (sourceRef != 0);
+                    final long typedRef = (sourceRef != 0) ? sourceRef : correlationId;
+                    final Predicate<String> isHttp = n -> n.startsWith("http");
+                    final LongPredicate isClient = r -> r > 0L && (r & 0x01L) != 0x00L;
+                    final LongPredicate isServer = r -> r > 0L && (r & 0x01L) == 0x00L;
+                    final LongPredicate isProxy = r -> r < 0L && (r & 0x01L) == 0x00L;
+                    final boolean isHttpClientInitial = initial && isClient.test(typedRef) && isHttp.test(targetName);
+                    final boolean isHttpClientReply = !initial && isClient.test(typedRef) && isHttp.test(sourceName);
+                    final boolean isHttpServerInitial = initial && isServer.test(typedRef) && isHttp.test(sourceName);
+                    final boolean isHttpServerReply = !initial && isServer.test(typedRef) && isHttp.test(targetName);
+                    final boolean isHttpProxyInitial = initial && isProxy.test(typedRef) && (isHttp.test(sourceName)
+                            || isHttp.test(targetName));
+                    final boolean isHttpProxyReply = !initial && isProxy.test(typedRef) && (isHttp.test(sourceName)
+                            || isHttp.test(targetName));
+
+                    if (isHttpClientInitial
+                            || isHttpServerReply
+                            || isHttpClientReply
+                            || isHttpServerInitial
+                            || isHttpProxyInitial
+                            | isHttpProxyReply)
+                    {
+                        HttpBeginExFW httpBeginEx = httpBeginExRO.wrap(extension.buffer(), extension.offset(), extension.limit());
+                        httpBeginEx.headers()
+                                .forEach(h -> out.printf("%s: %s\n", h.name().asString(), h.value().asString()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onData(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int length,
+        int padding,
+        int flags,
+        long authorization,
+        DataFW data)
+    {
+        final long budget = budgets.computeIfPresent(streamId, (i, b) -> b - (length + padding));
+
+        if (out.enabled())
+        {
+            out.printf(format(streamFormat, timestamp, budget, traceId, streamId,
+                              format("DATA [%d] [%d] [%x] [0x%016x]", length, padding, (byte) flags, authorization)));
+        }
+    }
+
+    @Override
+    public void onEnd(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        EndFW end)
+    {
+        final long budget = budgets.get(streamId);
+
+        if (out.enabled())
+        {
+            out.printf(format(streamFormat, timestamp, budget, traceId, streamId, format("END [0x%016x]", authorization)));
+        }
+    }
+
+    @Override
+    public void onAbort(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        AbortFW abort)
+    {
+        final long budget = budgets.get(streamId);
+
+        if (out.enabled())
+        {
+            out.printf(format(streamFormat, timestamp, budget, traceId, streamId, format("ABORT [0x%016x]", authorization)));
+        }
+    }
+
+    @Override
+    public void onReset(
+        long timestamp,
+        long traceId,
+        long streamId,
+        ResetFW reset)
+    {
+        final long budget = budgets.get(streamId);
+
+        if (out.enabled())
+        {
+            out.printf(format(throttleFormat, timestamp, budget, traceId, streamId, "RESET"));
+        }
+    }
+
+    @Override
+    public void onWindow(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int credit,
+        int padding,
+        long groupId,
+        WindowFW window)
+    {
+        final long budget = budgets.computeIfPresent(streamId, (i, b) -> b + credit);
+
+        if (out.enabled())
+        {
+            out.printf(format(throttleFormat, timestamp, budget, traceId, streamId,
+                              format("WINDOW [%d] [%d] [%d]", credit, padding, groupId)));
+        }
+    }
+
+    private InetSocketAddress toInetSocketAddress(
+        TcpAddressFW tcpAddress,
+        int tcpPort)
+    {
+        InetSocketAddress socketAddress = null;
+
+        try
+        {
+            byte[] address;
+
+            switch (tcpAddress.kind())
+            {
+            case TcpAddressFW.KIND_IPV4_ADDRESS:
+                address = new byte[4];
+                tcpAddress.ipv4Address().get((b, o, l) ->
+                {
+                    b.getBytes(o, address); return address;
+                });
+                socketAddress = new InetSocketAddress(getByAddress(address), tcpPort);
+                break;
+            case TcpAddressFW.KIND_IPV6_ADDRESS:
+                address = new byte[16];
+                tcpAddress.ipv4Address().get((b, o, l) ->
+                {
+                    b.getBytes(o, address); return address;
+                });
+                socketAddress = new InetSocketAddress(getByAddress(address), tcpPort);
+                break;
+            case TcpAddressFW.KIND_HOST:
+                String hostName = tcpAddress.host().asString();
+                socketAddress = new InetSocketAddress(hostName, tcpPort);
+                break;
+            }
+        }
+        catch (UnknownHostException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        return socketAddress;
+    }
+}
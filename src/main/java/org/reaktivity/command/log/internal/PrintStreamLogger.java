@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import java.io.PrintStream;
+
+final class PrintStreamLogger implements Logger
+{
+    private final PrintStream stream;
+
+    PrintStreamLogger(
+        PrintStream stream)
+    {
+        this.stream = stream;
+    }
+
+    @Override
+    public void printf(
+        String format,
+        Object... args)
+    {
+        stream.printf(format, args);
+    }
+
+    @Override
+    public void write(
+        byte[] bytes,
+        int offset,
+        int length)
+    {
+        stream.write(bytes, offset, length);
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.agrona.hints.ThreadHints;
+import org.reaktivity.command.log.internal.spy.RingBufferSpy;
+
+final class QueueDepthSampler implements Runnable
+{
+    private static final long MIN_PARK_NS = 50_000L;
+    private static final int IDLE = -1;
+
+    private final long periodNanos;
+
+    private volatile RingSample[] samples;
+    private volatile int phase;
+    private volatile int sweeping;
+    private volatile Thread flipper;
+
+    QueueDepthSampler(
+        long periodNanos)
+    {
+        this.periodNanos = periodNanos;
+        this.samples = new RingSample[0];
+        this.sweeping = IDLE;
+    }
+
+    RingSample newSample(
+        String nukleus,
+        String source,
+        String type,
+        RingBufferSpy buffer)
+    {
+        return new RingSample(nukleus, source, type, buffer);
+    }
+
+    void samples(
+        RingSample[] samples)
+    {
+        this.samples = samples;
+    }
+
+    int flip()
+    {
+        final int oldPhase = phase;
+
+        phase = oldPhase ^ 1;
+
+        // a sweep acknowledges its phase before sampling, so wait until none is sweeping the old phase
+        flipper = Thread.currentThread();
+        try
+        {
+            while (sweeping == oldPhase)
+            {
+                LockSupport.parkNanos(this, periodNanos);
+            }
+        }
+        finally
+        {
+            flipper = null;
+        }
+
+        return oldPhase;
+    }
+
+    @Override
+    public void run()
+    {
+        long nextSampleAt = System.nanoTime();
+
+        while (!Thread.currentThread().isInterrupted())
+        {
+            // recheck after acknowledging, so a flip either sees the acknowledgement or is seen here
+            int phase;
+            do
+            {
+                phase = this.phase;
+                sweeping = phase;
+            }
+            while (phase != this.phase);
+
+            // read after the phase, so samples replaced before a flip are never swept after it returns
+            final RingSample[] samples = this.samples;
+
+            for (int i = 0; i < samples.length; i++)
+            {
+                samples[i].sample(phase);
+            }
+
+            sweeping = IDLE;
+
+            final Thread flipper = this.flipper;
+            if (flipper != null)
+            {
+                LockSupport.unpark(flipper);
+            }
+
+            nextSampleAt += periodNanos;
+            long remaining = nextSampleAt - System.nanoTime();
+            if (remaining < 0L)
+            {
+                nextSampleAt -= remaining;
+            }
+            else
+            {
+                while (remaining > 0L)
+                {
+                    if (remaining >= MIN_PARK_NS)
+                    {
+                        LockSupport.parkNanos(remaining - MIN_PARK_NS / 2);
+                    }
+                    else
+                    {
+                        ThreadHints.onSpinWait();
+                    }
+                    remaining = nextSampleAt - System.nanoTime();
+                }
+            }
+        }
+    }
+
+    static final class RingSample
+    {
+        final String nukleus;
+        final String source;
+        final String type;
+        final RingBufferSpy buffer;
+        final Histogram[] histograms;
+        final RingThroughput throughput;
+
+        volatile long watermark;
+
+        private RingSample(
+            String nukleus,
+            String source,
+            String type,
+            RingBufferSpy buffer)
+        {
+            this.nukleus = nukleus;
+            this.source = source;
+            this.type = type;
+            this.buffer = buffer;
+            this.histograms = new Histogram[] { new Histogram(), new Histogram() };
+            this.throughput = new RingThroughput();
+        }
+
+        private long depth()
+        {
+            // read consumer position first for pessimistic queue depth
+            long consumerAt = buffer.consumerPosition();
+            long producerAt = buffer.producerPosition();
+
+            return producerAt - consumerAt;
+        }
+
+        private void sample(
+            int phase)
+        {
+            final long depth = depth();
+
+            histograms[phase].record(depth);
+
+            if (depth > watermark)
+            {
+                watermark = depth;
+            }
+        }
+    }
+}
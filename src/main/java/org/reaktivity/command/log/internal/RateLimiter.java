@@ -0,0 +1,209 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+final class RateLimiter implements Logger
+{
+    private static final String[] FRAME_NAMES = { "BEGIN", "DATA", "END", "ABORT", "RESET", "WINDOW", "other" };
+    private static final int OTHER = FRAME_NAMES.length - 1;
+
+    private final String name;
+    private final Logger out;
+    private final RateLimiter global;
+    private final double tokensPerNano;
+    private final double capacity;
+    private final long[] suppressed;
+
+    private double tokens;
+    private long refilledAt;
+    private long now;
+    private int frame;
+    private long suppressedLines;
+    private boolean acquired;
+
+    RateLimiter(
+        String name,
+        Logger out,
+        long linesPerSecond,
+        RateLimiter global)
+    {
+        this.name = name;
+        this.out = out;
+        this.global = global;
+        this.tokensPerNano = (double) linesPerSecond / SECONDS.toNanos(1L);
+        this.capacity = linesPerSecond;
+        this.suppressed = new long[FRAME_NAMES.length];
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+        this.frame = OTHER;
+    }
+
+    // lines printed by the listener until the next frame are attributed to this frame
+    void frame(
+        long now,
+        int msgTypeId)
+    {
+        this.now = now;
+        this.frame = index(msgTypeId);
+        this.acquired = false;
+    }
+
+    long suppressed()
+    {
+        return suppressedLines;
+    }
+
+    // takes the token for the next line up front, so a suppressed line is never formatted
+    @Override
+    public boolean enabled()
+    {
+        acquired = tryAcquire();
+        return acquired;
+    }
+
+    @Override
+    public void printf(
+        String format,
+        Object... args)
+    {
+        if (consume())
+        {
+            out.printf(format, args);
+        }
+    }
+
+    @Override
+    public void write(
+        byte[] bytes,
+        int offset,
+        int length)
+    {
+        if (consume())
+        {
+            out.write(bytes, offset, length);
+        }
+    }
+
+    void summarize()
+    {
+        StringBuilder summary = null;
+
+        for (int i = 0; i < suppressed.length; i++)
+        {
+            if (suppressed[i] != 0L)
+            {
+                summary = summary == null ? new StringBuilder("Suppressed lines: ") : summary.append(", ");
+                summary.append(String.format("%,d %s", suppressed[i], FRAME_NAMES[i]));
+                suppressed[i] = 0L;
+            }
+        }
+
+        if (summary != null)
+        {
+            out.printf("%s on %s\n", summary, name);
+        }
+    }
+
+    private boolean consume()
+    {
+        final boolean granted = acquired || tryAcquire();
+        acquired = false;
+        return granted;
+    }
+
+    private boolean tryAcquire()
+    {
+        refill(now);
+        if (global != null)
+        {
+            global.refill(now);
+        }
+
+        // debit only when both have a token, so a refused line costs the pair nothing
+        final boolean acquired = available() && (global == null || global.available());
+
+        if (acquired)
+        {
+            debit();
+            if (global != null)
+            {
+                global.debit();
+            }
+        }
+        else
+        {
+            suppressed[frame]++;
+            suppressedLines++;
+        }
+
+        return acquired;
+    }
+
+    private void refill(
+        long now)
+    {
+        // refill lazily, bursts of up to one second worth of lines
+        if (capacity > 0.0 && now > refilledAt)
+        {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+
+    private boolean available()
+    {
+        return capacity <= 0.0 || tokens >= 1.0;
+    }
+
+    private void debit()
+    {
+        if (capacity > 0.0)
+        {
+            tokens -= 1.0;
+        }
+    }
+
+    private static int index(
+        int msgTypeId)
+    {
+        switch (msgTypeId)
+        {
+        case BeginFW.TYPE_ID:
+            return 0;
+        case DataFW.TYPE_ID:
+            return 1;
+        case EndFW.TYPE_ID:
+            return 2;
+        case AbortFW.TYPE_ID:
+            return 3;
+        case ResetFW.TYPE_ID:
+            return 4;
+        case WindowFW.TYPE_ID:
+            return 5;
+        default:
+            return OTHER;
+        }
+    }
+}
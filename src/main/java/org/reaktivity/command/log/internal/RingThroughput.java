@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+final class RingThroughput
+{
+    private static final double NANOS_PER_SECOND = SECONDS.toNanos(1L);
+
+    private long producerAt;
+    private long consumerAt;
+    private long sampledAt;
+
+    private double producedRate;
+    private double consumedRate;
+
+    void sample(
+        long producerAt,
+        long consumerAt,
+        long sampledAt)
+    {
+        if (this.sampledAt != 0L && sampledAt > this.sampledAt)
+        {
+            final double elapsedSeconds = (sampledAt - this.sampledAt) / NANOS_PER_SECOND;
+            this.producedRate = (producerAt - this.producerAt) / elapsedSeconds;
+            this.consumedRate = (consumerAt - this.consumerAt) / elapsedSeconds;
+        }
+
+        this.producerAt = producerAt;
+        this.consumerAt = consumerAt;
+        this.sampledAt = sampledAt;
+    }
+
+    double producedRate()
+    {
+        return producedRate;
+    }
+
+    double consumedRate()
+    {
+        return consumedRate;
+    }
+
+    double secondsToFull(
+        long capacity)
+    {
+        final double fillRate = producedRate - consumedRate;
+        final long remaining = capacity - (producerAt - consumerAt);
+
+        return fillRate > 0.0 ? Math.max(remaining, 0L) / fillRate : Double.POSITIVE_INFINITY;
+    }
+}
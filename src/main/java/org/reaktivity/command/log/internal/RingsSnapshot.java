@@ -0,0 +1,220 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.agrona.BitUtil.align;
+import static org.agrona.concurrent.ringbuffer.OneToOneRingBuffer.PADDING_MSG_TYPE_ID;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.ALIGNMENT;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.HEADER_LENGTH;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.encodedMsgOffset;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.lengthOffset;
+import static org.agrona.concurrent.ringbuffer.RecordDescriptor.typeOffset;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.agrona.DirectBuffer;
+import org.agrona.LangUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+
+final class RingsSnapshot
+{
+    // header is magic, version, epoch millis and rings count, followed per ring by nukleus, source and type,
+    // then capacity, producer and consumer positions, and the unconsumed ring records from the consumer position
+    static final int MAGIC = 0x534e4752;
+    static final int VERSION = 1;
+    static final int SNAPSHOT_HEADER_LENGTH = 3 * Integer.BYTES + Long.BYTES;
+
+    private final long timestamp;
+    private final String[] nuklei;
+    private final String[] sources;
+    private final String[] types;
+    private final int[] capacities;
+    private final long[] producers;
+    private final long[] consumers;
+    private final MutableDirectBuffer[] records;
+
+    private RingsSnapshot(
+        long timestamp,
+        int count)
+    {
+        this.timestamp = timestamp;
+        this.nuklei = new String[count];
+        this.sources = new String[count];
+        this.types = new String[count];
+        this.capacities = new int[count];
+        this.producers = new long[count];
+        this.consumers = new long[count];
+        this.records = new MutableDirectBuffer[count];
+    }
+
+    long timestamp()
+    {
+        return timestamp;
+    }
+
+    int count()
+    {
+        return records.length;
+    }
+
+    String nukleus(
+        int index)
+    {
+        return nuklei[index];
+    }
+
+    String source(
+        int index)
+    {
+        return sources[index];
+    }
+
+    String type(
+        int index)
+    {
+        return types[index];
+    }
+
+    int capacity(
+        int index)
+    {
+        return capacities[index];
+    }
+
+    long producerPosition(
+        int index)
+    {
+        return producers[index];
+    }
+
+    long consumerPosition(
+        int index)
+    {
+        return consumers[index];
+    }
+
+    // decodes the ring records as a consumer would, skipping padding and stopping at a record still being written
+    int read(
+        int index,
+        MessageHandler handler)
+    {
+        final MutableDirectBuffer buffer = records[index];
+        final int limit = buffer.capacity();
+
+        int count = 0;
+        int offset = 0;
+        while (offset + HEADER_LENGTH <= limit)
+        {
+            final int recordLength = buffer.getInt(lengthOffset(offset));
+            if (recordLength <= 0)
+            {
+                break;
+            }
+
+            final int msgTypeId = buffer.getInt(typeOffset(offset));
+            if (msgTypeId != PADDING_MSG_TYPE_ID)
+            {
+                handler.onMessage(msgTypeId, buffer, encodedMsgOffset(offset), recordLength - HEADER_LENGTH);
+                count++;
+            }
+
+            offset += align(recordLength, ALIGNMENT);
+        }
+
+        return count;
+    }
+
+    static int putHeader(
+        MutableDirectBuffer buffer,
+        long timestamp,
+        int rings)
+    {
+        buffer.putInt(0, MAGIC, LITTLE_ENDIAN);
+        buffer.putInt(Integer.BYTES, VERSION, LITTLE_ENDIAN);
+        buffer.putLong(2 * Integer.BYTES, timestamp, LITTLE_ENDIAN);
+        buffer.putInt(2 * Integer.BYTES + Long.BYTES, rings, LITTLE_ENDIAN);
+        return SNAPSHOT_HEADER_LENGTH;
+    }
+
+    static RingsSnapshot read(
+        Path path)
+    {
+        RingsSnapshot snapshot = null;
+
+        try
+        {
+            final DirectBuffer buffer = new UnsafeBuffer(Files.readAllBytes(path));
+
+            if (buffer.capacity() < SNAPSHOT_HEADER_LENGTH ||
+                buffer.getInt(0, LITTLE_ENDIAN) != MAGIC ||
+                buffer.getInt(Integer.BYTES, LITTLE_ENDIAN) != VERSION)
+            {
+                throw new IllegalArgumentException(String.format("%s is not a rings snapshot", path));
+            }
+
+            snapshot = read(buffer, buffer.capacity());
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+
+        return snapshot;
+    }
+
+    static RingsSnapshot read(
+        DirectBuffer buffer,
+        int limit)
+    {
+        final long timestamp = buffer.getLong(2 * Integer.BYTES, LITTLE_ENDIAN);
+        final int count = buffer.getInt(2 * Integer.BYTES + Long.BYTES, LITTLE_ENDIAN);
+        final RingsSnapshot snapshot = new RingsSnapshot(timestamp, count);
+
+        int offset = SNAPSHOT_HEADER_LENGTH;
+        for (int i = 0; i < count; i++)
+        {
+            snapshot.nuklei[i] = CountersSnapshot.getString(buffer, offset);
+            offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+            snapshot.sources[i] = CountersSnapshot.getString(buffer, offset);
+            offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+            snapshot.types[i] = CountersSnapshot.getString(buffer, offset);
+            offset += Short.BYTES + buffer.getShort(offset, LITTLE_ENDIAN);
+
+            snapshot.capacities[i] = buffer.getInt(offset, LITTLE_ENDIAN);
+            snapshot.producers[i] = buffer.getLong(offset + Integer.BYTES, LITTLE_ENDIAN);
+            snapshot.consumers[i] = buffer.getLong(offset + Integer.BYTES + Long.BYTES, LITTLE_ENDIAN);
+            final int length = buffer.getInt(offset + Integer.BYTES + 2 * Long.BYTES, LITTLE_ENDIAN);
+            offset += 2 * Integer.BYTES + 2 * Long.BYTES;
+
+            if (offset + length > limit)
+            {
+                throw new IllegalArgumentException("rings snapshot truncated");
+            }
+
+            final byte[] bytes = new byte[length];
+            buffer.getBytes(offset, bytes);
+            snapshot.records[i] = new UnsafeBuffer(bytes);
+            offset += length;
+        }
+
+        return snapshot;
+    }
+}
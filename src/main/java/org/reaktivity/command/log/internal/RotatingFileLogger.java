@@ -0,0 +1,280 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.agrona.LangUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.SleepingIdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+
+final class RotatingFileLogger implements Logger, AutoCloseable
+{
+    private static final int QUEUE_CAPACITY = 1024 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int OUTPUT_MSG_TYPE_ID = 1;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private final Path path;
+    private final long maxBytes;
+    private final long maxMillis;
+    private final int retain;
+    private final boolean gzip;
+    private final AtomicCounter queueDepth;
+    private final AtomicCounter dropped;
+    private final RingBuffer queue;
+    private final UnsafeBuffer source;
+    private final byte[] chunk;
+    private final MessageHandler onOutput;
+    private final Thread writer;
+
+    private volatile boolean running;
+
+    private OutputStream output;
+    private long written;
+    private long openedAt;
+    private boolean unflushed;
+
+    RotatingFileLogger(
+        Path path,
+        long maxBytes,
+        long maxMillis,
+        int retain,
+        boolean gzip,
+        AtomicCounter queueDepth,
+        AtomicCounter dropped)
+    {
+        this(path, maxBytes, maxMillis, retain, gzip, queueDepth, dropped,
+                new OneToOneRingBuffer(new UnsafeBuffer(ByteBuffer.allocateDirect(QUEUE_CAPACITY + TRAILER_LENGTH))));
+    }
+
+    RotatingFileLogger(
+        Path path,
+        long maxBytes,
+        long maxMillis,
+        int retain,
+        boolean gzip,
+        AtomicCounter queueDepth,
+        AtomicCounter dropped,
+        RingBuffer queue)
+    {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+        this.retain = retain;
+        this.gzip = gzip;
+        this.queueDepth = queueDepth;
+        this.dropped = dropped;
+        this.queue = queue;
+        this.source = new UnsafeBuffer(new byte[0]);
+        this.chunk = new byte[queue.maxMsgLength()];
+        this.onOutput = this::onOutput;
+        this.writer = new Thread(this::drain, "output");
+        this.running = true;
+
+        open();
+
+        // daemon, so shutdown hooks run once commands return, then close drains the queue
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void printf(
+        String format,
+        Object... args)
+    {
+        final byte[] bytes = String.format(format, args).getBytes(UTF_8);
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public synchronized void write(
+        byte[] bytes,
+        int offset,
+        int length)
+    {
+        source.wrap(bytes);
+
+        int progress = 0;
+        boolean queued = true;
+        while (progress < length && running && queued)
+        {
+            final int size = Math.min(length - progress, chunk.length);
+            queued = queue.write(OUTPUT_MSG_TYPE_ID, source, offset + progress, size);
+            if (queued)
+            {
+                progress += size;
+            }
+        }
+
+        // output with the queue full, after close or after the writer failed is counted rather than waited for
+        dropped.add(length - progress);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (running)
+        {
+            running = false;
+
+            try
+            {
+                writer.join();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void drain()
+    {
+        final IdleStrategy idleStrategy = new SleepingIdleStrategy(IDLE_PARK_NANOS);
+
+        try
+        {
+            while (running)
+            {
+                final int count = queue.read(onOutput);
+                queueDepth.setOrdered(queue.size());
+
+                if (count == 0 && unflushed)
+                {
+                    output.flush();
+                    unflushed = false;
+                }
+
+                if (maxMillis > 0L && System.currentTimeMillis() - openedAt >= maxMillis)
+                {
+                    rotate();
+                }
+
+                idleStrategy.idle(count);
+            }
+
+            while (queue.read(onOutput) != 0)
+            {
+                // drain output written before close
+            }
+
+            output.close();
+        }
+        catch (IOException ex)
+        {
+            // later output is counted as dropped, the commands keep running
+            running = false;
+            System.err.printf("output %s failed, dropping output: %s\n", path, ex);
+
+            while (queue.read(this::onDropped) != 0)
+            {
+                // queued output is lost with the file
+            }
+        }
+    }
+
+    private void onDropped(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+        dropped.add(length);
+    }
+
+    private void onOutput(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+        buffer.getBytes(index, chunk, 0, length);
+
+        try
+        {
+            output.write(chunk, 0, length);
+            written += length;
+            unflushed = true;
+
+            if (maxBytes > 0L && written >= maxBytes)
+            {
+                rotate();
+            }
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    private void open()
+    {
+        try
+        {
+            final OutputStream file = new BufferedOutputStream(Files.newOutputStream(file(0)), OUTPUT_BUFFER_SIZE);
+            output = gzip ? new GZIPOutputStream(file, OUTPUT_BUFFER_SIZE) : file;
+            written = 0L;
+            openedAt = System.currentTimeMillis();
+        }
+        catch (IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    private void rotate() throws IOException
+    {
+        output.close();
+
+        // shift rotated files up by one, dropping the oldest beyond retention
+        Files.deleteIfExists(file(retain));
+        for (int i = retain - 1; i >= 0; i--)
+        {
+            final Path from = file(i);
+            if (Files.exists(from))
+            {
+                Files.move(from, file(i + 1), REPLACE_EXISTING);
+            }
+        }
+
+        open();
+    }
+
+    private Path file(
+        int index)
+    {
+        final String name = path.getFileName().toString();
+        return path.resolveSibling(name + (index != 0 ? "." + index : "") + (gzip ? ".gz" : ""));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+public interface StreamsListener
+{
+    // flyweights are reused across frames, valid only during each callback
+
+    // true to receive frames from both rings merged in timestamp order
+    default boolean ordered()
+    {
+        return false;
+    }
+
+    default void onBegin(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long sourceRef,
+        long correlationId,
+        long authorization,
+        BeginFW begin)
+    {
+    }
+
+    default void onData(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int length,
+        int padding,
+        int flags,
+        long authorization,
+        DataFW data)
+    {
+    }
+
+    default void onEnd(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        EndFW end)
+    {
+    }
+
+    default void onAbort(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        AbortFW abort)
+    {
+    }
+
+    default void onWindow(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int credit,
+        int padding,
+        long groupId,
+        WindowFW window)
+    {
+    }
+
+    default void onReset(
+        long timestamp,
+        long traceId,
+        long streamId,
+        ResetFW reset)
+    {
+    }
+
+    @FunctionalInterface
+    interface Factory
+    {
+        // out is the output for the pair, rate limited when limits are set
+        StreamsListener newListener(
+            String receiver,
+            String sender,
+            Logger out);
+    }
+}
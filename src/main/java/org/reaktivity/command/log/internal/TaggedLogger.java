@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+final class TaggedLogger implements Logger
+{
+    private final byte[] prefix;
+    private final byte[] field;
+    private final Logger out;
+    private final TextBuffer line;
+    private final TextBuffer buffer;
+
+    TaggedLogger(
+        String tag,
+        Logger out)
+    {
+        this.prefix = String.format("[%s] ", tag).getBytes(UTF_8);
+        this.field = String.format("\"instance\":\"%s\"", tag.replace("\\", "\\\\").replace("\"", "\\\"")).getBytes(UTF_8);
+        this.out = out;
+        this.line = new TextBuffer(256);
+        this.buffer = new TextBuffer(1024);
+    }
+
+    @Override
+    public void printf(
+        String format,
+        Object... args)
+    {
+        final byte[] bytes = String.format(format, args).getBytes(UTF_8);
+        write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public synchronized void write(
+        byte[] bytes,
+        int offset,
+        int length)
+    {
+        buffer.reset();
+
+        // partial lines wait for their newline, so loggers sharing an output only ever interleave whole lines
+        for (int i = offset; i < offset + length; i++)
+        {
+            final byte b = bytes[i];
+            line.put(b);
+
+            if (b == '\n')
+            {
+                tag();
+                line.reset();
+            }
+        }
+
+        if (buffer.limit() != 0)
+        {
+            out.write(buffer.array(), 0, buffer.limit());
+        }
+    }
+
+    private void tag()
+    {
+        final byte[] bytes = line.array();
+        final int limit = line.limit();
+
+        // json lines get an instance field, other lines a prefix
+        if (bytes[0] == '{')
+        {
+            buffer.put((byte) '{').put(field);
+            if (bytes[1] != '}')
+            {
+                buffer.put((byte) ',');
+            }
+        }
+        else if (bytes[0] != '\n')
+        {
+            buffer.put(prefix).put(bytes[0]);
+        }
+        else
+        {
+            buffer.put(bytes[0]);
+        }
+
+        for (int i = 1; i < limit; i++)
+        {
+            buffer.put(bytes[i]);
+        }
+    }
+}
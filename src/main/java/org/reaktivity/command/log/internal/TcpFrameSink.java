@@ -0,0 +1,456 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static org.reaktivity.command.log.internal.CaptureWriter.RECORD_HEADER_LENGTH;
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_PAIR;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+
+final class TcpFrameSink implements FrameSink, AutoCloseable
+{
+    private static final int BATCH_COUNT = 16;
+    private static final int BATCH_CAPACITY = 256 * 1024;
+
+    // message header is batch length as a little endian int, followed by capture records,
+    // every connection starts with a message defining the pairs known so far
+    private static final int MESSAGE_HEADER_LENGTH = Integer.BYTES;
+
+    private static final long LINGER_MILLIS = 100L;
+    private static final long MAX_LINGER_MILLIS = 1000L;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long MIN_BACKOFF_MILLIS = 100L;
+    private static final long MAX_BACKOFF_MILLIS = 10_000L;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000L;
+
+    private final InetSocketAddress address;
+    private final ByteBuffer[] batches;
+    private final UnsafeBuffer[] records;
+    private final ByteBuffer[] headers;
+    private final ByteBuffer[] message;
+    private final int[] free;
+    private final int[] pending;
+    private final AtomicCounter frames;
+    private final AtomicCounter dropped;
+    private final AtomicCounter sent;
+    private final AtomicCounter bytes;
+    private final AtomicCounter reconnects;
+    private final Map<String, Integer> pairs;
+    private final List<DirectBuffer> definitions;
+    private final Thread sender;
+
+    private volatile boolean running;
+
+    private int freeCount;
+    private int pendingHead;
+    private int pendingCount;
+    private int current;
+    private int currentLimit;
+    private long acquiredAt;
+    private long writtenAt;
+    private boolean[] defined;
+
+    private volatile SocketChannel channel;
+    private boolean connected;
+    private long backoff;
+
+    TcpFrameSink(
+        InetSocketAddress address,
+        LogCounters counters)
+    {
+        this.address = address;
+        this.batches = new ByteBuffer[BATCH_COUNT];
+        this.records = new UnsafeBuffer[BATCH_COUNT];
+        this.headers = new ByteBuffer[BATCH_COUNT];
+        this.message = new ByteBuffer[BATCH_COUNT << 1];
+        this.free = new int[BATCH_COUNT];
+        this.pending = new int[BATCH_COUNT];
+        this.frames = counters.counter("ship.frames");
+        this.dropped = counters.counter("ship.dropped");
+        this.sent = counters.counter("ship.batches");
+        this.bytes = counters.counter("ship.bytes");
+        this.reconnects = counters.counter("ship.reconnects");
+        this.pairs = new HashMap<>();
+        this.definitions = new ArrayList<>();
+        this.defined = new boolean[16];
+        this.sender = new Thread(this::ship, "ship");
+        this.running = true;
+        this.current = -1;
+        this.backoff = MIN_BACKOFF_MILLIS;
+
+        for (int i = 0; i < BATCH_COUNT; i++)
+        {
+            batches[i] = ByteBuffer.allocateDirect(BATCH_CAPACITY);
+            records[i] = new UnsafeBuffer(batches[i]);
+            headers[i] = ByteBuffer.allocateDirect(MESSAGE_HEADER_LENGTH).order(LITTLE_ENDIAN);
+            free[freeCount++] = i;
+        }
+
+        // daemon, so shutdown hooks run once commands return, then close sends what is left
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public synchronized int pair(
+        String receiver,
+        String sender)
+    {
+        final String name = receiver + '\n' + sender;
+        Integer pair = pairs.get(name);
+
+        if (pair == null)
+        {
+            pair = definitions.size();
+            pairs.put(name, pair);
+            definitions.add(CaptureWriter.definition(receiver, sender));
+
+            if (defined.length <= pair)
+            {
+                defined = Arrays.copyOf(defined, defined.length << 1);
+            }
+        }
+
+        return pair;
+    }
+
+    @Override
+    public synchronized void write(
+        int pair,
+        int ring,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        // a dropped definition is retried ahead of the next frame of the pair
+        if (!defined[pair])
+        {
+            final DirectBuffer definition = definitions.get(pair);
+            defined[pair] = append(pair, RING_PAIR, 0, definition, 0, definition.capacity());
+        }
+
+        if (defined[pair] && append(pair, ring, msgTypeId, buffer, offset, length))
+        {
+            frames.increment();
+        }
+        else
+        {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (!running)
+            {
+                return;
+            }
+
+            running = false;
+            if (current != -1)
+            {
+                seal();
+            }
+            notifyAll();
+        }
+
+        try
+        {
+            sender.join(CLOSE_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            disconnect();
+        }
+    }
+
+    private boolean append(
+        int pair,
+        int ring,
+        int msgTypeId,
+        DirectBuffer buffer,
+        int offset,
+        int length)
+    {
+        final int required = RECORD_HEADER_LENGTH + length;
+
+        if (!running || required > BATCH_CAPACITY)
+        {
+            return false;
+        }
+
+        if (current != -1 && currentLimit + required > BATCH_CAPACITY)
+        {
+            seal();
+        }
+
+        // drop rather than block the spy loop when the collector cannot keep up
+        if (current == -1 && !acquire())
+        {
+            return false;
+        }
+
+        final UnsafeBuffer record = records[current];
+        record.putInt(currentLimit, ring, LITTLE_ENDIAN);
+        record.putInt(currentLimit + Integer.BYTES, pair, LITTLE_ENDIAN);
+        record.putInt(currentLimit + 2 * Integer.BYTES, msgTypeId, LITTLE_ENDIAN);
+        record.putInt(currentLimit + 3 * Integer.BYTES, length, LITTLE_ENDIAN);
+        buffer.getBytes(offset, record, currentLimit + RECORD_HEADER_LENGTH, length);
+        currentLimit += required;
+        writtenAt = System.currentTimeMillis();
+
+        return true;
+    }
+
+    private boolean acquire()
+    {
+        if (freeCount == 0)
+        {
+            return false;
+        }
+
+        current = free[--freeCount];
+        currentLimit = 0;
+        acquiredAt = System.currentTimeMillis();
+        return true;
+    }
+
+    private void seal()
+    {
+        batches[current].clear().limit(currentLimit);
+        headers[current].putInt(0, currentLimit);
+        pending[(pendingHead + pendingCount) % BATCH_COUNT] = current;
+        pendingCount++;
+        current = -1;
+        notifyAll();
+    }
+
+    private void ship()
+    {
+        while (running)
+        {
+            final int count = awaitPending();
+            if (count > 0 && connect())
+            {
+                send(count);
+            }
+        }
+
+        // one attempt to send batches sealed by close, no reconnect
+        final int count = pending();
+        if (count > 0 && channel != null)
+        {
+            send(count);
+        }
+    }
+
+    private synchronized int awaitPending()
+    {
+        try
+        {
+            while (running && pendingCount == 0)
+            {
+                // sealed once writes pause for the linger period, a steady trickle at most max linger after acquire
+                final long now = System.currentTimeMillis();
+                final boolean lingered = now - writtenAt >= LINGER_MILLIS || now - acquiredAt >= MAX_LINGER_MILLIS;
+                if (current != -1 && currentLimit != 0 && lingered)
+                {
+                    seal();
+                }
+                else
+                {
+                    wait(LINGER_MILLIS);
+                }
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+
+        return pendingCount;
+    }
+
+    private synchronized int pending()
+    {
+        return pendingCount;
+    }
+
+    private void send(
+        int count)
+    {
+        // pending batches are only removed by this thread, so the first count are stable without the lock
+        long remaining = 0L;
+        for (int i = 0; i < count; i++)
+        {
+            final int batch = pending[(pendingHead + i) % BATCH_COUNT];
+            message[i << 1] = (ByteBuffer) headers[batch].clear();
+            message[(i << 1) + 1] = (ByteBuffer) batches[batch].position(0);
+            remaining += MESSAGE_HEADER_LENGTH + batches[batch].limit();
+        }
+
+        try
+        {
+            final SocketChannel channel = this.channel;
+            final long length = remaining;
+            while (remaining > 0L)
+            {
+                remaining -= channel.write(message, 0, count << 1);
+            }
+
+            release(count);
+            sent.add(count);
+            bytes.add(length);
+        }
+        catch (IOException ex)
+        {
+            // batches stay pending and are resent whole after reconnect
+            disconnect();
+        }
+    }
+
+    private synchronized void release(
+        int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            free[freeCount++] = pending[pendingHead];
+            pendingHead = (pendingHead + 1) % BATCH_COUNT;
+        }
+        pendingCount -= count;
+    }
+
+    private boolean connect()
+    {
+        if (channel == null)
+        {
+            try
+            {
+                channel = SocketChannel.open();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+                sendDefinitions();
+
+                if (connected)
+                {
+                    reconnects.increment();
+                }
+                connected = true;
+                backoff = MIN_BACKOFF_MILLIS;
+            }
+            catch (IOException ex)
+            {
+                disconnect();
+                awaitBackoff();
+            }
+        }
+
+        return channel != null;
+    }
+
+    private void sendDefinitions() throws IOException
+    {
+        final ByteBuffer message;
+
+        synchronized (this)
+        {
+            int length = 0;
+            for (DirectBuffer definition : definitions)
+            {
+                length += RECORD_HEADER_LENGTH + definition.capacity();
+            }
+
+            message = ByteBuffer.allocate(MESSAGE_HEADER_LENGTH + length).order(LITTLE_ENDIAN);
+            message.putInt(length);
+            for (int pair = 0; pair < definitions.size(); pair++)
+            {
+                final DirectBuffer definition = definitions.get(pair);
+                message.putInt(RING_PAIR).putInt(pair).putInt(0).putInt(definition.capacity());
+                definition.getBytes(0, message, definition.capacity());
+            }
+            message.flip();
+        }
+
+        // pairs defined on an earlier connection are unknown to a restarted collector
+        if (message.remaining() > MESSAGE_HEADER_LENGTH)
+        {
+            final long length = message.remaining();
+            while (message.hasRemaining())
+            {
+                channel.write(message);
+            }
+            bytes.add(length);
+        }
+    }
+
+    private synchronized void awaitBackoff()
+    {
+        try
+        {
+            if (running)
+            {
+                wait(backoff);
+            }
+            backoff = Math.min(backoff << 1, MAX_BACKOFF_MILLIS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void disconnect()
+    {
+        final SocketChannel channel = this.channel;
+        this.channel = null;
+
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException ex)
+            {
+                // already closed by the collector
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+
+public final class TextBuffer
+{
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    private final ExpandableArrayBuffer buffer;
+    private final byte[] digits;
+
+    private int limit;
+
+    public TextBuffer(
+        int initialCapacity)
+    {
+        this.buffer = new ExpandableArrayBuffer(initialCapacity);
+        this.digits = new byte[20];
+    }
+
+    public TextBuffer reset()
+    {
+        limit = 0;
+        return this;
+    }
+
+    public int limit()
+    {
+        return limit;
+    }
+
+    public byte[] array()
+    {
+        return buffer.byteArray();
+    }
+
+    public TextBuffer put(
+        byte value)
+    {
+        buffer.putByte(limit++, value);
+        return this;
+    }
+
+    public TextBuffer put(
+        byte[] value)
+    {
+        buffer.putBytes(limit, value);
+        limit += value.length;
+        return this;
+    }
+
+    public TextBuffer putAscii(
+        CharSequence value)
+    {
+        final int length = value.length();
+        for (int i = 0; i < length; i++)
+        {
+            buffer.putByte(limit++, (byte) value.charAt(i));
+        }
+        return this;
+    }
+
+    public TextBuffer putLong(
+        long value)
+    {
+        if (value == Long.MIN_VALUE)
+        {
+            return putAscii("-9223372036854775808");
+        }
+
+        if (value < 0L)
+        {
+            put((byte) '-');
+            value = -value;
+        }
+
+        int count = 0;
+        do
+        {
+            digits[count++] = (byte) ('0' + value % 10L);
+            value /= 10L;
+        } while (value != 0L);
+
+        while (count > 0)
+        {
+            buffer.putByte(limit++, digits[--count]);
+        }
+
+        return this;
+    }
+
+    public TextBuffer putHex(
+        long value,
+        int digits)
+    {
+        for (int shift = (digits - 1) << 2; shift >= 0; shift -= 4)
+        {
+            buffer.putByte(limit++, HEX_DIGITS[(int) (value >>> shift) & 0x0f]);
+        }
+        return this;
+    }
+
+    public TextBuffer putJsonString(
+        DirectBuffer value,
+        int offset,
+        int limit)
+    {
+        put((byte) '"');
+        for (int i = offset; i < limit; i++)
+        {
+            final byte b = value.getByte(i);
+            switch (b)
+            {
+            case '"':
+            case '\\':
+                put((byte) '\\').put(b);
+                break;
+            case '\n':
+                put((byte) '\\').put((byte) 'n');
+                break;
+            case '\r':
+                put((byte) '\\').put((byte) 'r');
+                break;
+            case '\t':
+                put((byte) '\\').put((byte) 't');
+                break;
+            default:
+                if (b >= 0 && b < 0x20)
+                {
+                    putAscii("\\u00").putHex(b, 2);
+                }
+                else
+                {
+                    put(b);
+                }
+                break;
+            }
+        }
+        put((byte) '"');
+        return this;
+    }
+
+    public void writeTo(
+        OutputStream output) throws IOException
+    {
+        output.write(buffer.byteArray(), 0, limit);
+    }
+}
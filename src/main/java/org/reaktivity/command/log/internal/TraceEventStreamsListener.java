@@ -0,0 +1,190 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.agrona.collections.Long2LongHashMap;
+import org.reaktivity.command.log.internal.types.stream.AbortFW;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+
+public final class TraceEventStreamsListener implements StreamsListener
+{
+    private static final byte[] BEGIN = "BEGIN".getBytes(UTF_8);
+    private static final byte[] END = "END".getBytes(UTF_8);
+    private static final byte[] ABORT = "ABORT".getBytes(UTF_8);
+    private static final byte[] RESET = "RESET".getBytes(UTF_8);
+    private static final byte[] STALL = "STALL".getBytes(UTF_8);
+    private static final byte[] WINDOW = "WINDOW".getBytes(UTF_8);
+
+    private final TraceEventWriter writer;
+    private final String laneName;
+    private final int lane;
+    private final Long2LongHashMap budgets;
+    private final Long2LongHashMap stalls;
+
+    private boolean named;
+
+    TraceEventStreamsListener(
+        String receiver,
+        String sender,
+        TraceEventWriter writer,
+        int pid)
+    {
+        this.writer = writer;
+        this.laneName = String.format("%s -> %s", sender, receiver);
+        this.lane = writer.lane(pid);
+        this.budgets = new Long2LongHashMap(-1L);
+        this.stalls = new Long2LongHashMap(-1L);
+    }
+
+    @Override
+    public boolean ordered()
+    {
+        return true;
+    }
+
+    @Override
+    public void onBegin(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long sourceRef,
+        long correlationId,
+        long authorization,
+        BeginFW begin)
+    {
+        onFrame();
+        budgets.put(streamId, 0L);
+        writer.spanBegin(lane, timestamp, streamId);
+        writer.slice(lane, timestamp, traceId, streamId, BEGIN);
+    }
+
+    @Override
+    public void onData(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int length,
+        int padding,
+        int flags,
+        long authorization,
+        DataFW data)
+    {
+        final long budget = budgets.get(streamId);
+        if (budget != -1L)
+        {
+            final long remaining = budget - (length + padding);
+            budgets.put(streamId, remaining);
+
+            if (budget > 0L && remaining <= 0L)
+            {
+                stalls.put(streamId, timestamp);
+                onFrame();
+                writer.instant(lane, timestamp, traceId, streamId, STALL);
+            }
+        }
+    }
+
+    @Override
+    public void onEnd(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        EndFW end)
+    {
+        onFrame();
+        writer.slice(lane, timestamp, traceId, streamId, END);
+        onClosed(timestamp, streamId, END);
+    }
+
+    @Override
+    public void onAbort(
+        long timestamp,
+        long traceId,
+        long streamId,
+        long authorization,
+        AbortFW abort)
+    {
+        onFrame();
+        writer.slice(lane, timestamp, traceId, streamId, ABORT);
+        onClosed(timestamp, streamId, ABORT);
+    }
+
+    @Override
+    public void onReset(
+        long timestamp,
+        long traceId,
+        long streamId,
+        ResetFW reset)
+    {
+        onFrame();
+        writer.instant(lane, timestamp, traceId, streamId, RESET);
+        onClosed(timestamp, streamId, RESET);
+    }
+
+    @Override
+    public void onWindow(
+        long timestamp,
+        long traceId,
+        long streamId,
+        int credit,
+        int padding,
+        long groupId,
+        WindowFW window)
+    {
+        final long budget = budgets.get(streamId);
+        if (budget != -1L)
+        {
+            final long available = budget + credit;
+            budgets.put(streamId, available);
+
+            // only windows that resume a stalled stream are worth a marker
+            if (available > 0L && stalls.remove(streamId) != -1L)
+            {
+                onFrame();
+                writer.instant(lane, timestamp, traceId, streamId, WINDOW);
+            }
+        }
+    }
+
+    private void onClosed(
+        long timestamp,
+        long streamId,
+        byte[] frame)
+    {
+        stalls.remove(streamId);
+        if (budgets.remove(streamId) != -1L)
+        {
+            writer.spanEnd(lane, timestamp, streamId, frame);
+        }
+    }
+
+    private void onFrame()
+    {
+        // name the lane on first use, on the processing thread
+        if (!named)
+        {
+            writer.laneName(lane, laneName);
+            named = true;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+
+import org.agrona.collections.Long2LongHashMap;
+
+final class TraceEventWriter
+{
+    private static final int MAX_FLOWS = 64 * 1024;
+
+    private static final byte[] START = "[".getBytes(UTF_8);
+    private static final byte[] SEPARATOR = ",\n".getBytes(UTF_8);
+    private static final byte[] FIRST = "\n".getBytes(UTF_8);
+    private static final byte[] METADATA = "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":".getBytes(UTF_8);
+    private static final byte[] PROCESS_METADATA = "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":".getBytes(UTF_8);
+    private static final byte[] METADATA_NAME = ",\"args\":{\"name\":".getBytes(UTF_8);
+    private static final byte[] SPAN_BEGIN = "{\"name\":\"stream\",\"cat\":\"stream\",\"ph\":\"b\",\"id\":\"".getBytes(UTF_8);
+    private static final byte[] SPAN_END = "{\"name\":\"stream\",\"cat\":\"stream\",\"ph\":\"e\",\"id\":\"".getBytes(UTF_8);
+    private static final byte[] SLICE = "{\"cat\":\"frame\",\"ph\":\"X\",\"dur\":0,\"name\":\"".getBytes(UTF_8);
+    private static final byte[] INSTANT = "{\"cat\":\"frame\",\"ph\":\"i\",\"s\":\"t\",\"name\":\"".getBytes(UTF_8);
+    private static final byte[] FLOW_START = "{\"name\":\"trace\",\"cat\":\"trace\",\"ph\":\"s\",\"id\":\"0x".getBytes(UTF_8);
+    private static final byte[] FLOW_STEP = "{\"name\":\"trace\",\"cat\":\"trace\",\"ph\":\"t\",\"bp\":\"e\",\"id\":\"0x"
+            .getBytes(UTF_8);
+    private static final byte[] STREAM_ID = "\",\"id\":\"".getBytes(UTF_8);
+    private static final byte[] PID = ",\"pid\":".getBytes(UTF_8);
+    private static final byte[] QUOTED_PID = "\",\"pid\":".getBytes(UTF_8);
+    private static final byte[] TID = ",\"tid\":".getBytes(UTF_8);
+    private static final byte[] TS = ",\"ts\":".getBytes(UTF_8);
+    private static final byte[] ARGS_FRAME = ",\"args\":{\"frame\":\"".getBytes(UTF_8);
+    private static final byte[] ARGS_STREAM = ",\"args\":{\"stream\":\"0x".getBytes(UTF_8);
+    private static final byte[] ARGS_TRACE = "\",\"trace\":\"0x".getBytes(UTF_8);
+    private static final byte[] ARGS_END = "\"}}".getBytes(UTF_8);
+
+    private final Logger out;
+    private final TextBuffer buffer;
+    private final Long2LongHashMap flows;
+
+    private int lanes;
+    private int[] pids;
+    private boolean started;
+
+    TraceEventWriter(
+        Logger out)
+    {
+        this.out = out;
+        this.buffer = new TextBuffer(512);
+        this.flows = new Long2LongHashMap(-1L);
+        this.pids = new int[64];
+    }
+
+    // shared by the listeners of every pair and every directory, each directory is one trace process
+    synchronized void processName(
+        int pid,
+        String name)
+    {
+        event().put(PROCESS_METADATA).putLong(pid)
+               .put(METADATA_NAME).putAscii(quoted(name)).put((byte) '}').put((byte) '}');
+        flush();
+    }
+
+    synchronized int lane(
+        int pid)
+    {
+        final int lane = ++lanes;
+        if (pids.length <= lane)
+        {
+            pids = Arrays.copyOf(pids, pids.length << 1);
+        }
+        pids[lane] = pid;
+        return lane;
+    }
+
+    synchronized void laneName(
+        int lane,
+        String name)
+    {
+        event().put(METADATA).putLong(pids[lane]).put(TID).putLong(lane)
+               .put(METADATA_NAME).putAscii(quoted(name)).put((byte) '}').put((byte) '}');
+        flush();
+    }
+
+    synchronized void spanBegin(
+        int lane,
+        long timestamp,
+        long streamId)
+    {
+        event().put(SPAN_BEGIN).putLong(lane).put((byte) ':').putAscii("0x").putHex(streamId, 16)
+               .put(QUOTED_PID).putLong(pids[lane]).put(TID).putLong(lane);
+        putTimestamp(timestamp).put((byte) '}');
+        flush();
+    }
+
+    synchronized void spanEnd(
+        int lane,
+        long timestamp,
+        long streamId,
+        byte[] frame)
+    {
+        event().put(SPAN_END).putLong(lane).put((byte) ':').putAscii("0x").putHex(streamId, 16)
+               .put(QUOTED_PID).putLong(pids[lane]).put(TID).putLong(lane);
+        putTimestamp(timestamp).put(ARGS_FRAME).put(frame).put(ARGS_END);
+        flush();
+    }
+
+    synchronized void slice(
+        int lane,
+        long timestamp,
+        long traceId,
+        long streamId,
+        byte[] frame)
+    {
+        event().put(SLICE).put(frame).put(QUOTED_PID).putLong(pids[lane]).put(TID).putLong(lane);
+        putTimestamp(timestamp).put(ARGS_STREAM).putHex(streamId, 16)
+                               .put(ARGS_TRACE).putHex(traceId, 16).put(ARGS_END);
+        flush();
+
+        if (traceId != 0L)
+        {
+            flow(lane, timestamp, traceId);
+        }
+    }
+
+    synchronized void instant(
+        int lane,
+        long timestamp,
+        long traceId,
+        long streamId,
+        byte[] name)
+    {
+        event().put(INSTANT).put(name).put(QUOTED_PID).putLong(pids[lane]).put(TID).putLong(lane);
+        putTimestamp(timestamp).put(ARGS_STREAM).putHex(streamId, 16)
+                               .put(ARGS_TRACE).putHex(traceId, 16).put(ARGS_END);
+        flush();
+    }
+
+    private void flow(
+        int lane,
+        long timestamp,
+        long traceId)
+    {
+        // first frame seen for a trace starts the flow, later frames step it across lanes
+        final boolean started = flows.get(traceId) != -1L;
+        if (!started)
+        {
+            if (flows.size() >= MAX_FLOWS)
+            {
+                flows.clear();
+            }
+            flows.put(traceId, lane);
+        }
+
+        event().put(started ? FLOW_STEP : FLOW_START).putHex(traceId, 16)
+               .put((byte) '"').put(PID).putLong(pids[lane]).put(TID).putLong(lane);
+        putTimestamp(timestamp).put((byte) '}');
+        flush();
+    }
+
+    private static String quoted(
+        String name)
+    {
+        return "\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private TextBuffer event()
+    {
+        buffer.reset();
+
+        // json array format, closing bracket is optional so events stream out as they arrive
+        if (!started)
+        {
+            buffer.put(START).put(FIRST);
+            started = true;
+        }
+        else
+        {
+            buffer.put(SEPARATOR);
+        }
+
+        return buffer;
+    }
+
+    private TextBuffer putTimestamp(
+        long timestamp)
+    {
+        // trace event timestamps are microseconds
+        final long fraction = Math.floorMod(timestamp, 1000L);
+        return buffer.put(TS).putLong(Math.floorDiv(timestamp, 1000L)).put((byte) '.')
+                     .putLong(fraction / 100L).putLong(fraction / 10L % 10L).putLong(fraction % 10L);
+    }
+
+    private void flush()
+    {
+        out.write(buffer.array(), 0, buffer.limit());
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.counters;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.agrona.BitUtil.SIZE_OF_INT;
+import static org.agrona.concurrent.status.CountersReader.COUNTER_LENGTH;
+import static org.agrona.concurrent.status.CountersReader.LABEL_OFFSET;
+import static org.agrona.concurrent.status.CountersReader.METADATA_LENGTH;
+import static org.agrona.concurrent.status.CountersReader.RECORD_ALLOCATED;
+import static org.agrona.concurrent.status.CountersReader.RECORD_UNUSED;
+import static org.agrona.concurrent.status.CountersReader.counterOffset;
+import static org.agrona.concurrent.status.CountersReader.metaDataOffset;
+
+import org.agrona.concurrent.AtomicBuffer;
+
+public final class CountersIndex
+{
+    private static final long RECHECK_PERIOD_NS = SECONDS.toNanos(1L);
+
+    private final AtomicBuffer labelsBuffer;
+    private final AtomicBuffer valuesBuffer;
+    private final int maxCounters;
+    private final String[] labels;
+    private final byte[][] labelsBytes;
+    private final int[] states;
+    private final int[] ids;
+    private final long[] values;
+    private final long recheckPeriodNanos;
+
+    private int count;
+    private int scanLimit;
+    private long recheckAt;
+
+    public CountersIndex(
+        AtomicBuffer labelsBuffer,
+        AtomicBuffer valuesBuffer)
+    {
+        this(labelsBuffer, valuesBuffer, RECHECK_PERIOD_NS);
+    }
+
+    public CountersIndex(
+        AtomicBuffer labelsBuffer,
+        AtomicBuffer valuesBuffer,
+        long recheckPeriodNanos)
+    {
+        this.recheckPeriodNanos = recheckPeriodNanos;
+        this.labelsBuffer = labelsBuffer;
+        this.valuesBuffer = valuesBuffer;
+        this.maxCounters = Math.min(labelsBuffer.capacity() / METADATA_LENGTH, valuesBuffer.capacity() / COUNTER_LENGTH);
+        this.labels = new String[maxCounters];
+        this.labelsBytes = new byte[maxCounters][];
+        this.states = new int[maxCounters];
+        this.ids = new int[maxCounters];
+        this.values = new long[maxCounters];
+        this.recheckAt = System.nanoTime();
+    }
+
+    public int maxCounters()
+    {
+        return maxCounters;
+    }
+
+    public int count()
+    {
+        return count;
+    }
+
+    public int id(
+        int index)
+    {
+        return ids[index];
+    }
+
+    public String label(
+        int id)
+    {
+        return labels[id];
+    }
+
+    public long value(
+        int id)
+    {
+        return values[id];
+    }
+
+    public boolean refresh()
+    {
+        boolean changed = isAllocatedPastScanLimit();
+
+        // freed ids are reused below the scan limit, so recheck state and label of every known id
+        for (int id = 0; id < scanLimit && !changed; id++)
+        {
+            final int state = labelsBuffer.getIntVolatile(metaDataOffset(id));
+            changed = state != states[id] || state == RECORD_ALLOCATED && isLabelChanged(id);
+        }
+
+        if (changed)
+        {
+            rescan();
+        }
+
+        return changed;
+    }
+
+    public void rescan()
+    {
+        int newCount = 0;
+        int id = 0;
+        for (; id < maxCounters; id++)
+        {
+            final int metaDataOffset = metaDataOffset(id);
+            final int state = labelsBuffer.getIntVolatile(metaDataOffset);
+
+            if (state == RECORD_UNUSED)
+            {
+                break;
+            }
+
+            if (state == RECORD_ALLOCATED)
+            {
+                // a new label instance tells callers the id was allocated again
+                if (states[id] != RECORD_ALLOCATED || isLabelChanged(id))
+                {
+                    final int labelOffset = metaDataOffset + LABEL_OFFSET;
+                    final byte[] bytes = new byte[labelsBuffer.getInt(labelOffset)];
+                    labelsBuffer.getBytes(labelOffset + SIZE_OF_INT, bytes);
+                    labelsBytes[id] = bytes;
+                    labels[id] = new String(bytes, UTF_8);
+                }
+                ids[newCount++] = id;
+            }
+            else
+            {
+                labelsBytes[id] = null;
+                labels[id] = null;
+            }
+
+            states[id] = state;
+        }
+
+        count = newCount;
+        scanLimit = id;
+    }
+
+    private boolean isLabelChanged(
+        int id)
+    {
+        final int labelOffset = metaDataOffset(id) + LABEL_OFFSET;
+        final byte[] bytes = labelsBytes[id];
+        final int length = labelsBuffer.getInt(labelOffset);
+
+        boolean changed = bytes == null || bytes.length != length;
+        for (int i = 0; i < length && !changed; i++)
+        {
+            changed = labelsBuffer.getByte(labelOffset + SIZE_OF_INT + i) != bytes[i];
+        }
+
+        return changed;
+    }
+
+    private boolean isAllocatedPastScanLimit()
+    {
+        return scanLimit < maxCounters && labelsBuffer.getIntVolatile(metaDataOffset(scanLimit)) != RECORD_UNUSED;
+    }
+
+    // new allocations are checked on every sample, reuse of known ids only once per recheck period
+    public int sample()
+    {
+        final long now = System.nanoTime();
+        if (now - recheckAt >= 0L)
+        {
+            recheckAt = now + recheckPeriodNanos;
+            refresh();
+        }
+        else if (isAllocatedPastScanLimit())
+        {
+            rescan();
+        }
+
+        final AtomicBuffer valuesBuffer = this.valuesBuffer;
+        final int[] ids = this.ids;
+        final long[] values = this.values;
+        final int count = this.count;
+
+        for (int i = 0; i < count; i++)
+        {
+            final int id = ids[i];
+            values[id] = valuesBuffer.getLongVolatile(counterOffset(id));
+        }
+
+        return count;
+    }
+}
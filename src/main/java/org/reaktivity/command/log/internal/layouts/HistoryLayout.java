@@ -0,0 +1,247 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.layouts;
+
+import static org.agrona.BitUtil.align;
+import static org.agrona.IoUtil.createEmptyFile;
+import static org.agrona.IoUtil.mapExistingFile;
+import static org.agrona.IoUtil.unmap;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.agrona.BitUtil;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+public final class HistoryLayout extends Layout
+{
+    public static final long MISSING_VALUE = Long.MIN_VALUE;
+    public static final int MAX_RESOLUTIONS = 4;
+    public static final int SERIES_LENGTH = 256;
+    public static final int SERIES_NUKLEUS_OFFSET = 0;
+    public static final int SERIES_NAME_OFFSET = 64;
+
+    private static final int HISTORY_VERSION = 1;
+
+    private static final int FIELD_OFFSET_VERSION = 0;
+    private static final int FIELD_OFFSET_MAX_SERIES = FIELD_OFFSET_VERSION + BitUtil.SIZE_OF_INT;
+    private static final int FIELD_OFFSET_RESOLUTIONS = FIELD_OFFSET_MAX_SERIES + BitUtil.SIZE_OF_INT;
+    private static final int FIELD_OFFSET_SERIES_COUNT = FIELD_OFFSET_RESOLUTIONS + BitUtil.SIZE_OF_INT;
+    private static final int FIELD_OFFSET_PERIODS = FIELD_OFFSET_SERIES_COUNT + BitUtil.SIZE_OF_INT;
+    private static final int FIELD_OFFSET_SLOTS = FIELD_OFFSET_PERIODS + MAX_RESOLUTIONS * BitUtil.SIZE_OF_LONG;
+    private static final int FIELD_OFFSET_HEADS = FIELD_OFFSET_SLOTS + MAX_RESOLUTIONS * BitUtil.SIZE_OF_INT;
+
+    private static final int FIELD_OFFSET_STARTS = FIELD_OFFSET_HEADS + MAX_RESOLUTIONS * BitUtil.SIZE_OF_LONG;
+
+    private static final int END_OF_META_DATA_OFFSET = align(
+            FIELD_OFFSET_STARTS + MAX_RESOLUTIONS * BitUtil.SIZE_OF_LONG, BitUtil.CACHE_LINE_LENGTH);
+
+    private final AtomicBuffer metadataBuffer = new UnsafeBuffer(new byte[0]);
+    private final AtomicBuffer seriesBuffer = new UnsafeBuffer(new byte[0]);
+    private final AtomicBuffer[] valuesBuffers;
+
+    private HistoryLayout(
+        int resolutions)
+    {
+        this.valuesBuffers = new AtomicBuffer[resolutions];
+        for (int i = 0; i < resolutions; i++)
+        {
+            valuesBuffers[i] = new UnsafeBuffer(new byte[0]);
+        }
+    }
+
+    public int maxSeries()
+    {
+        return metadataBuffer.getInt(FIELD_OFFSET_MAX_SERIES);
+    }
+
+    public int seriesCount()
+    {
+        return metadataBuffer.getIntVolatile(FIELD_OFFSET_SERIES_COUNT);
+    }
+
+    public void seriesCount(
+        int seriesCount)
+    {
+        metadataBuffer.putIntOrdered(FIELD_OFFSET_SERIES_COUNT, seriesCount);
+    }
+
+    public int resolutions()
+    {
+        return valuesBuffers.length;
+    }
+
+    public long periodMillis(
+        int resolution)
+    {
+        return metadataBuffer.getLong(FIELD_OFFSET_PERIODS + resolution * BitUtil.SIZE_OF_LONG);
+    }
+
+    public int slots(
+        int resolution)
+    {
+        return metadataBuffer.getInt(FIELD_OFFSET_SLOTS + resolution * BitUtil.SIZE_OF_INT);
+    }
+
+    public long head(
+        int resolution)
+    {
+        return metadataBuffer.getLongVolatile(FIELD_OFFSET_HEADS + resolution * BitUtil.SIZE_OF_LONG);
+    }
+
+    public void head(
+        int resolution,
+        long period)
+    {
+        metadataBuffer.putLongOrdered(FIELD_OFFSET_HEADS + resolution * BitUtil.SIZE_OF_LONG, period);
+    }
+
+    public long start(
+        int resolution)
+    {
+        return metadataBuffer.getLongVolatile(FIELD_OFFSET_STARTS + resolution * BitUtil.SIZE_OF_LONG);
+    }
+
+    public void start(
+        int resolution,
+        long period)
+    {
+        metadataBuffer.putLongOrdered(FIELD_OFFSET_STARTS + resolution * BitUtil.SIZE_OF_LONG, period);
+    }
+
+    public AtomicBuffer seriesBuffer()
+    {
+        return seriesBuffer;
+    }
+
+    public AtomicBuffer valuesBuffer(
+        int resolution)
+    {
+        return valuesBuffers[resolution];
+    }
+
+    @Override
+    public void close()
+    {
+        unmap(metadataBuffer.byteBuffer());
+        unmap(seriesBuffer.byteBuffer());
+        for (AtomicBuffer valuesBuffer : valuesBuffers)
+        {
+            unmap(valuesBuffer.byteBuffer());
+        }
+    }
+
+    public static final class Builder extends Layout.Builder<HistoryLayout>
+    {
+        private Path path;
+        private int maxSeries;
+        private long[] periodsMillis = new long[0];
+        private int[] slots = new int[0];
+        private boolean readonly;
+
+        public Builder path(
+            Path path)
+        {
+            this.path = path;
+            return this;
+        }
+
+        public Builder maxSeries(
+            int maxSeries)
+        {
+            this.maxSeries = maxSeries;
+            return this;
+        }
+
+        public Builder resolution(
+            long periodMillis,
+            int slots)
+        {
+            final int resolutions = this.slots.length;
+            if (resolutions == MAX_RESOLUTIONS)
+            {
+                throw new IllegalStateException("too many resolutions");
+            }
+
+            this.periodsMillis = Arrays.copyOf(this.periodsMillis, resolutions + 1);
+            this.slots = Arrays.copyOf(this.slots, resolutions + 1);
+            this.periodsMillis[resolutions] = periodMillis;
+            this.slots[resolutions] = slots;
+            return this;
+        }
+
+        public Builder readonly(
+            boolean readonly)
+        {
+            this.readonly = readonly;
+            return this;
+        }
+
+        @Override
+        public HistoryLayout build()
+        {
+            final File historyFile = path.toFile();
+
+            if (!readonly)
+            {
+                long length = END_OF_META_DATA_OFFSET + (long) maxSeries * SERIES_LENGTH;
+                for (int i = 0; i < slots.length; i++)
+                {
+                    length += (long) maxSeries * slots[i] * BitUtil.SIZE_OF_LONG;
+                }
+
+                createEmptyFile(historyFile, length);
+            }
+
+            final AtomicBuffer metadata = new UnsafeBuffer(mapExistingFile(historyFile, "metadata", 0, END_OF_META_DATA_OFFSET));
+
+            if (!readonly)
+            {
+                metadata.putInt(FIELD_OFFSET_VERSION, HISTORY_VERSION);
+                metadata.putInt(FIELD_OFFSET_MAX_SERIES, maxSeries);
+                metadata.putInt(FIELD_OFFSET_RESOLUTIONS, slots.length);
+                for (int i = 0; i < slots.length; i++)
+                {
+                    metadata.putLong(FIELD_OFFSET_PERIODS + i * BitUtil.SIZE_OF_LONG, periodsMillis[i]);
+                    metadata.putInt(FIELD_OFFSET_SLOTS + i * BitUtil.SIZE_OF_INT, slots[i]);
+                    metadata.putLong(FIELD_OFFSET_HEADS + i * BitUtil.SIZE_OF_LONG, -1L);
+                    metadata.putLong(FIELD_OFFSET_STARTS + i * BitUtil.SIZE_OF_LONG, -1L);
+                }
+            }
+
+            final int resolutions = metadata.getInt(FIELD_OFFSET_RESOLUTIONS);
+            final int maxSeries = metadata.getInt(FIELD_OFFSET_MAX_SERIES);
+            final HistoryLayout layout = new HistoryLayout(resolutions);
+            layout.metadataBuffer.wrap(metadata.byteBuffer());
+
+            long offset = END_OF_META_DATA_OFFSET;
+            final long seriesLength = (long) maxSeries * SERIES_LENGTH;
+            layout.seriesBuffer.wrap(mapExistingFile(historyFile, "series", offset, seriesLength));
+            offset += seriesLength;
+
+            for (int i = 0; i < resolutions; i++)
+            {
+                final long valuesLength = (long) maxSeries * layout.slots(i) * BitUtil.SIZE_OF_LONG;
+                layout.valuesBuffers[i].wrap(mapExistingFile(historyFile, "values", offset, valuesLength));
+                offset += valuesLength;
+            }
+
+            return layout;
+        }
+    }
+}
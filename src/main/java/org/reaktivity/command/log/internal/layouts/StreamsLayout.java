@@ -16,28 +16,23 @@
 package org.reaktivity.command.log.internal.layouts;
 
 import static org.agrona.IoUtil.createEmptyFile;
-import static org.agrona.IoUtil.mapExistingFile;
-import static org.agrona.IoUtil.unmap;
 
 import java.io.File;
-import java.nio.MappedByteBuffer;
 import java.nio.file.Path;
 
 import org.agrona.CloseHelper;
-import org.agrona.concurrent.AtomicBuffer;
-import org.agrona.concurrent.UnsafeBuffer;
 import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
-import org.reaktivity.command.log.internal.spy.OneToOneRingBufferSpy;
+import org.reaktivity.command.log.internal.spy.LazyRingBufferSpy;
 import org.reaktivity.command.log.internal.spy.RingBufferSpy;
 
 public final class StreamsLayout extends Layout
 {
-    private final RingBufferSpy streamsBuffer;
-    private final RingBufferSpy throttleBuffer;
+    private final LazyRingBufferSpy streamsBuffer;
+    private final LazyRingBufferSpy throttleBuffer;
 
     private StreamsLayout(
-        RingBufferSpy streamsBuffer,
-        RingBufferSpy throttleBuffer)
+        LazyRingBufferSpy streamsBuffer,
+        LazyRingBufferSpy throttleBuffer)
     {
         this.streamsBuffer = streamsBuffer;
         this.throttleBuffer = throttleBuffer;
@@ -56,8 +51,8 @@ public final class StreamsLayout extends Layout
     @Override
     public void close()
     {
-        unmap(streamsBuffer.buffer().byteBuffer());
-        unmap(throttleBuffer.buffer().byteBuffer());
+        streamsBuffer.close();
+        throttleBuffer.close();
     }
 
     public static final class Builder extends Layout.Builder<StreamsLayout>
@@ -107,13 +102,11 @@ public final class StreamsLayout extends Layout
                 CloseHelper.close(createEmptyFile(streams, streamsSize + throttleSize));
             }
 
-            final MappedByteBuffer mappedStreams = mapExistingFile(streams, "streams", 0, streamsSize);
-            final MappedByteBuffer mappedThrottle = mapExistingFile(streams, "throttle", streamsSize, throttleSize);
+            // regions are mapped on first use, so build() stays cheap for large directories
+            final LazyRingBufferSpy streamsSpy = new LazyRingBufferSpy(streams, "streams", 0, (int) streamsCapacity);
+            final LazyRingBufferSpy throttleSpy = new LazyRingBufferSpy(streams, "throttle", streamsSize, (int) throttleCapacity);
 
-            final AtomicBuffer atomicStreams = new UnsafeBuffer(mappedStreams);
-            final AtomicBuffer atomicThrottle = new UnsafeBuffer(mappedThrottle);
-
-            return new StreamsLayout(new OneToOneRingBufferSpy(atomicStreams), new OneToOneRingBufferSpy(atomicThrottle));
+            return new StreamsLayout(streamsSpy, throttleSpy);
         }
     }
 }
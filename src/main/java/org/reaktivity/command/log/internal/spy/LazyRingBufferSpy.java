@@ -0,0 +1,182 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.spy;
+
+import static org.agrona.IoUtil.mapExistingFile;
+import static org.agrona.IoUtil.unmap;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.HEAD_POSITION_OFFSET;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TAIL_POSITION_OFFSET;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.checkCapacity;
+
+import java.io.File;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+
+public final class LazyRingBufferSpy implements RingBufferSpy, AutoCloseable
+{
+    private final File file;
+    private final String label;
+    private final long offset;
+    private final int capacity;
+
+    private AtomicBuffer trailer;
+    private OneToOneRingBufferSpy spy;
+    private boolean closed;
+
+    public LazyRingBufferSpy(
+        File file,
+        String label,
+        long offset,
+        int capacity)
+    {
+        checkCapacity(capacity + TRAILER_LENGTH);
+
+        this.file = file;
+        this.label = label;
+        this.offset = offset;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public int spy(
+        MessageHandler handler)
+    {
+        return spy(handler, Integer.MAX_VALUE);
+    }
+
+    // readers hold the lock while they touch the mapping, so close never unmaps a buffer in use
+    @Override
+    public synchronized int spy(
+        MessageHandler handler,
+        int messageCountLimit)
+    {
+        checkOpen();
+
+        // never written rings stay unmapped
+        if (spy == null && trailer().getLongVolatile(TAIL_POSITION_OFFSET) == 0L)
+        {
+            return 0;
+        }
+
+        return spy().spy(handler, messageCountLimit);
+    }
+
+    @Override
+    public synchronized int peek(
+        MessageHandler handler)
+    {
+        checkOpen();
+
+        if (spy == null && trailer().getLongVolatile(TAIL_POSITION_OFFSET) == 0L)
+        {
+            return 0;
+        }
+
+        return spy().peek(handler);
+    }
+
+    @Override
+    public synchronized long producerPosition()
+    {
+        checkOpen();
+        return trailer().getLong(TAIL_POSITION_OFFSET);
+    }
+
+    @Override
+    public synchronized long consumerPosition()
+    {
+        checkOpen();
+        return trailer().getLong(HEAD_POSITION_OFFSET);
+    }
+
+    @Override
+    public synchronized long spyPosition()
+    {
+        return spy != null ? spy.spyPosition() : 0L;
+    }
+
+    @Override
+    public synchronized void resetHead()
+    {
+        checkOpen();
+        spy().resetHead();
+    }
+
+    @Override
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    // the returned buffer is only valid until close, callers must stop using it first
+    @Override
+    public synchronized DirectBuffer buffer()
+    {
+        checkOpen();
+        return spy().buffer();
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        closed = true;
+
+        if (trailer != null)
+        {
+            unmap(trailer.byteBuffer());
+            trailer = null;
+        }
+
+        if (spy != null)
+        {
+            unmap(spy.buffer().byteBuffer());
+            spy = null;
+        }
+    }
+
+    private AtomicBuffer trailer()
+    {
+        if (trailer == null)
+        {
+            trailer = new UnsafeBuffer(mapExistingFile(file, label, offset + capacity, TRAILER_LENGTH));
+        }
+
+        return trailer;
+    }
+
+    private OneToOneRingBufferSpy spy()
+    {
+        if (spy == null)
+        {
+            spy = new OneToOneRingBufferSpy(new UnsafeBuffer(mapExistingFile(file, label, offset, capacity + TRAILER_LENGTH)));
+        }
+
+        return spy;
+    }
+
+    private void checkOpen()
+    {
+        // fail fast rather than quietly map the file again
+        if (closed)
+        {
+            throw new IllegalStateException(String.format("%s %s closed", file, label));
+        }
+    }
+}
@@ -52,17 +52,30 @@ public class OneToOneRingBufferSpy implements RingBufferSpy
         headPosition = new AtomicLong();
     }
 
+    @Override
     public void resetHead()
     {
         headPosition.lazySet(buffer.getLong(capacity + HEAD_POSITION_OFFSET));
     }
 
+    @Override
+    public long spyPosition()
+    {
+        return headPosition.get();
+    }
+
     @Override
     public DirectBuffer buffer()
     {
         return buffer;
     }
 
+    @Override
+    public int capacity()
+    {
+        return capacity;
+    }
+
     @Override
     public long producerPosition()
     {
@@ -82,6 +95,34 @@ public class OneToOneRingBufferSpy implements RingBufferSpy
         return spy(handler, Integer.MAX_VALUE);
     }
 
+    @Override
+    public int peek(
+        final MessageHandler handler)
+    {
+        final AtomicBuffer buffer = this.buffer;
+        final int mask = capacity - 1;
+
+        long position = headPosition.get();
+        long header = buffer.getLongVolatile((int)position & mask);
+
+        if (recordLength(header) > 0 && messageTypeId(header) == PADDING_MSG_TYPE_ID)
+        {
+            position += align(recordLength(header), ALIGNMENT);
+            header = buffer.getLongVolatile((int)position & mask);
+        }
+
+        final int recordLength = recordLength(header);
+        if (recordLength <= 0)
+        {
+            return 0;
+        }
+
+        final int recordIndex = (int)position & mask;
+        handler.onMessage(messageTypeId(header), buffer, recordIndex + HEADER_LENGTH, recordLength - HEADER_LENGTH);
+
+        return 1;
+    }
+
     @Override
     public int spy(
         final MessageHandler handler,
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.spy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+
+public final class RingBufferPublisher implements Flow.Publisher<RingBufferPublisher.Frame>
+{
+    private final RingBufferSpy spy;
+    private final int batchLimit;
+    private final boolean failOnLap;
+    private final AtomicLong demand;
+    private final Frame frame;
+    private final MessageHandler handler;
+
+    private volatile Flow.Subscriber<? super Frame> subscriber;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private long laps;
+    private long lostBytes;
+
+    public RingBufferPublisher(
+        RingBufferSpy spy,
+        int batchLimit,
+        boolean failOnLap)
+    {
+        this.spy = spy;
+        this.batchLimit = batchLimit;
+        this.failOnLap = failOnLap;
+        this.demand = new AtomicLong();
+        this.frame = new Frame();
+        this.handler = this::onMessage;
+    }
+
+    @Override
+    public void subscribe(
+        Flow.Subscriber<? super Frame> subscriber)
+    {
+        if (this.subscriber != null)
+        {
+            subscriber.onSubscribe(NoopSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("already subscribed"));
+        }
+        else
+        {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new RingSubscription());
+        }
+    }
+
+    public int poll()
+    {
+        final Flow.Subscriber<? super Frame> subscriber = this.subscriber;
+
+        if (subscriber == null || cancelled)
+        {
+            return 0;
+        }
+
+        // errors raised by request are signalled here, on the polling thread
+        final Throwable error = this.error;
+        if (error != null)
+        {
+            cancelled = true;
+            subscriber.onError(error);
+            return 0;
+        }
+
+        final long lapped = spy.producerPosition() - spy.spyPosition() - spy.capacity();
+        if (lapped > 0L)
+        {
+            laps++;
+            lostBytes += lapped;
+
+            if (failOnLap)
+            {
+                cancelled = true;
+                subscriber.onError(new IllegalStateException(String.format("lapped by %d bytes", lapped)));
+                return 0;
+            }
+
+            spy.resetHead();
+        }
+
+        final long requested = demand.get();
+        if (requested == 0L)
+        {
+            return 0;
+        }
+
+        final int workCount = spy.spy(handler, (int) Math.min(requested, batchLimit));
+        if (requested != Long.MAX_VALUE)
+        {
+            demand.addAndGet(-workCount);
+        }
+
+        return workCount;
+    }
+
+    public long laps()
+    {
+        return laps;
+    }
+
+    public long lostBytes()
+    {
+        return lostBytes;
+    }
+
+    private void onMessage(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+        if (!cancelled)
+        {
+            subscriber.onNext(frame.wrap(msgTypeId, buffer, index, length));
+        }
+    }
+
+    private final class RingSubscription implements Flow.Subscription
+    {
+        @Override
+        public void request(
+            long n)
+        {
+            if (n <= 0L)
+            {
+                error = new IllegalArgumentException(String.format("non-positive request %d", n));
+            }
+            else
+            {
+                demand.accumulateAndGet(n, (d, r) -> d + r < 0L ? Long.MAX_VALUE : d + r);
+            }
+        }
+
+        @Override
+        public void cancel()
+        {
+            cancelled = true;
+        }
+    }
+
+    private static final class NoopSubscription implements Flow.Subscription
+    {
+        private static final NoopSubscription INSTANCE = new NoopSubscription();
+
+        @Override
+        public void request(
+            long n)
+        {
+        }
+
+        @Override
+        public void cancel()
+        {
+        }
+    }
+
+    public static final class Frame
+    {
+        private int typeId;
+        private DirectBuffer buffer;
+        private int offset;
+        private int length;
+
+        public int typeId()
+        {
+            return typeId;
+        }
+
+        public DirectBuffer buffer()
+        {
+            return buffer;
+        }
+
+        public int offset()
+        {
+            return offset;
+        }
+
+        public int length()
+        {
+            return length;
+        }
+
+        private Frame wrap(
+            int typeId,
+            DirectBuffer buffer,
+            int offset,
+            int length)
+        {
+            this.typeId = typeId;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+    }
+}
@@ -22,9 +22,15 @@ public interface RingBufferSpy
 {
     int spy(MessageHandler handler);
     int spy(MessageHandler handler, int messageCountLimit);
+    int peek(MessageHandler handler);
 
     long producerPosition();
     long consumerPosition();
+    long spyPosition();
+
+    void resetHead();
+
+    int capacity();
 
     DirectBuffer buffer();
 }
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.Test;
+
+public class AccountingIdleStrategyTest
+{
+    private final CountersManager manager =
+            new CountersManager(new UnsafeBuffer(new byte[4096]), new UnsafeBuffer(new byte[2048]));
+    private final AtomicCounter idle = manager.newCounter("idle");
+    private final AtomicCounter work = manager.newCounter("work");
+
+    @Test
+    public void shouldAccountPassWithoutWorkCountAsIdle() throws Exception
+    {
+        final AccountingIdleStrategy strategy = new AccountingIdleStrategy(new NoOpIdleStrategy(), idle, work);
+
+        Thread.sleep(20L);
+        strategy.idle();
+
+        assertTrue(idle.get() >= MILLISECONDS.toNanos(20L));
+        assertEquals(0L, work.get());
+    }
+
+    @Test
+    public void shouldAccountPassWithWorkAsWork() throws Exception
+    {
+        final AccountingIdleStrategy strategy = new AccountingIdleStrategy(new NoOpIdleStrategy(), idle, work);
+
+        Thread.sleep(20L);
+        strategy.idle(1);
+        Thread.sleep(10L);
+        strategy.idle(0);
+
+        assertTrue(work.get() >= MILLISECONDS.toNanos(20L));
+        assertTrue(idle.get() >= MILLISECONDS.toNanos(10L));
+        assertTrue(strategy.idleRatio() > 0.0 && strategy.idleRatio() < 1.0);
+    }
+
+    private static final class NoOpIdleStrategy implements IdleStrategy
+    {
+        @Override
+        public void idle(
+            int workCount)
+        {
+        }
+
+        @Override
+        public void idle()
+        {
+        }
+
+        @Override
+        public void reset()
+        {
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConformanceStreamsListenerTest
+{
+    private final List<String> lines = new ArrayList<>();
+    private final ConformanceStreamsListener listener =
+            new ConformanceStreamsListener("receiver", "sender", (format, args) -> lines.add(String.format(format, args)));
+
+    @Test
+    public void shouldAcceptConformingStream()
+    {
+        listener.onBegin(1L, 0L, 1L, 0L, 0L, 0L, null);
+        listener.onWindow(2L, 0L, 1L, 10, 0, 0L, null);
+        listener.onData(3L, 0L, 1L, 10, 0, 0, 0L, null);
+        listener.onEnd(4L, 0L, 1L, 0L, null);
+
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void shouldReportEndBeforeBegin()
+    {
+        listener.onEnd(1L, 0L, 1L, 0L, null);
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"violation\":\"END before BEGIN\""));
+    }
+
+    @Test
+    public void shouldReportAbortBeforeBegin()
+    {
+        listener.onAbort(1L, 0L, 1L, 0L, null);
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"violation\":\"ABORT before BEGIN\""));
+    }
+
+    @Test
+    public void shouldCloseStreamOnReset()
+    {
+        listener.onBegin(1L, 0L, 1L, 0L, 0L, 0L, null);
+        listener.onWindow(2L, 0L, 1L, 10, 0, 0L, null);
+        listener.onReset(3L, 0L, 1L, null);
+        listener.onData(4L, 0L, 1L, 10, 0, 0, 0L, null);
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"violation\":\"DATA after END, ABORT or RESET\""));
+    }
+
+    @Test
+    public void shouldForgetResetStreamsBeyondHistory()
+    {
+        for (long streamId = 1L; streamId <= 5000L; streamId++)
+        {
+            listener.onBegin(1L, 0L, streamId, 0L, 0L, 0L, null);
+            listener.onReset(2L, 0L, streamId, null);
+        }
+
+        // evicted streams are unknown again, so a late BEGIN is not reported as duplicate
+        listener.onBegin(3L, 0L, 1L, 0L, 0L, 0L, null);
+
+        assertTrue(lines.isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.nukleus.Configuration;
+
+public class CountersSnapshotTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private LogCounters counters;
+    private Path snapshot;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        counters = new LogCounters(config);
+        snapshot = folder.getRoot().toPath().resolve("snapshot");
+    }
+
+    @After
+    public void tearDown()
+    {
+        layouts.close();
+        counters.close();
+    }
+
+    @Test
+    public void shouldReadWrittenSnapshot()
+    {
+        counters.counter("first").add(1L);
+        counters.counter("second").add(Long.MAX_VALUE);
+        final long writtenAt = System.currentTimeMillis();
+        newCommand(snapshot, null, null).run();
+
+        final CountersSnapshot read = CountersSnapshot.read(snapshot);
+
+        assertTrue(read.timestamp() >= writtenAt);
+        assertEquals(2, read.count());
+
+        final int first = read.position("log", "first");
+        final int second = read.position("log", "second");
+        assertEquals("log", read.owner(first));
+        assertEquals("first", read.name(first));
+        assertEquals(1L, read.value(first));
+        assertEquals("second", read.name(second));
+        assertEquals(Long.MAX_VALUE, read.value(second));
+        assertEquals(-1, read.position("log", "missing"));
+        assertEquals(-1, read.position("other", "first"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOtherFiles() throws Exception
+    {
+        Files.write(snapshot, new byte[64]);
+
+        CountersSnapshot.read(snapshot);
+    }
+
+    @Test
+    public void shouldDiffCounterAddedSinceBaseline()
+    {
+        counters.counter("kept").add(3L);
+        newCommand(snapshot, null, null).run();
+        final CountersSnapshot baseline = CountersSnapshot.read(snapshot);
+
+        counters.counter("added").add(5L);
+        final Path current = folder.getRoot().toPath().resolve("current");
+        newCommand(current, null, null).run();
+
+        lines.clear();
+        newCommand(null, baseline, CountersSnapshot.read(current)).run();
+
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"added\",\"value\":5,\"delta\":5}\n"));
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"kept\",\"value\":3,\"delta\":0}\n"));
+    }
+
+    private LogCountersCommand newCommand(
+        Path snapshot,
+        CountersSnapshot baseline,
+        CountersSnapshot current)
+    {
+        return new LogCountersCommand(config, layouts, out, false, false, LogCountersCommand.Order.NAME,
+                Integer.MAX_VALUE, false, snapshot, baseline, current);
+    }
+}
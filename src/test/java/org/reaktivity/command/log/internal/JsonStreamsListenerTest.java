@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+
+public class JsonStreamsListenerTest
+{
+    private final List<String> lines = new ArrayList<>();
+    private final JsonStreamsListener listener =
+            new JsonStreamsListener("receiver", "sender", (format, args) -> lines.add(String.format(format, args)));
+
+    @Test
+    public void shouldTrackBudgetUntilEnd()
+    {
+        listener.onBegin(1L, 0L, 1L, 0L, 0L, 0L, begin(1L));
+        listener.onWindow(2L, 0L, 1L, 10, 0, 0L, null);
+        listener.onData(3L, 0L, 1L, 4, 0, 0, 0L, null);
+        listener.onEnd(4L, 0L, 1L, 0L, null);
+        listener.onWindow(5L, 0L, 1L, 10, 0, 0L, null);
+
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(2).contains("\"budget\":6"));
+        assertTrue(lines.get(3).contains("\"budget\":6"));
+        assertTrue(lines.get(4).contains("\"budget\":-1"));
+    }
+
+    @Test
+    public void shouldForgetBudgetOnAbortAndReset()
+    {
+        listener.onBegin(1L, 0L, 1L, 0L, 0L, 0L, begin(1L));
+        listener.onBegin(1L, 0L, 2L, 0L, 0L, 0L, begin(2L));
+        listener.onWindow(2L, 0L, 1L, 10, 0, 0L, null);
+        listener.onWindow(2L, 0L, 2L, 10, 0, 0L, null);
+        listener.onAbort(3L, 0L, 1L, 0L, null);
+        listener.onReset(3L, 0L, 2L, null);
+        lines.clear();
+
+        listener.onData(4L, 0L, 1L, 4, 0, 0, 0L, null);
+        listener.onData(4L, 0L, 2L, 4, 0, 0, 0L, null);
+
+        assertTrue(lines.get(0).contains("\"budget\":-1"));
+        assertTrue(lines.get(1).contains("\"budget\":-1"));
+    }
+
+    private static BeginFW begin(
+        long streamId)
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[256]);
+        return new BeginFW.Builder()
+                .wrap(buffer, 0, buffer.capacity())
+                .streamId(streamId)
+                .timestamp(0L)
+                .trace(0L)
+                .authorization(0L)
+                .source("source")
+                .sourceRef(0L)
+                .correlationId(0L)
+                .extension(buffer, 0, 0)
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public class LayoutRegistryTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private LayoutRegistry layouts;
+    private Path path;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        properties.setProperty(Configuration.STREAMS_BUFFER_CAPACITY_PROPERTY_NAME, "8192");
+        properties.setProperty(Configuration.THROTTLE_BUFFER_CAPACITY_PROPERTY_NAME, "8192");
+        layouts = new LayoutRegistry(new LogCommandConfiguration(properties));
+        path = folder.getRoot().toPath().resolve("receiver").resolve("streams").resolve("sender");
+        path.getParent().toFile().mkdirs();
+        newLayout(path).close();
+    }
+
+    @After
+    public void tearDown()
+    {
+        layouts.close();
+    }
+
+    @Test
+    public void shouldShareLayoutForSamePath()
+    {
+        final StreamsLayout first = layouts.streams(path);
+        final StreamsLayout second = layouts.streams(path);
+
+        assertSame(first, second);
+        assertFalse(layouts.isStale(path));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldCloseAfterLastRelease()
+    {
+        final StreamsLayout layout = layouts.streams(path);
+        layouts.streams(path);
+
+        layouts.release(layout);
+        assertEquals(0L, layout.streamsBuffer().producerPosition());
+
+        layouts.release(layout);
+        layout.streamsBuffer().producerPosition();
+    }
+
+    @Test
+    public void shouldKeepRecreatedFileMappedUntilReleased() throws Exception
+    {
+        final StreamsLayout stale = layouts.streams(path);
+        assertEquals(0L, stale.streamsBuffer().producerPosition());
+
+        // replaced rather than deleted first, so the new file cannot reuse the old file key
+        final Path replacement = path.resolveSibling("replacement");
+        newLayout(replacement).close();
+        Files.move(replacement, path, REPLACE_EXISTING);
+
+        assertTrue(layouts.isStale(path));
+
+        final StreamsLayout fresh = layouts.streams(path);
+        assertNotSame(stale, fresh);
+        assertFalse(layouts.isStale(path));
+        assertEquals(0L, stale.streamsBuffer().producerPosition());
+
+        layouts.release(stale);
+        assertEquals(0L, fresh.streamsBuffer().producerPosition());
+        assertSame(fresh, layouts.streams(path));
+    }
+
+    @Test
+    public void shouldNotReportUnknownPathStale()
+    {
+        assertFalse(layouts.isStale(path.resolveSibling("unknown")));
+    }
+
+    private static StreamsLayout newLayout(
+        Path path)
+    {
+        return new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(8192)
+                .throttleCapacity(8192)
+                .readonly(false)
+                .build();
+    }
+}
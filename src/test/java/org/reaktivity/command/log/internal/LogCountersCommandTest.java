@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogCountersCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private LogCounters counters;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        counters = new LogCounters(config);
+    }
+
+    @After
+    public void tearDown()
+    {
+        layouts.close();
+        counters.close();
+    }
+
+    @Test
+    public void shouldReportZeroDeltaForCounterAllocatedAfterPriming()
+    {
+        final LogCountersCommand command = newCommand(true, null, null, null);
+        counters.counter("early").add(5L);
+        command.run();
+
+        counters.counter("late").add(100L);
+        lines.clear();
+        command.run();
+
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"late\",\"value\":100,\"delta\":0,\"rate\":0.00}\n"));
+    }
+
+    @Test
+    public void shouldReportZeroDeltaForReusedCounter()
+    {
+        final LogCountersCommand command = newCommand(true, null, null, null);
+        final AtomicCounter first = counters.counter("first");
+        first.add(1000L);
+        command.run();
+
+        counters.release(first);
+        counters.counter("second").add(7L);
+        lines.clear();
+        command.run();
+
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"second\",\"value\":7,\"delta\":0,\"rate\":0.00}\n"));
+    }
+
+    @Test
+    public void shouldReportCountersRemovedSinceBaseline() throws Exception
+    {
+        final Path snapshot = folder.getRoot().toPath().resolve("snapshot");
+        final AtomicCounter removed = counters.counter("removed");
+        removed.add(42L);
+        counters.counter("kept").add(3L);
+        newCommand(false, snapshot, null, null).run();
+
+        counters.release(removed);
+        final CountersSnapshot baseline = CountersSnapshot.read(snapshot);
+        newCommand(false, null, baseline, null).run();
+
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"kept\",\"value\":3,\"delta\":0}\n"));
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"removed\",\"value\":0,\"delta\":-42}\n"));
+    }
+
+    @Test
+    public void shouldDiffSnapshots() throws Exception
+    {
+        final Path first = folder.getRoot().toPath().resolve("first");
+        final Path second = folder.getRoot().toPath().resolve("second");
+        final AtomicCounter removed = counters.counter("removed");
+        final AtomicCounter kept = counters.counter("kept");
+        removed.add(42L);
+        kept.add(3L);
+        newCommand(false, first, null, null).run();
+
+        counters.release(removed);
+        kept.add(10L);
+        newCommand(false, second, null, null).run();
+
+        lines.clear();
+        newCommand(false, null, CountersSnapshot.read(first), CountersSnapshot.read(second)).run();
+
+        assertEquals(3, lines.size());
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"kept\",\"value\":13,\"delta\":10}\n"));
+        assertTrue(lines.contains("{\"nukleus\": \"log\",\"name\": \"removed\",\"value\":0,\"delta\":-42}\n"));
+    }
+
+    @Test
+    public void shouldSortByName()
+    {
+        counters.counter("zulu").add(1L);
+        counters.counter("alpha").add(2L);
+        counters.counter("mike").add(3L);
+        newCommand(false, null, null, null).run();
+        assertTrue(lines.get(0).contains("\"alpha\""));
+        assertTrue(lines.get(1).contains("\"mike\""));
+        assertTrue(lines.get(2).contains("\"zulu\""));
+    }
+
+    @Test
+    public void shouldSortByDescendingValue()
+    {
+        counters.counter("low").add(1L);
+        counters.counter("high").add(30L);
+        counters.counter("middle").add(20L);
+        newCommand(false, null, null, null, LogCountersCommand.Order.VALUE).run();
+
+        assertTrue(lines.get(0).contains("\"high\""));
+        assertTrue(lines.get(1).contains("\"middle\""));
+        assertTrue(lines.get(2).contains("\"low\""));
+    }
+
+    private LogCountersCommand newCommand(
+        boolean rates,
+        Path snapshot,
+        CountersSnapshot baseline,
+        CountersSnapshot current)
+    {
+        return newCommand(rates, snapshot, baseline, current, LogCountersCommand.Order.NAME);
+    }
+
+    private LogCountersCommand newCommand(
+        boolean rates,
+        Path snapshot,
+        CountersSnapshot baseline,
+        CountersSnapshot current,
+        LogCountersCommand.Order order)
+    {
+        return new LogCountersCommand(config, layouts, out, false, rates, order,
+                Integer.MAX_VALUE, false, snapshot, baseline, current);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogCountersTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private LogCounters counters;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        counters = new LogCounters(config);
+    }
+
+    @After
+    public void tearDown()
+    {
+        layouts.close();
+        counters.close();
+    }
+
+    @Test
+    public void shouldPrefixScopedLabels()
+    {
+        counters.counter("output.lines");
+        counters.scope("one").scope("streams").counter("idle.nanos");
+        counters.scope("two").counter("idle.nanos");
+
+        final List<String> labels = new ArrayList<>();
+        newManager().forEach((id, label) -> labels.add(label));
+
+        assertEquals(3, labels.size());
+        assertEquals("output.lines", labels.get(0));
+        assertEquals("one.streams.idle.nanos", labels.get(1));
+        assertEquals("two.idle.nanos", labels.get(2));
+    }
+
+    @Test
+    public void shouldCountEncodedBytes()
+    {
+        final Logger logger = counters.logger(LogCountersTest::discard);
+
+        logger.printf("%s\n", "caf\u00e9 \u20ac \ud83d\ude00");
+
+        final CountersManager manager = newManager();
+        assertEquals(1L, manager.getCounterValue(0));
+        assertEquals(5L + 1L + 3L + 1L + 4L + 1L, manager.getCounterValue(1));
+    }
+
+    private CountersManager newManager()
+    {
+        final ControlLayout control = layouts.control(config.directory().resolve("log").resolve("control"));
+        return new CountersManager(control.counterLabelsBuffer(), control.counterValuesBuffer());
+    }
+
+    private static void discard(
+        String format,
+        Object... args)
+    {
+    }
+}
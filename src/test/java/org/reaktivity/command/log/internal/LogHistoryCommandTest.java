@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogHistoryCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private LogCounters counters;
+    private ControlLayout control;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        counters = new LogCounters(config);
+        control = new ControlLayout.Builder()
+                .controlPath(config.directory().resolve("test").resolve("control"))
+                .commandBufferCapacity(config.commandBufferCapacity())
+                .responseBufferCapacity(config.responseBufferCapacity())
+                .counterLabelsBufferCapacity(config.counterLabelsBufferCapacity())
+                .counterValuesBufferCapacity(config.counterValuesBufferCapacity())
+                .readonly(false)
+                .build();
+    }
+
+    @After
+    public void tearDown()
+    {
+        control.close();
+        layouts.close();
+        counters.close();
+    }
+
+    @Test
+    public void shouldReportSeriesBeyondLimitOnce()
+    {
+        final CountersManager manager = new CountersManager(control.counterLabelsBuffer(), control.counterValuesBuffer());
+        manager.newCounter("first");
+        manager.newCounter("second");
+        manager.newCounter("third");
+
+        try (LogHistoryCommand command = new LogHistoryCommand(config, layouts, counters, out, false, 2))
+        {
+            command.run();
+            command.run();
+        }
+
+        // three test counters and history.series.dropped itself compete for two series
+        assertEquals(2, lines.stream().filter(l -> l.startsWith("Dropped: ")).count());
+        assertEquals(2L, dropped());
+    }
+
+    @Test
+    public void shouldFitOffsetsOfLargestHistoryInInt()
+    {
+        final int slotCount = 10080;
+        final long last = ((long) LogHistoryCommand.MAX_SERIES * slotCount - 1L) * Long.BYTES;
+
+        assertEquals(last, LogHistoryCommand.offset(LogHistoryCommand.MAX_SERIES - 1, slotCount, slotCount - 1));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void shouldRejectOffsetBeyondInt()
+    {
+        LogHistoryCommand.offset(LogHistoryCommand.MAX_SERIES * 2, 10080, 0);
+    }
+
+    @Test
+    public void shouldIgnoreRunAfterClose()
+    {
+        final LogHistoryCommand command = new LogHistoryCommand(config, layouts, counters, out, false, 2);
+        command.close();
+        command.run();
+        command.close();
+
+        assertEquals(0, lines.size());
+    }
+
+    private long dropped()
+    {
+        final ControlLayout log = layouts.control(config.directory().resolve("log").resolve("control"));
+        final CountersManager manager = new CountersManager(log.counterLabelsBuffer(), log.counterValuesBuffer());
+        final long[] dropped = new long[1];
+        manager.forEach((id, label) ->
+        {
+            if ("history.series.dropped".equals(label))
+            {
+                dropped[0] = manager.getCounterValue(id);
+            }
+        });
+        return dropped[0];
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogMetricsCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private Thread server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress()))
+        {
+            port = socket.getLocalPort();
+        }
+
+        server = new Thread(new LogMetricsCommand(config, layouts, LogMetricsCommandTest::discard, false, port));
+        server.setDaemon(true);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.interrupt();
+        server.join();
+        layouts.close();
+    }
+
+    @Test
+    public void shouldDiscoverNewNukleusWhileScrapedFrequently() throws Exception
+    {
+        final String before = scrape();
+        assertTrue(before.contains("# TYPE reaktor_counter untyped\n"));
+        assertFalse(before.contains("reaktor_counter{nukleus=\"log\""));
+
+        try (LogCounters counters = new LogCounters(config))
+        {
+            counters.counter("discovered").add(5L);
+
+            boolean discovered = false;
+            for (int i = 0; i < 20 && !discovered; i++)
+            {
+                Thread.sleep(200L);
+                discovered = scrape().contains("reaktor_counter{nukleus=\"log\",name=\"discovered\"} 5\n");
+            }
+
+            assertTrue(discovered);
+        }
+    }
+
+    @Test
+    public void shouldServeMetricsPathOnly() throws Exception
+    {
+        assertTrue(scrape("GET /metrics HTTP/1.1").startsWith("HTTP/1.1 200"));
+        assertTrue(scrape("GET /metrics?name=value HTTP/1.1").startsWith("HTTP/1.1 200"));
+        assertTrue(scrape("GET /metricsfoo HTTP/1.1").startsWith("HTTP/1.1 404"));
+        assertTrue(scrape("GET /metrics/foo HTTP/1.1").startsWith("HTTP/1.1 404"));
+    }
+
+    private String scrape() throws IOException
+    {
+        return scrape("GET /metrics HTTP/1.1");
+    }
+
+    private String scrape(
+        String requestLine) throws IOException
+    {
+        IOException failure = null;
+
+        for (int attempt = 0; attempt < 50; attempt++)
+        {
+            try (Socket client = new Socket(InetAddress.getLoopbackAddress(), port))
+            {
+                client.getOutputStream().write((requestLine + "\r\n\r\n").getBytes(US_ASCII));
+
+                final InputStream input = client.getInputStream();
+                final ByteArrayOutputStream response = new ByteArrayOutputStream();
+                final byte[] chunk = new byte[4096];
+                for (int length = input.read(chunk); length != -1; length = input.read(chunk))
+                {
+                    response.write(chunk, 0, length);
+                }
+
+                return new String(response.toByteArray(), US_ASCII);
+            }
+            catch (IOException ex)
+            {
+                // server thread may not be listening yet
+                failure = ex;
+                sleep(20L);
+            }
+        }
+
+        throw failure;
+    }
+
+    private static void discard(
+        String format,
+        Object... args)
+    {
+    }
+
+    private static void sleep(
+        long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogQueueDepthCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private StreamsLayout writer;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        properties.setProperty(Configuration.STREAMS_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        properties.setProperty(Configuration.THROTTLE_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        final Path path = folder.getRoot().toPath().resolve("receiver").resolve("streams").resolve("sender");
+        path.getParent().toFile().mkdirs();
+        writer = new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(65536)
+                .throttleCapacity(65536)
+                .readonly(false)
+                .build();
+    }
+
+    @After
+    public void tearDown()
+    {
+        writer.close();
+        layouts.close();
+    }
+
+    @Test
+    public void shouldReportDepthAndThroughputPerRing() throws Exception
+    {
+        final RingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) writer.streamsBuffer().buffer());
+        final LogQueueDepthCommand command = new LogQueueDepthCommand(config, layouts, out, false, 0L);
+
+        command.run();
+        assertEquals(3, lines.size());
+        assertEquals("{\"nukleus\":\"receiver\", \"source\":\"sender\", \"type\":\"streams\", \"depth\":0, " +
+                     "\"produced\":0, \"consumed\":0, \"full\":null}\n", lines.get(0));
+        assertTrue(lines.get(1).contains("\"type\":\"throttle\""));
+        assertEquals("\n", lines.get(2));
+
+        streams.write(1, new UnsafeBuffer(new byte[1024]), 0, 1024);
+        Thread.sleep(10L);
+        lines.clear();
+
+        command.run();
+        final long depth = streams.producerPosition();
+        assertTrue(lines.get(0).contains(String.format("\"depth\":%d, ", depth)));
+        assertTrue(lines.get(0).contains("\"consumed\":0, "));
+        assertTrue(lines.get(0).matches(".*\"full\":[0-9.]+\\}\n"));
+        assertTrue(lines.get(1).contains("\"depth\":0, "));
+        assertTrue(lines.get(1).contains("\"full\":null}"));
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.FrameFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogReplayCommandTest
+{
+    private static final int CAPACITY = 8192;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final FrameFW frameRO = new FrameFW();
+
+    private Configuration config;
+    private Path capture;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        properties.setProperty(Configuration.STREAMS_BUFFER_CAPACITY_PROPERTY_NAME, Integer.toString(CAPACITY));
+        properties.setProperty(Configuration.THROTTLE_BUFFER_CAPACITY_PROPERTY_NAME, Integer.toString(CAPACITY));
+        config = new LogCommandConfiguration(properties);
+        capture = folder.newFile("capture").toPath();
+    }
+
+    @Test
+    public void shouldReplayEachPairIntoItsOwnStreamsFile()
+    {
+        try (CaptureWriter writer = new CaptureWriter(capture))
+        {
+            final CaptureStreamsListener one = new CaptureStreamsListener("receiver", "one", writer);
+            final CaptureStreamsListener two = new CaptureStreamsListener("receiver", "two", writer);
+
+            one.onBegin(1L, 0L, 1L, 0L, 0L, 0L, begin(1L, 1L));
+            two.onBegin(2L, 0L, 1L, 0L, 0L, 0L, begin(1L, 2L));
+            one.onWindow(3L, 0L, 1L, 8192, 0, 0L, window(1L, 3L));
+        }
+
+        newCommand(1_000L).run();
+
+        final Path replay = folder.getRoot().toPath().resolve("replay").resolve("receiver").resolve("streams");
+        assertEquals(1, frames(replay.resolve("one"), true).size());
+        assertEquals(1, frames(replay.resolve("one"), false).size());
+        assertEquals(1, frames(replay.resolve("two"), true).size());
+        assertEquals(0, frames(replay.resolve("two"), false).size());
+
+        assertEquals(BeginFW.TYPE_ID + ":1", frames(replay.resolve("one"), true).get(0));
+        assertEquals(WindowFW.TYPE_ID + ":3", frames(replay.resolve("one"), false).get(0));
+        assertEquals(BeginFW.TYPE_ID + ":2", frames(replay.resolve("two"), true).get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailWhenRingStaysFull()
+    {
+        try (CaptureWriter writer = new CaptureWriter(capture))
+        {
+            final CaptureStreamsListener listener = new CaptureStreamsListener("receiver", "sender", writer);
+
+            listener.onBegin(1L, 0L, 1L, 0L, 0L, 0L, begin(1L, 1L));
+            for (int i = 0; i < 2 * CAPACITY / 512; i++)
+            {
+                listener.onData(1L, 0L, 1L, 512, 0, 0, 0L, data(1L, 1L, 512));
+            }
+        }
+
+        newCommand(100L).run();
+    }
+
+    @Test
+    public void shouldReplayInTimestampOrderAcrossPairs()
+    {
+        final long later = MILLISECONDS.toNanos(200L);
+
+        try (CaptureWriter writer = new CaptureWriter(capture))
+        {
+            final CaptureStreamsListener one = new CaptureStreamsListener("receiver", "one", writer);
+            final CaptureStreamsListener two = new CaptureStreamsListener("receiver", "two", writer);
+
+            // captured one ring after the other, so the second pair starts earlier than the frame before it
+            one.onBegin(0L, 0L, 1L, 0L, 0L, 0L, begin(1L, 0L));
+            one.onWindow(later, 0L, 1L, 8192, 0, 0L, window(1L, later));
+            two.onBegin(later / 2, 0L, 1L, 0L, 0L, 0L, begin(1L, later / 2));
+        }
+
+        final List<String> lines = new ArrayList<>();
+        newCommand((format, args) -> lines.add(String.format(format, args)), 1.0, 1_000L).run();
+
+        final Matcher matcher = Pattern.compile("\"errorMaxNanos\":(\\d+)").matcher(lines.get(0));
+        assertTrue(matcher.find());
+        assertTrue(Long.parseLong(matcher.group(1)) < later / 4);
+    }
+
+    private LogReplayCommand newCommand(
+        long stallMillis)
+    {
+        return newCommand(LogReplayCommandTest::discard, 0.0, stallMillis);
+    }
+
+    private LogReplayCommand newCommand(
+        Logger out,
+        double speed,
+        long stallMillis)
+    {
+        return new LogReplayCommand(config, out, false, capture, Paths.get("replay"), speed, stallMillis);
+    }
+
+    private List<String> frames(
+        Path path,
+        boolean streams)
+    {
+        final List<String> frames = new ArrayList<>();
+
+        try (StreamsLayout layout = new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(CAPACITY)
+                .throttleCapacity(CAPACITY)
+                .readonly(true)
+                .build())
+        {
+            (streams ? layout.streamsBuffer() : layout.throttleBuffer()).spy((msgTypeId, buffer, index, length) ->
+                frames.add(msgTypeId + ":" + frameRO.wrap(buffer, index, index + length).timestamp()));
+        }
+
+        return frames;
+    }
+
+    private BeginFW begin(
+        long streamId,
+        long timestamp)
+    {
+        return new BeginFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(streamId)
+                .timestamp(timestamp)
+                .source("sender")
+                .sourceRef(1L)
+                .correlationId(streamId)
+                .build();
+    }
+
+    private WindowFW window(
+        long streamId,
+        long timestamp)
+    {
+        return new WindowFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(streamId)
+                .timestamp(timestamp)
+                .credit(8192)
+                .padding(0)
+                .groupId(0L)
+                .build();
+    }
+
+    private DataFW data(
+        long streamId,
+        long timestamp,
+        int length)
+    {
+        final DirectBuffer payload = new UnsafeBuffer(new byte[length]);
+        return new DataFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(streamId)
+                .timestamp(timestamp)
+                .groupId(0L)
+                .padding(0)
+                .payload(payload, 0, length)
+                .build();
+    }
+
+    private static void discard(
+        String format,
+        Object... args)
+    {
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.spy.OneToOneRingBufferSpy;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.FrameFW;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogRingsCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final FrameFW frameRO = new FrameFW();
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private StreamsLayout writer;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        properties.setProperty(Configuration.STREAMS_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        properties.setProperty(Configuration.THROTTLE_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        final Path path = folder.getRoot().toPath().resolve("receiver").resolve("streams").resolve("sender");
+        path.getParent().toFile().mkdirs();
+        writer = new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(65536)
+                .throttleCapacity(65536)
+                .readonly(false)
+                .build();
+    }
+
+    @After
+    public void tearDown()
+    {
+        writer.close();
+        layouts.close();
+    }
+
+    @Test
+    public void shouldReadWrittenSnapshot()
+    {
+        final RingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) writer.streamsBuffer().buffer());
+        final BeginFW begin = new BeginFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(1L).source("sender").sourceRef(1L).correlationId(1L).build();
+        streams.write(BeginFW.TYPE_ID, buffer, 0, begin.sizeof());
+        final EndFW end = new EndFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(2L).build();
+        streams.write(EndFW.TYPE_ID, buffer, 0, end.sizeof());
+
+        final Path snapshot = folder.getRoot().toPath().resolve("rings");
+        new LogRingsCommand(config, layouts, out, false, snapshot).run();
+
+        final RingsSnapshot rings = RingsSnapshot.read(snapshot);
+        assertEquals(2, rings.count());
+        assertEquals("receiver", rings.nukleus(0));
+        assertEquals("sender", rings.source(0));
+        assertEquals("streams", rings.type(0));
+        assertEquals("throttle", rings.type(1));
+        assertEquals(65536, rings.capacity(0));
+        assertEquals(streams.producerPosition(), rings.producerPosition(0));
+        assertEquals(0L, rings.consumerPosition(0));
+
+        final List<String> frames = new ArrayList<>();
+        assertEquals(2, rings.read(0, (t, b, i, l) -> frames.add(t + ":" + frameRO.wrap(b, i, i + l).timestamp())));
+        assertEquals(BeginFW.TYPE_ID + ":1", frames.get(0));
+        assertEquals(EndFW.TYPE_ID + ":2", frames.get(1));
+        assertEquals(0, rings.read(1, LogRingsCommandTest::ignore));
+
+        lines.clear();
+        new LogRingsExportCommand(out, snapshot).run();
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(1).contains("\"msgTypeId\":" + BeginFW.TYPE_ID));
+        assertTrue(lines.get(3).contains("\"type\":\"throttle\""));
+    }
+
+    @Test
+    public void shouldDropRecordsConsumedWhileCopying()
+    {
+        final AtomicBuffer ring = new UnsafeBuffer(new byte[1024 + TRAILER_LENGTH]);
+        final RingBuffer writer = new OneToOneRingBuffer(ring);
+        for (int msgTypeId = 1; msgTypeId <= 3; msgTypeId++)
+        {
+            writer.write(msgTypeId, buffer, 0, 16);
+        }
+
+        // the consumer takes the first record, zeroing it, between the two consumer position reads
+        final OneToOneRingBufferSpy spy = new OneToOneRingBufferSpy(ring)
+        {
+            private int reads;
+
+            @Override
+            public long consumerPosition()
+            {
+                if (reads++ == 1)
+                {
+                    writer.read(LogRingsCommandTest::ignore, 1);
+                }
+                return super.consumerPosition();
+            }
+        };
+
+        final ExpandableArrayBuffer snapshot = new ExpandableArrayBuffer();
+        int limit = RingsSnapshot.putHeader(snapshot, 0L, 1);
+        limit = LogRingsCommand.putRing(snapshot, limit, "receiver".getBytes(UTF_8), "sender".getBytes(UTF_8),
+                "streams".getBytes(UTF_8), spy);
+
+        final RingsSnapshot rings = RingsSnapshot.read(snapshot, limit);
+        final List<Integer> types = new ArrayList<>();
+        assertEquals(2, rings.read(0, (t, b, i, l) -> types.add(t)));
+        assertEquals(2, types.get(0).intValue());
+        assertEquals(3, types.get(1).intValue());
+        assertEquals(writer.consumerPosition(), rings.consumerPosition(0));
+        assertEquals(writer.producerPosition(), rings.producerPosition(0));
+    }
+
+    private static void ignore(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+    }
+}
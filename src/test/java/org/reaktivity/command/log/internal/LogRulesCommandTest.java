@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogRulesCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private LogCounters counters;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        counters = new LogCounters(config);
+    }
+
+    @After
+    public void tearDown()
+    {
+        layouts.close();
+        counters.close();
+    }
+
+    @Test
+    public void shouldParseRulesWithCommentsAndClearThresholds() throws Exception
+    {
+        final LogRulesCommand command = newCommand(
+                "# comment only",
+                "",
+                "hot counter log value > 10 clear 5   # trailing comment",
+                "full fill nukleus source streams >= 0.9",
+                "failing resets receiver sender > 1 clear 0");
+
+        command.process();
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void shouldReportLineNumberOfInvalidRule() throws Exception
+    {
+        try
+        {
+            newCommand(
+                    "# comment only",
+                    "hot counter log value > 10",
+                    "cold counter log value => 10");
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().endsWith("rules:3: cold counter log value => 10"));
+        }
+    }
+
+    @Test
+    public void shouldReportLineNumberOfIncompleteClearForm() throws Exception
+    {
+        try
+        {
+            newCommand("hot counter log value > 10 clear");
+            fail();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().endsWith("rules:1: hot counter log value > 10 clear"));
+        }
+    }
+
+    @Test
+    public void shouldFireAtThresholdAndClearPastClearThreshold() throws Exception
+    {
+        final AtomicCounter value = counters.counter("value");
+        final LogRulesCommand command = newCommand("hot counter log value > 10 clear 5");
+
+        value.set(11L);
+        command.process();
+        value.set(7L);
+        command.process();
+        value.set(12L);
+        command.process();
+        value.set(4L);
+        command.process();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"rule\":\"hot\",\"state\":\"firing\",\"value\":11.000,\"threshold\":10.000"));
+        assertTrue(lines.get(1).contains("\"rule\":\"hot\",\"state\":\"cleared\",\"value\":4.000,\"threshold\":5.000"));
+    }
+
+    @Test
+    public void shouldFireOnCounterRate() throws Exception
+    {
+        final AtomicCounter value = counters.counter("value");
+        final LogRulesCommand command = newCommand("busy rate log value > 1");
+
+        command.process();
+        assertTrue(lines.isEmpty());
+
+        value.add(1_000_000L);
+        command.process();
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).contains("\"rule\":\"busy\",\"state\":\"firing\""));
+    }
+
+    @Test
+    public void shouldRestartRateWhenCounterIsRebound() throws Exception
+    {
+        final AtomicCounter value = counters.counter("value");
+        final LogRulesCommand command = newCommand("drop rate log value < -100");
+
+        value.set(1000L);
+        command.process();
+
+        // the old id is reused by another label, value moves to a new id, seen on the next refresh
+        counters.release(value);
+        counters.counter("filler").set(1000L);
+        counters.counter("value");
+        Thread.sleep(1100L);
+        command.process();
+        command.process();
+
+        assertTrue(lines.toString(), lines.isEmpty());
+    }
+
+    private LogRulesCommand newCommand(
+        String... rules) throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("rules");
+        Files.write(path, String.join("\n", rules).getBytes(UTF_8));
+        final AccountingIdleStrategy idleStrategy =
+                new AccountingIdleStrategy(new NoOpIdleStrategy(), counters.counter("idle"), counters.counter("work"));
+        return new LogRulesCommand(config, layouts, counters, out, false, idleStrategy, path, 0L, null);
+    }
+}
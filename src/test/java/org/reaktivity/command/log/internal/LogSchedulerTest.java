@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.junit.Test;
+
+public class LogSchedulerTest
+{
+    private final LogCounters counters = new LogCounters();
+    private final LogScheduler scheduler = new LogScheduler(
+            new AccountingIdleStrategy(new NoOpIdleStrategy(), counters.counter("idle"), counters.counter("work")));
+
+    @Test(timeout = 5000L)
+    public void shouldRunOnceWithoutPeriod()
+    {
+        final AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule(runs::incrementAndGet, 0L);
+
+        scheduler.run();
+
+        assertEquals(1, runs.get());
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldFinishPollingWhenPassFindsNoWork()
+    {
+        final int[] work = { 3, 2, 0 };
+        final AtomicInteger passes = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        final AtomicInteger runs = new AtomicInteger();
+        scheduler.poll(() -> work[passes.getAndIncrement()], finished::incrementAndGet);
+        scheduler.schedule(runs::incrementAndGet, 0L);
+
+        scheduler.run();
+
+        assertEquals(3, passes.get());
+        assertEquals(1, finished.get());
+        assertEquals(1, runs.get());
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldRepeatAtPeriodUntilInterrupted()
+    {
+        final AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule(() ->
+        {
+            if (runs.incrementAndGet() == 3)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }, MILLISECONDS.toNanos(10L));
+        scheduler.schedule(runs::incrementAndGet, 0L);
+
+        scheduler.run();
+        Thread.interrupted();
+
+        assertEquals(3, runs.get());
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldStopStartedThreadBeforeReturning()
+    {
+        final AtomicInteger runs = new AtomicInteger();
+        final Thread[] started = new Thread[1];
+        scheduler.start(() ->
+        {
+            started[0] = Thread.currentThread();
+            while (!Thread.currentThread().isInterrupted())
+            {
+                sleep(10L);
+            }
+        }, "blocking");
+        scheduler.schedule(() ->
+        {
+            if (runs.incrementAndGet() == 3)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }, MILLISECONDS.toNanos(10L));
+
+        scheduler.run();
+        Thread.interrupted();
+
+        assertTrue(started[0] != null && !started[0].isAlive());
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldRunUntilStartedThreadEnds()
+    {
+        final AtomicInteger runs = new AtomicInteger();
+        scheduler.start(() -> sleep(200L), "short");
+        scheduler.schedule(runs::incrementAndGet, 0L);
+
+        scheduler.run();
+
+        assertEquals(1, runs.get());
+    }
+
+    private static void sleep(
+        long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.nukleus.Configuration;
+
+public class LogStreamsCommandTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+    private final Map<String, Integer> framesBySender = new LinkedHashMap<>();
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private StreamsLayout one;
+    private StreamsLayout two;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        properties.setProperty(Configuration.STREAMS_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        properties.setProperty(Configuration.THROTTLE_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        one = newLayout("one");
+        two = newLayout("two");
+    }
+
+    @After
+    public void tearDown()
+    {
+        one.close();
+        two.close();
+        layouts.close();
+    }
+
+    @Test
+    public void shouldShareEachPassAcrossPairs()
+    {
+        writeBegins(one, 100);
+        writeBegins(two, 100);
+
+        final LogStreamsCommand command = newCommand();
+
+        // batches double on each ring while frames remain, starting from one
+        assertEquals(2, command.process());
+        assertEquals(4, command.process());
+        assertEquals(8, command.process());
+        assertEquals(7, framesBySender.get("one").intValue());
+        assertEquals(7, framesBySender.get("two").intValue());
+    }
+
+    @Test
+    public void shouldDrainAllPairsWithoutContinuousDiscovery()
+    {
+        writeBegins(one, 100);
+        writeBegins(two, 50);
+
+        newCommand().run();
+
+        assertEquals(100, framesBySender.get("one").intValue());
+        assertEquals(50, framesBySender.get("two").intValue());
+    }
+
+    private LogStreamsCommand newCommand()
+    {
+        final LogCounters counters = new LogCounters();
+        final AccountingIdleStrategy idleStrategy = new AccountingIdleStrategy(new NoOpIdleStrategy(),
+                counters.counter("streams.idle.nanos"), counters.counter("streams.work.nanos"));
+        return new LogStreamsCommand(config, layouts, counters, LogStreamsCommandTest::discard, false, false,
+                idleStrategy, (r, s, o) -> new CountingListener(s));
+    }
+
+    private StreamsLayout newLayout(
+        String sender)
+    {
+        final Path path = folder.getRoot().toPath().resolve("receiver").resolve("streams").resolve(sender);
+        path.getParent().toFile().mkdirs();
+        return new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(65536)
+                .throttleCapacity(65536)
+                .readonly(false)
+                .build();
+    }
+
+    private void writeBegins(
+        StreamsLayout layout,
+        int frames)
+    {
+        final RingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) layout.streamsBuffer().buffer());
+        final BeginFW begin = new BeginFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(1L).source("sender").sourceRef(1L).correlationId(1L).build();
+
+        for (int i = 0; i < frames; i++)
+        {
+            streams.write(BeginFW.TYPE_ID, buffer, 0, begin.sizeof());
+        }
+    }
+
+    private static void discard(
+        String format,
+        Object... args)
+    {
+    }
+
+    private final class CountingListener implements StreamsListener
+    {
+        private final String sender;
+
+        private CountingListener(
+            String sender)
+        {
+            this.sender = sender;
+        }
+
+        @Override
+        public void onBegin(
+            long timestamp,
+            long traceId,
+            long streamId,
+            long sourceRef,
+            long correlationId,
+            long authorization,
+            BeginFW begin)
+        {
+            framesBySender.merge(sender, 1, Integer::sum);
+        }
+    }
+}
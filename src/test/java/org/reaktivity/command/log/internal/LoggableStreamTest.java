@@ -0,0 +1,220 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+import org.reaktivity.command.log.internal.types.stream.BeginFW;
+import org.reaktivity.command.log.internal.types.stream.EndFW;
+import org.reaktivity.command.log.internal.types.stream.WindowFW;
+import org.reaktivity.nukleus.Configuration;
+
+public class LoggableStreamTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+
+    private LayoutRegistry layouts;
+    private StreamsLayout writer;
+    private Path path;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        properties.setProperty(Configuration.STREAMS_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        properties.setProperty(Configuration.THROTTLE_BUFFER_CAPACITY_PROPERTY_NAME, "65536");
+        final Configuration config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        path = folder.getRoot().toPath().resolve("receiver").resolve("streams").resolve("sender");
+        path.getParent().toFile().mkdirs();
+        writer = new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(65536)
+                .throttleCapacity(65536)
+                .readonly(false)
+                .build();
+    }
+
+    @After
+    public void tearDown()
+    {
+        writer.close();
+        layouts.close();
+    }
+
+    @Test
+    public void shouldPassSuppressedFramesToListener()
+    {
+        final RingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) writer.streamsBuffer().buffer());
+        final RingBuffer throttle = new OneToOneRingBuffer((AtomicBuffer) writer.throttleBuffer().buffer());
+
+        final BeginFW begin = new BeginFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(1L).source("sender").sourceRef(1L).correlationId(1L).build();
+        streams.write(BeginFW.TYPE_ID, buffer, 0, begin.sizeof());
+        final WindowFW window = new WindowFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(2L).credit(8192).padding(0).groupId(0L).build();
+        throttle.write(WindowFW.TYPE_ID, buffer, 0, window.sizeof());
+        final EndFW end = new EndFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(3L).build();
+        streams.write(EndFW.TYPE_ID, buffer, 0, end.sizeof());
+        streams.write(0x7fff, buffer, 0, end.sizeof());
+
+        final RateLimiter limiter = new RateLimiter("sender -> receiver", out, 1L, null);
+        final List<String> frames = new ArrayList<>();
+        final StreamsListener listener = new StreamsListener()
+        {
+            @Override
+            public boolean ordered()
+            {
+                return true;
+            }
+
+            @Override
+            public void onBegin(
+                long timestamp,
+                long traceId,
+                long streamId,
+                long sourceRef,
+                long correlationId,
+                long authorization,
+                BeginFW begin)
+            {
+                frames.add("BEGIN");
+                limiter.printf("BEGIN\n");
+            }
+
+            @Override
+            public void onEnd(
+                long timestamp,
+                long traceId,
+                long streamId,
+                long authorization,
+                EndFW end)
+            {
+                frames.add("END");
+                limiter.printf("END\n");
+            }
+
+            @Override
+            public void onWindow(
+                long timestamp,
+                long traceId,
+                long streamId,
+                int credit,
+                int padding,
+                long groupId,
+                WindowFW window)
+            {
+                frames.add("WINDOW");
+                limiter.printf("WINDOW\n");
+            }
+        };
+
+        final LoggableStream loggable =
+                new LoggableStream(layouts, layouts.streams(path), listener, new LogCounters(), "receiver.sender", limiter);
+        loggable.process(16);
+        loggable.close();
+
+        assertEquals(3, frames.size());
+        assertEquals(1, lines.size());
+        assertEquals("BEGIN\n", lines.get(0));
+
+        limiter.summarize();
+        assertEquals("Suppressed lines: 1 END, 1 WINDOW on sender -> receiver\n", lines.get(1));
+    }
+
+    @Test
+    public void shouldGrowBatchWhileBacklogRemains()
+    {
+        final LoggableStream loggable = newLoggable(10);
+
+        assertEquals(1, loggable.process(16));
+        assertEquals(2, loggable.process(16));
+        assertEquals(4, loggable.process(16));
+        assertEquals(3, loggable.process(16));
+        assertEquals(0, loggable.process(16));
+        loggable.close();
+    }
+
+    @Test
+    public void shouldShrinkBatchWhenCaughtUp()
+    {
+        final LoggableStream loggable = newLoggable(7);
+
+        assertEquals(1, loggable.process(16));
+        assertEquals(2, loggable.process(16));
+        assertEquals(4, loggable.process(16));
+
+        // caught up after the last batch of four, so the next batch is two
+        writeBegins(8);
+        assertEquals(2, loggable.process(16));
+        loggable.close();
+    }
+
+    @Test
+    public void shouldLimitBatchToBudget()
+    {
+        final LoggableStream loggable = newLoggable(10);
+
+        assertEquals(1, loggable.process(16));
+        assertEquals(2, loggable.process(16));
+        assertEquals(1, loggable.process(1));
+        loggable.close();
+    }
+
+    private LoggableStream newLoggable(
+        int frames)
+    {
+        writeBegins(frames);
+        return new LoggableStream(layouts, layouts.streams(path), new StreamsListener()
+        {
+        }, new LogCounters(), "receiver.sender", null);
+    }
+
+    private void writeBegins(
+        int frames)
+    {
+        final RingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) writer.streamsBuffer().buffer());
+        final BeginFW begin = new BeginFW.Builder().wrap(buffer, 0, buffer.capacity())
+                .streamId(1L).timestamp(1L).source("sender").sourceRef(1L).correlationId(1L).build();
+
+        for (int i = 0; i < frames; i++)
+        {
+            streams.write(BeginFW.TYPE_ID, buffer, 0, begin.sizeof());
+        }
+    }
+}
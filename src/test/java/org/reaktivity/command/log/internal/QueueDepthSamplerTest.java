@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.MessageHandler;
+import org.junit.After;
+import org.junit.Test;
+import org.reaktivity.command.log.internal.QueueDepthSampler.RingSample;
+import org.reaktivity.command.log.internal.spy.RingBufferSpy;
+
+public class QueueDepthSamplerTest
+{
+    private Thread thread;
+
+    @After
+    public void tearDown() throws Exception
+    {
+        thread.interrupt();
+        thread.join();
+    }
+
+    @Test
+    public void shouldNotRecordIntoFlippedPhaseWithSlowSweeps() throws Exception
+    {
+        final QueueDepthSampler sampler = new QueueDepthSampler(MILLISECONDS.toNanos(100L));
+        final RingSample sample = sampler.newSample("nukleus", "source", "streams", new SlowRingBufferSpy(300L));
+        sampler.samples(new RingSample[] { sample });
+
+        thread = new Thread(sampler, "queues-sampler");
+        thread.setDaemon(true);
+        thread.start();
+
+        for (int i = 0; i < 3; i++)
+        {
+            Thread.sleep(50L);
+
+            final int phase = sampler.flip();
+            final long count = sample.histograms[phase].count();
+
+            Thread.sleep(400L);
+
+            assertEquals(count, sample.histograms[phase].count());
+            sample.histograms[phase].reset();
+        }
+
+        assertTrue(sample.watermark > 0L);
+    }
+
+    private static final class SlowRingBufferSpy implements RingBufferSpy
+    {
+        private final long sleepMillis;
+
+        private SlowRingBufferSpy(
+            long sleepMillis)
+        {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public int spy(
+            MessageHandler handler)
+        {
+            return 0;
+        }
+
+        @Override
+        public int spy(
+            MessageHandler handler,
+            int messageCountLimit)
+        {
+            return 0;
+        }
+
+        @Override
+        public int peek(
+            MessageHandler handler)
+        {
+            return 0;
+        }
+
+        @Override
+        public long producerPosition()
+        {
+            try
+            {
+                Thread.sleep(sleepMillis);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return 64L;
+        }
+
+        @Override
+        public long consumerPosition()
+        {
+            return 0L;
+        }
+
+        @Override
+        public long spyPosition()
+        {
+            return 0L;
+        }
+
+        @Override
+        public void resetHead()
+        {
+        }
+
+        @Override
+        public int capacity()
+        {
+            return 1024;
+        }
+
+        @Override
+        public DirectBuffer buffer()
+        {
+            return null;
+        }
+    }
+}
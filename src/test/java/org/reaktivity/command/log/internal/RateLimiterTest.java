@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.reaktivity.command.log.internal.types.stream.DataFW;
+import org.reaktivity.command.log.internal.types.stream.ResetFW;
+
+public class RateLimiterTest
+{
+    private final List<String> lines = new ArrayList<>();
+    private final Logger out = (format, args) -> lines.add(String.format(format, args));
+
+    @Test
+    public void shouldCountUnknownFrameTypesAsOther()
+    {
+        final RateLimiter limiter = new RateLimiter("pair", out, 1L, null);
+
+        limiter.frame(System.nanoTime(), 0x7fff);
+        limiter.printf("first\n");
+        limiter.printf("second\n");
+        limiter.summarize();
+
+        assertEquals(2, lines.size());
+        assertEquals("first\n", lines.get(0));
+        assertEquals("Suppressed lines: 1 other on pair\n", lines.get(1));
+        assertEquals(1L, limiter.suppressed());
+    }
+
+    @Test
+    public void shouldNotDebitPairWhenGlobalRefuses()
+    {
+        final RateLimiter global = new RateLimiter("all", out, 4L, null);
+        final RateLimiter busy = new RateLimiter("busy", out, 0L, global);
+        final RateLimiter pair = new RateLimiter("pair", out, 2L, global);
+        final long now = System.nanoTime();
+
+        busy.frame(now, DataFW.TYPE_ID);
+        for (int i = 0; i < 4; i++)
+        {
+            busy.printf("busy\n");
+        }
+
+        pair.frame(now, DataFW.TYPE_ID);
+        pair.printf("refused\n");
+        pair.printf("refused\n");
+
+        // global refills two tokens, the pair still has both of its own
+        pair.frame(now + MILLISECONDS.toNanos(500L), DataFW.TYPE_ID);
+        pair.printf("admitted\n");
+        pair.printf("admitted\n");
+
+        assertEquals(6, lines.size());
+        assertEquals("admitted\n", lines.get(5));
+        assertEquals(2L, pair.suppressed());
+    }
+
+    @Test
+    public void shouldReserveTokenForEnabledLine()
+    {
+        final RateLimiter limiter = new RateLimiter("pair", out, 1L, null);
+
+        limiter.frame(System.nanoTime(), ResetFW.TYPE_ID);
+        assertTrue(limiter.enabled());
+        limiter.printf("taken\n");
+
+        limiter.frame(System.nanoTime(), ResetFW.TYPE_ID);
+        assertFalse(limiter.enabled());
+
+        assertEquals(1, lines.size());
+        assertEquals("taken\n", lines.get(0));
+        assertEquals(1L, limiter.suppressed());
+    }
+
+    @Test
+    public void shouldNotFormatLinesWhenNotEnabled()
+    {
+        final boolean[] enabled = new boolean[1];
+        final Logger gated = new Logger()
+        {
+            @Override
+            public void printf(
+                String format,
+                Object... args)
+            {
+                lines.add(String.format(format, args));
+            }
+
+            @Override
+            public boolean enabled()
+            {
+                return enabled[0];
+            }
+        };
+        final LoggingStreamsListener listener = new LoggingStreamsListener("receiver", "sender", gated, false);
+
+        listener.onBegin(1L, 0L, 1L, 0L, 0L, 0L, null);
+        listener.onWindow(2L, 0L, 1L, 10, 0, 0L, null);
+        assertTrue(lines.isEmpty());
+
+        enabled[0] = true;
+        listener.onData(3L, 0L, 1L, 4, 0, 0, 0L, null);
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("[0x00000006]"));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RingThroughputTest
+{
+    private final RingThroughput throughput = new RingThroughput();
+
+    @Test
+    public void shouldReportNoRatesAfterFirstSample()
+    {
+        throughput.sample(1024L, 512L, SECONDS.toNanos(1L));
+
+        assertEquals(0.0, throughput.producedRate(), 0.0);
+        assertEquals(0.0, throughput.consumedRate(), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, throughput.secondsToFull(4096L), 0.0);
+    }
+
+    @Test
+    public void shouldReportRatesFromPositionDeltas()
+    {
+        throughput.sample(0L, 0L, SECONDS.toNanos(1L));
+        throughput.sample(2048L, 1024L, SECONDS.toNanos(3L));
+
+        assertEquals(1024.0, throughput.producedRate(), 0.0);
+        assertEquals(512.0, throughput.consumedRate(), 0.0);
+
+        // 3072 bytes free, filling at 512 bytes per second
+        assertEquals(6.0, throughput.secondsToFull(4096L), 0.0);
+    }
+
+    @Test
+    public void shouldNeverFillWhenConsumerKeepsUp()
+    {
+        throughput.sample(0L, 0L, SECONDS.toNanos(1L));
+        throughput.sample(1024L, 1024L, SECONDS.toNanos(2L));
+
+        assertEquals(Double.POSITIVE_INFINITY, throughput.secondsToFull(4096L), 0.0);
+    }
+
+    @Test
+    public void shouldKeepRatesWhenSampledTwiceAtSameTime()
+    {
+        throughput.sample(0L, 0L, SECONDS.toNanos(1L));
+        throughput.sample(1024L, 0L, SECONDS.toNanos(2L));
+        throughput.sample(4096L, 0L, SECONDS.toNanos(2L));
+
+        assertEquals(1024.0, throughput.producedRate(), 0.0);
+        assertEquals(0.0, throughput.secondsToFull(4096L), 0.0);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RotatingFileLoggerTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountersManager manager =
+            new CountersManager(new UnsafeBuffer(new byte[16 * 1024]), new UnsafeBuffer(new byte[8 * 1024]));
+    private final AtomicCounter queueDepth = manager.newCounter("output.queue.depth");
+    private final AtomicCounter dropped = manager.newCounter("output.dropped.bytes");
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private PrintStream err;
+
+    @Before
+    public void setUp()
+    {
+        err = System.err;
+        System.setErr(new PrintStream(errors, true));
+    }
+
+    @After
+    public void tearDown()
+    {
+        System.setErr(err);
+    }
+
+    @Test
+    public void shouldWriteOutput() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("out");
+
+        try (RotatingFileLogger logger = new RotatingFileLogger(path, 0L, 0L, 1, false, queueDepth, dropped))
+        {
+            logger.printf("%s\n", "line");
+        }
+
+        assertEquals("line\n", new String(Files.readAllBytes(path), UTF_8));
+        assertEquals(0L, dropped.get());
+    }
+
+    @Test
+    public void shouldReportFailureAndCountDroppedOutput() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("out");
+
+        // rotation cannot replace a non-empty directory, so the writer fails on the first rotation
+        Files.createDirectories(path.resolveSibling("out.1"));
+        Files.createFile(path.resolveSibling("out.1").resolve("blocker"));
+
+        try (RotatingFileLogger logger = new RotatingFileLogger(path, 4L, 0L, 1, false, queueDepth, dropped))
+        {
+            logger.printf("%s\n", "rotate");
+
+            final long deadline = System.currentTimeMillis() + 5000L;
+            while (errors.size() == 0 && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10L);
+            }
+
+            logger.printf("%s\n", "dropped");
+        }
+
+        assertTrue(new String(errors.toByteArray(), UTF_8).startsWith("output " + path + " failed"));
+        assertEquals("dropped\n".length(), dropped.get());
+    }
+
+    @Test(timeout = 5000L)
+    public void shouldDropOutputWhenQueueFull() throws Exception
+    {
+        final Path path = folder.getRoot().toPath().resolve("out");
+        final PausedRingBuffer queue = new PausedRingBuffer(1024);
+
+        try (RotatingFileLogger logger = new RotatingFileLogger(path, 0L, 0L, 1, false, queueDepth, dropped, queue))
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                logger.printf("line %02d\n", i);
+            }
+
+            queue.paused = false;
+        }
+
+        final int written = Files.readAllLines(path, UTF_8).size();
+        assertTrue(written < 100);
+        assertEquals((100 - written) * "line 00\n".length(), dropped.get());
+    }
+
+    private static final class PausedRingBuffer extends OneToOneRingBuffer
+    {
+        private volatile boolean paused = true;
+
+        PausedRingBuffer(
+            int capacity)
+        {
+            super(new UnsafeBuffer(new byte[capacity + TRAILER_LENGTH]));
+        }
+
+        @Override
+        public int read(
+            MessageHandler handler)
+        {
+            return paused ? 0 : super.read(handler);
+        }
+    }
+}
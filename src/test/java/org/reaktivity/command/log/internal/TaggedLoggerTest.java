@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TaggedLoggerTest
+{
+    private final List<String> writes = new ArrayList<>();
+    private final Logger out = new Logger()
+    {
+        @Override
+        public void printf(
+            String format,
+            Object... args)
+        {
+            writes.add(String.format(format, args));
+        }
+
+        @Override
+        public void write(
+            byte[] bytes,
+            int offset,
+            int length)
+        {
+            writes.add(new String(bytes, offset, length, UTF_8));
+        }
+    };
+
+    @Test
+    public void shouldPrefixTextLines()
+    {
+        new TaggedLogger("one", out).printf("%s\n\n%s\n", "first", "second");
+
+        assertEquals(1, writes.size());
+        assertEquals("[one] first\n\n[one] second\n", writes.get(0));
+    }
+
+    @Test
+    public void shouldAddInstanceFieldToJsonLines()
+    {
+        final TaggedLogger logger = new TaggedLogger("o\"ne", out);
+        logger.printf("{\"a\":1}\n");
+        logger.printf("{}\n");
+
+        assertEquals("{\"instance\":\"o\\\"ne\",\"a\":1}\n", writes.get(0));
+        assertEquals("{\"instance\":\"o\\\"ne\"}\n", writes.get(1));
+    }
+
+    @Test
+    public void shouldWriteOnlyWholeLines()
+    {
+        final TaggedLogger one = new TaggedLogger("one", out);
+        final TaggedLogger two = new TaggedLogger("two", out);
+
+        one.printf("{\"a\":");
+        two.printf("{\"b\":2}\n");
+        one.printf("1}\n");
+
+        assertEquals(2, writes.size());
+        assertEquals("{\"instance\":\"two\",\"b\":2}\n", writes.get(0));
+        assertEquals("{\"instance\":\"one\",\"a\":1}\n", writes.get(1));
+    }
+}
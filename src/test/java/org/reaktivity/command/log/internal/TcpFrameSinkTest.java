@@ -0,0 +1,284 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_PAIR;
+import static org.reaktivity.command.log.internal.CaptureWriter.RING_STREAMS;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.ControlLayout;
+import org.reaktivity.nukleus.Configuration;
+
+public class TcpFrameSinkTest
+{
+    private static final int TYPE_ID = 0x00000002;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration config;
+    private LayoutRegistry layouts;
+    private LogCounters counters;
+    private InetSocketAddress address;
+    private ServerSocketChannel server;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.setProperty(Configuration.DIRECTORY_PROPERTY_NAME, folder.getRoot().getPath());
+        config = new LogCommandConfiguration(properties);
+        layouts = new LayoutRegistry(config);
+        counters = new LogCounters(config);
+
+        // reserve a loopback port, the stand-in collector listens on it when a test needs it
+        try (ServerSocketChannel reserved = ServerSocketChannel.open())
+        {
+            reserved.bind(new InetSocketAddress("127.0.0.1", 0));
+            address = (InetSocketAddress) reserved.getLocalAddress();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (server != null)
+        {
+            server.close();
+        }
+        layouts.close();
+        counters.close();
+    }
+
+    @Test
+    public void shouldFrameRecordsInBatches() throws Exception
+    {
+        listen();
+
+        final TcpFrameSink sink = new TcpFrameSink(address, counters);
+        final int pair = sink.pair("receiver", "sender");
+        sink.write(pair, RING_STREAMS, TYPE_ID, frame("first"), 0, 5);
+        sink.write(pair, RING_STREAMS, TYPE_ID, frame("second"), 0, 6);
+
+        try (SocketChannel channel = server.accept())
+        {
+            final DataInputStream input = input(channel);
+
+            final List<Record> definitions = readMessage(input);
+            assertEquals(1, definitions.size());
+            assertDefinition(definitions.get(0), pair);
+
+            final List<Record> records = readMessage(input);
+            assertEquals(3, records.size());
+            assertDefinition(records.get(0), pair);
+            assertRecord(records.get(1), pair, "first");
+            assertRecord(records.get(2), pair, "second");
+        }
+        finally
+        {
+            sink.close();
+        }
+
+        assertEquals(2L, counter("ship.frames"));
+        assertEquals(0L, counter("ship.dropped"));
+        assertEquals(0L, counter("ship.reconnects"));
+    }
+
+    @Test
+    public void shouldConnectAfterBackoffAndReconnect() throws Exception
+    {
+        final TcpFrameSink sink = new TcpFrameSink(address, counters);
+
+        try
+        {
+            final int pair = sink.pair("receiver", "sender");
+            sink.write(pair, RING_STREAMS, TYPE_ID, frame("early"), 0, 5);
+
+            // collector starts late, the batch stays pending through connect failures and backoff
+            Thread.sleep(300L);
+            listen();
+
+            try (SocketChannel channel = server.accept())
+            {
+                final DataInputStream input = input(channel);
+                readMessage(input);
+                final List<Record> records = readMessage(input);
+                assertRecord(records.get(records.size() - 1), pair, "early");
+            }
+
+            // collector drops the connection, the next connection is told the pairs again
+            final long deadline = System.currentTimeMillis() + 10_000L;
+            server.configureBlocking(false);
+            SocketChannel accepted = null;
+            while (accepted == null && System.currentTimeMillis() < deadline)
+            {
+                sink.write(pair, RING_STREAMS, TYPE_ID, frame("late"), 0, 4);
+                Thread.sleep(50L);
+                accepted = server.accept();
+            }
+
+            try (SocketChannel channel = accepted)
+            {
+                assertTrue(channel != null);
+                channel.configureBlocking(true);
+                final List<Record> definitions = readMessage(input(channel));
+                assertEquals(1, definitions.size());
+                assertDefinition(definitions.get(0), pair);
+            }
+        }
+        finally
+        {
+            sink.close();
+        }
+
+        assertEquals(1L, counter("ship.reconnects"));
+    }
+
+    @Test
+    public void shouldCountDroppedFrames() throws Exception
+    {
+        final TcpFrameSink sink = new TcpFrameSink(address, counters);
+
+        try
+        {
+            final int pair = sink.pair("receiver", "sender");
+            final UnsafeBuffer large = new UnsafeBuffer(new byte[128 * 1024]);
+
+            // oversized frames never fit a batch
+            sink.write(pair, RING_STREAMS, TYPE_ID, new UnsafeBuffer(new byte[512 * 1024]), 0, 512 * 1024);
+
+            // without a collector every batch stays pending, then frames are dropped rather than block
+            for (int i = 0; i < 40; i++)
+            {
+                sink.write(pair, RING_STREAMS, TYPE_ID, large, 0, large.capacity());
+            }
+        }
+        finally
+        {
+            sink.close();
+        }
+
+        assertEquals(41L, counter("ship.frames") + counter("ship.dropped"));
+        assertTrue(counter("ship.dropped") > 1L);
+        assertTrue(counter("ship.frames") > 0L);
+    }
+
+    private void listen() throws IOException
+    {
+        server = ServerSocketChannel.open();
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(address);
+    }
+
+    private long counter(
+        String name)
+    {
+        final ControlLayout control = layouts.control(config.directory().resolve("log").resolve("control"));
+        final CountersManager manager = new CountersManager(control.counterLabelsBuffer(), control.counterValuesBuffer());
+        final long[] value = new long[1];
+        manager.forEach((id, label) ->
+        {
+            if (name.equals(label))
+            {
+                value[0] = manager.getCounterValue(id);
+            }
+        });
+        return value[0];
+    }
+
+    private static UnsafeBuffer frame(
+        String text)
+    {
+        return new UnsafeBuffer(text.getBytes(UTF_8));
+    }
+
+    private static DataInputStream input(
+        SocketChannel channel) throws IOException
+    {
+        channel.socket().setSoTimeout(10_000);
+        return new DataInputStream(channel.socket().getInputStream());
+    }
+
+    private static List<Record> readMessage(
+        DataInputStream input) throws IOException
+    {
+        final int length = Integer.reverseBytes(input.readInt());
+        final List<Record> records = new ArrayList<>();
+
+        for (int progress = 0; progress < length;)
+        {
+            final Record record = new Record();
+            record.ring = Integer.reverseBytes(input.readInt());
+            record.pair = Integer.reverseBytes(input.readInt());
+            record.msgTypeId = Integer.reverseBytes(input.readInt());
+            record.payload = new byte[Integer.reverseBytes(input.readInt())];
+            input.readFully(record.payload);
+            records.add(record);
+            progress += CaptureWriter.RECORD_HEADER_LENGTH + record.payload.length;
+        }
+
+        return records;
+    }
+
+    private static void assertDefinition(
+        Record record,
+        int pair)
+    {
+        final UnsafeBuffer definition = (UnsafeBuffer) CaptureWriter.definition("receiver", "sender");
+        assertEquals(RING_PAIR, record.ring);
+        assertEquals(pair, record.pair);
+        assertArrayEquals(definition.byteArray(), record.payload);
+    }
+
+    private static void assertRecord(
+        Record record,
+        int pair,
+        String text)
+    {
+        assertEquals(RING_STREAMS, record.ring);
+        assertEquals(pair, record.pair);
+        assertEquals(TYPE_ID, record.msgTypeId);
+        assertEquals(text, new String(record.payload, UTF_8));
+    }
+
+    private static final class Record
+    {
+        private int ring;
+        private int pair;
+        private int msgTypeId;
+        private byte[] payload;
+    }
+}
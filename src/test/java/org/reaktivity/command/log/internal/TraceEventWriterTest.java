@@ -0,0 +1,112 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TraceEventWriterTest
+{
+    private static final byte[] DATA = "DATA".getBytes(UTF_8);
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final TraceEventWriter writer = new TraceEventWriter(new Logger()
+    {
+        @Override
+        public void printf(
+            String format,
+            Object... args)
+        {
+            events.add(String.format(format, args));
+        }
+
+        @Override
+        public void write(
+            byte[] bytes,
+            int offset,
+            int length)
+        {
+            events.add(new String(bytes, offset, length, UTF_8));
+        }
+    });
+
+    @Test
+    public void shouldStartArrayOnce()
+    {
+        final int lane = writer.lane(1);
+        writer.slice(lane, 1000L, 0L, 1L, DATA);
+        writer.slice(lane, 2000L, 0L, 1L, DATA);
+
+        assertEquals(2, events.size());
+        assertTrue(events.get(0).startsWith("[\n{"));
+        assertTrue(events.get(1).startsWith(",\n{"));
+    }
+
+    @Test
+    public void shouldPutEachDirectoryInItsOwnProcess()
+    {
+        writer.processName(1, "one");
+        writer.processName(2, "two");
+        final int first = writer.lane(1);
+        final int second = writer.lane(2);
+        writer.slice(first, 1000L, 0L, 1L, DATA);
+        writer.slice(second, 1000L, 0L, 1L, DATA);
+
+        assertEquals("[\n{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"one\"}}", events.get(0));
+        assertTrue(events.get(2).contains("\"pid\":1,\"tid\":" + first + ","));
+        assertTrue(events.get(3).contains("\"pid\":2,\"tid\":" + second + ","));
+    }
+
+    @Test
+    public void shouldKeepEventsWholeWhenWrittenConcurrently() throws Exception
+    {
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+        {
+            final int lane = writer.lane(1);
+            threads.add(new Thread(() -> slices(lane)));
+        }
+
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(4 * 10_000 * 2, events.size());
+        assertEquals(1, events.stream().filter(e -> e.startsWith("[")).count());
+        for (String event : events)
+        {
+            assertTrue(event, event.matches("(?s)[\\[,]\n\\{[^\n]*\\}"));
+        }
+    }
+
+    private void slices(
+        int lane)
+    {
+        for (int i = 0; i < 10_000; i++)
+        {
+            writer.slice(lane, i * 1000L, lane, i, DATA);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.counters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.junit.Test;
+
+public class CountersIndexTest
+{
+    private final UnsafeBuffer labels = new UnsafeBuffer(new byte[16 * 1024]);
+    private final UnsafeBuffer values = new UnsafeBuffer(new byte[8 * 1024]);
+    private final CountersManager manager = new CountersManager(labels, values);
+    private final CountersIndex index = new CountersIndex(labels, values);
+
+    @Test
+    public void shouldSampleAllocatedCounters()
+    {
+        final AtomicCounter first = manager.newCounter("first");
+        final AtomicCounter second = manager.newCounter("second");
+        first.set(3L);
+        second.set(5L);
+
+        assertEquals(2, index.sample());
+        assertEquals("first", index.label(index.id(0)));
+        assertEquals(3L, index.value(index.id(0)));
+        assertEquals("second", index.label(index.id(1)));
+        assertEquals(5L, index.value(index.id(1)));
+        assertFalse(index.refresh());
+    }
+
+    @Test
+    public void shouldStopSamplingFreedCounter()
+    {
+        final AtomicCounter first = manager.newCounter("first");
+        manager.newCounter("second");
+        index.sample();
+
+        first.close();
+
+        assertTrue(index.refresh());
+        assertEquals(1, index.sample());
+        assertEquals("second", index.label(index.id(0)));
+    }
+
+    @Test
+    public void shouldRelabelReusedCounter()
+    {
+        final AtomicCounter first = manager.newCounter("first");
+        index.sample();
+        final int id = index.id(0);
+        final String label = index.label(id);
+
+        first.close();
+        manager.newCounter("reused");
+
+        assertTrue(index.refresh());
+        assertEquals(1, index.sample());
+        assertEquals(id, index.id(0));
+        assertEquals("reused", index.label(id));
+        assertNotSame(label, index.label(id));
+    }
+
+    @Test
+    public void shouldKeepLabelInstanceWhenUnchanged()
+    {
+        manager.newCounter("first");
+        index.sample();
+        final String label = index.label(0);
+
+        manager.newCounter("second");
+        index.sample();
+
+        assertSame(label, index.label(0));
+    }
+
+    @Test
+    public void shouldSampleNewAllocationsBeforeRecheck()
+    {
+        manager.newCounter("first");
+        index.sample();
+
+        manager.newCounter("second").set(7L);
+
+        assertEquals(2, index.sample());
+        assertEquals(7L, index.value(index.id(1)));
+    }
+
+    @Test
+    public void shouldRecheckReusedIdsOnlyOncePerPeriod()
+    {
+        final CountersIndex periodic = new CountersIndex(labels, values, Long.MAX_VALUE / 2);
+        final AtomicCounter first = manager.newCounter("first");
+        periodic.sample();
+
+        first.close();
+        manager.newCounter("reused");
+        periodic.sample();
+        assertEquals("first", periodic.label(periodic.id(0)));
+
+        final CountersIndex eager = new CountersIndex(labels, values, 0L);
+        manager.newCounter("third").close();
+        eager.sample();
+        manager.newCounter("fourth");
+        eager.sample();
+        assertEquals("fourth", eager.label(eager.id(1)));
+    }
+}
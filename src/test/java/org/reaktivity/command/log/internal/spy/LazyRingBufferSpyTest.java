@@ -0,0 +1,145 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.spy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.AtomicBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.reaktivity.command.log.internal.layouts.StreamsLayout;
+
+public class LazyRingBufferSpyTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSpyWrittenFrames() throws Exception
+    {
+        try (StreamsLayout writer = newLayout(false);
+             StreamsLayout reader = newLayout(true))
+        {
+            final OneToOneRingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) writer.streamsBuffer().buffer());
+            streams.write(1, new UnsafeBuffer(new byte[16]), 0, 16);
+
+            final RingBufferSpy spy = reader.streamsBuffer();
+            assertEquals(1, spy.spy((t, b, i, l) -> assertEquals(16, l)));
+            assertEquals(0L, spy.consumerPosition());
+            assertEquals(spy.producerPosition(), spy.spyPosition());
+        }
+    }
+
+    @Test
+    public void shouldNotMapNeverWrittenRing() throws Exception
+    {
+        // the writer only creates the file
+        newLayout(false).close();
+
+        try (StreamsLayout reader = newLayout(true))
+        {
+            assertEquals(0, reader.throttleBuffer().spy(LazyRingBufferSpyTest::ignore));
+            assertEquals(0L, reader.throttleBuffer().spyPosition());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToSpyAfterClose() throws Exception
+    {
+        final StreamsLayout layout = newLayout(false);
+        layout.streamsBuffer().producerPosition();
+        layout.close();
+
+        layout.streamsBuffer().spy(LazyRingBufferSpyTest::ignore);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToReadPositionAfterClose() throws Exception
+    {
+        final StreamsLayout layout = newLayout(false);
+        layout.close();
+
+        layout.throttleBuffer().producerPosition();
+    }
+
+    @Test
+    public void shouldWaitForSpyBeforeClose() throws Exception
+    {
+        final StreamsLayout writer = newLayout(false);
+        final OneToOneRingBuffer streams = new OneToOneRingBuffer((AtomicBuffer) writer.streamsBuffer().buffer());
+        streams.write(1, new UnsafeBuffer(new byte[16]), 0, 16);
+
+        final StreamsLayout reader = newLayout(true);
+        final CountDownLatch spying = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread spier = new Thread(() -> reader.streamsBuffer().spy((t, b, i, l) -> await(spying, release)));
+        spier.start();
+        spying.await();
+
+        final Thread closer = new Thread(reader::close);
+        closer.start();
+        closer.join(100L);
+        assertTrue(closer.isAlive());
+
+        release.countDown();
+        closer.join();
+        spier.join();
+        writer.close();
+    }
+
+    private static void await(
+        CountDownLatch spying,
+        CountDownLatch release)
+    {
+        spying.countDown();
+        try
+        {
+            release.await();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void ignore(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+    }
+
+    private StreamsLayout newLayout(
+        boolean readonly)
+    {
+        final Path path = folder.getRoot().toPath().resolve("streams");
+        return new StreamsLayout.Builder()
+                .path(path)
+                .streamsCapacity(64 * 1024)
+                .throttleCapacity(64 * 1024)
+                .readonly(readonly)
+                .build();
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016-2018 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.command.log.internal.spy;
+
+import static org.agrona.concurrent.ringbuffer.RingBufferDescriptor.TRAILER_LENGTH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RingBufferPublisherTest
+{
+    private static final int CAPACITY = 1024;
+
+    private OneToOneRingBuffer ring;
+    private OneToOneRingBufferSpy spy;
+    private RecordingSubscriber subscriber;
+
+    @Before
+    public void setUp()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(CAPACITY + TRAILER_LENGTH));
+        ring = new OneToOneRingBuffer(buffer);
+        spy = new OneToOneRingBufferSpy(buffer);
+        subscriber = new RecordingSubscriber();
+    }
+
+    @Test
+    public void shouldDeliverOnlyRequestedFrames()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 16, false);
+        publisher.subscribe(subscriber);
+        write(5);
+
+        assertEquals(0, publisher.poll());
+
+        subscriber.subscription.request(2L);
+        assertEquals(2, publisher.poll());
+        assertEquals(0, publisher.poll());
+
+        subscriber.subscription.request(10L);
+        assertEquals(3, publisher.poll());
+        assertEquals(5, subscriber.typeIds.size());
+        assertEquals(Integer.valueOf(5), subscriber.typeIds.get(4));
+    }
+
+    @Test
+    public void shouldCapDemandAtBatchLimit()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 2, false);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        write(5);
+
+        assertEquals(2, publisher.poll());
+        assertEquals(2, publisher.poll());
+        assertEquals(1, publisher.poll());
+    }
+
+    @Test
+    public void shouldStopDeliveringWhenCancelled()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 16, false);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(10L);
+        subscriber.cancelAfter = 1;
+        write(3);
+
+        publisher.poll();
+        assertEquals(0, publisher.poll());
+        assertEquals(1, subscriber.typeIds.size());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void shouldSignalNonPositiveRequestOnPoll()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 16, false);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0L);
+        assertNull(subscriber.error);
+
+        assertEquals(0, publisher.poll());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void shouldSkipAheadWhenLapped()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 16, false);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        lap();
+        write(1);
+
+        assertEquals(1, publisher.poll());
+        assertEquals(1L, publisher.laps());
+        assertTrue(publisher.lostBytes() > 0L);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void shouldFailWhenLappedIfConfigured()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 16, true);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        lap();
+
+        assertEquals(0, publisher.poll());
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertEquals(0, subscriber.typeIds.size());
+    }
+
+    @Test
+    public void shouldRejectSecondSubscriber()
+    {
+        final RingBufferPublisher publisher = new RingBufferPublisher(spy, 16, false);
+        final RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.subscribe(second);
+
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    private void write(
+        int count)
+    {
+        final UnsafeBuffer payload = new UnsafeBuffer(new byte[8]);
+        for (int i = 0; i < count; i++)
+        {
+            assertTrue(ring.write(i + 1, payload, 0, payload.capacity()));
+        }
+    }
+
+    // the consumer moves on while the spy stands still, so the producer passes the spy by a full ring
+    private void lap()
+    {
+        final UnsafeBuffer payload = new UnsafeBuffer(new byte[64]);
+        while (ring.producerPosition() <= CAPACITY + 128)
+        {
+            assertTrue(ring.write(1, payload, 0, payload.capacity()));
+            ring.read(RingBufferPublisherTest::ignore);
+        }
+    }
+
+    private static void ignore(
+        int msgTypeId,
+        MutableDirectBuffer buffer,
+        int index,
+        int length)
+    {
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<RingBufferPublisher.Frame>
+    {
+        private final List<Integer> typeIds = new ArrayList<>();
+
+        private Flow.Subscription subscription;
+        private Throwable error;
+        private int cancelAfter = Integer.MAX_VALUE;
+
+        @Override
+        public void onSubscribe(
+            Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(
+            RingBufferPublisher.Frame frame)
+        {
+            typeIds.add(frame.typeId());
+
+            if (typeIds.size() == cancelAfter)
+            {
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onError(
+            Throwable throwable)
+        {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete()
+        {
+        }
+    }
+}